@@ -0,0 +1,79 @@
+/*
+ * File: BenchmarkFiles.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.RunGenKeys;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Creates and removes the files the benchmarks work on.
+ */
+final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Creates a temporary working directory.
+     *
+     * @return The directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    static File createDirectory() throws IOException {
+        return Files.createTempDirectory("javacrypt-bench").toFile();
+    }
+
+    /**
+     * Writes a file of pseudo-random bytes. A fixed seed keeps runs reproducible.
+     *
+     * @param file The file.
+     * @param size The size in bytes.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeRandom(File file, long size) throws IOException {
+        Random random = new Random(42);
+        byte[] buf = new byte[1 << 20];
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (long written = 0; written < size; written += buf.length) {
+                random.nextBytes(buf);
+                out.write(buf, 0, (int) Math.min(buf.length, size - written));
+            }
+        }
+    }
+
+    /**
+     * Generates a key pair through the -genkeys command.
+     *
+     * @param privateKeyFile The private key file.
+     * @param publicKeyFile  The public key file.
+     */
+    static void generateKeys(File privateKeyFile, File publicKeyFile) {
+        new RunGenKeys().run(Arrays.asList(privateKeyFile.getPath(), publicKeyFile.getPath()));
+    }
+
+    /**
+     * Deletes the directory and everything in it.
+     *
+     * @param dir The directory.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
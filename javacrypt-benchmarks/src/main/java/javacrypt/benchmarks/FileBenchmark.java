@@ -0,0 +1,162 @@
+/*
+ * File: FileBenchmark.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.RunCopy;
+import javacrypt.RunDecrypt;
+import javacrypt.RunEncrypt;
+import javacrypt.RunnableBase;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * File-level throughput of the commands: the plain chunk loop of RunnableBase.encryptDecryptFile,
+ * encryption, decryption and both copy modes, for payloads from 1 KB to 1 GB.
+ * <p>
+ * The primary score is operations per second; the "mb" counter gives MB/s of payload.
+ * Run with "-prof gc" to get the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+
+    // Payload size in bytes
+    @Param({"1024", "1048576", "104857600", "1073741824"})
+    public long size;
+
+    // Worker threads of the segment engine and the parallel copy
+    @Param({"0"})
+    public int threads;
+
+    private File dir;
+    private File plainFile;
+    private File cipherFile;
+    private File outFile;
+
+    private PublicKey publicKey;
+    private PrivateKey privateKey;
+
+    private RunnableBase chunkLoop;
+    private RunEncrypt encrypt;
+    private RunDecrypt decrypt;
+    private RunCopy copy;
+    private RunCopy parallelCopy;
+
+    /**
+     * Creates the payload, the keys and an encrypted copy of the payload.
+     *
+     * @throws Exception If the files cannot be prepared.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = BenchmarkFiles.createDirectory();
+        plainFile = new File(dir, "plain.dat");
+        cipherFile = new File(dir, "cipher.dat");
+        outFile = new File(dir, "out.dat");
+        File privateKeyFile = new File(dir, "priv.key");
+        File publicKeyFile = new File(dir, "pub.key");
+
+        BenchmarkFiles.writeRandom(plainFile, size);
+        BenchmarkFiles.generateKeys(privateKeyFile, publicKeyFile);
+        KeyLoader keyLoader = new KeyLoader();
+        publicKey = (PublicKey) keyLoader.load(publicKeyFile);
+        privateKey = (PrivateKey) keyLoader.load(privateKeyFile);
+
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        chunkLoop = new ChunkLoop();
+        encrypt = new RunEncrypt();
+        encrypt.setThreads(workers);
+        decrypt = new RunDecrypt();
+        decrypt.setThreads(workers);
+        copy = new RunCopy();
+        parallelCopy = new RunCopy();
+        parallelCopy.setThreads(workers);
+        parallelCopy.setParallel(true);
+
+        encrypt.encryptDecryptFile(publicKey, plainFile, cipherFile);
+    }
+
+    /**
+     * Removes the working directory.
+     *
+     * @throws IOException If the files cannot be removed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public long chunkLoop(Throughput throughput) throws Exception {
+        throughput.add(size);
+        return chunkLoop.encryptDecryptFile(null, plainFile, outFile);
+    }
+
+    @Benchmark
+    public long encrypt(Throughput throughput) throws Exception {
+        throughput.add(size);
+        return encrypt.encryptDecryptFile(publicKey, plainFile, outFile);
+    }
+
+    @Benchmark
+    public long decrypt(Throughput throughput) throws Exception {
+        throughput.add(size);
+        return decrypt.encryptDecryptFile(privateKey, cipherFile, outFile);
+    }
+
+    @Benchmark
+    public long copy(Throughput throughput) throws Exception {
+        throughput.add(size);
+        return copy.encryptDecryptFile(null, plainFile, outFile);
+    }
+
+    @Benchmark
+    public long copyParallel(Throughput throughput) throws Exception {
+        throughput.add(size);
+        return parallelCopy.encryptDecryptFile(null, plainFile, outFile);
+    }
+
+    /**
+     * The generic chunk loop of RunnableBase with a no-op transform and the 32 KB buffer -copy used to run on.
+     */
+    static final class ChunkLoop extends RunnableBase {
+
+        @Override
+        public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+            return text;
+        }
+
+        @Override
+        public int getCryptoBufSize() {
+            return RunCopy.RSA_COPY_BUFSIZE;
+        }
+
+        @Override
+        protected Cipher getCipher(Key key) {
+            return null;
+        }
+
+        @Override
+        public void run(List<String> args) {
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * File: GenKeysBenchmark.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.RunGenKeys;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time to generate a key pair with RunGenKeys at several key sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenKeysBenchmark {
+
+    // RSA key size in bits
+    @Param({"1024", "2048", "3072", "4096"})
+    public int keySize;
+
+    private final RunGenKeys genKeys = new RunGenKeys();
+
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return genKeys.generateKeyPair(keySize);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * File: KeyBenchmark.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.KeyCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of loading key files: through RunnableBase.getKeyObjectFromFile, which answers repeated loads from the
+ * KeyRing cache, and through KeyCodec.read, which parses the file every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyBenchmark {
+
+    private File dir;
+    private File privateKeyFile;
+    private File publicKeyFile;
+    private KeyLoader keyLoader;
+
+    /**
+     * Writes a key pair to load.
+     *
+     * @throws IOException If the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkFiles.createDirectory();
+        privateKeyFile = new File(dir, "priv.key");
+        publicKeyFile = new File(dir, "pub.key");
+        BenchmarkFiles.generateKeys(privateKeyFile, publicKeyFile);
+        keyLoader = new KeyLoader();
+    }
+
+    /**
+     * Removes the working directory.
+     *
+     * @throws IOException If the files cannot be removed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public Object loadPublicKey() throws Exception {
+        return keyLoader.load(publicKeyFile);
+    }
+
+    @Benchmark
+    public Object loadPrivateKey() throws Exception {
+        return keyLoader.load(privateKeyFile);
+    }
+
+    @Benchmark
+    public Object parsePublicKey() throws Exception {
+        return KeyCodec.read(publicKeyFile);
+    }
+
+    @Benchmark
+    public Object parsePrivateKey() throws Exception {
+        return KeyCodec.read(privateKeyFile);
+    }
+}
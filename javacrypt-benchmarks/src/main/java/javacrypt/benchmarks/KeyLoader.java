@@ -0,0 +1,31 @@
+/*
+ * File: KeyLoader.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.RunDecrypt;
+
+import java.io.File;
+
+/**
+ * Exposes the key loading of the commands (RunnableBase.getKeyObjectFromFile) to the benchmarks.
+ */
+final class KeyLoader extends RunDecrypt {
+
+    /**
+     * Loads a key file the way the commands do.
+     *
+     * @param keyFile The key file.
+     * @return The key object.
+     * @throws Exception If the key cannot be read.
+     */
+    Object load(File keyFile) throws Exception {
+        return getKeyObjectFromFile(keyFile);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * File: KeyWrapBenchmark.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import javacrypt.HybridHeader;
+import javacrypt.KeyWrap;
+import javacrypt.RunGenKeys;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Per-key and per-file cost of each key type: generating a key pair, wrapping a data key (once per encrypted
+ * file) and unwrapping it (once per decrypted file).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class KeyWrapBenchmark {
+
+    // Key type: rsa-[bits], ec or x25519
+    @Param({"rsa-2048", "rsa-3072", "ec", "x25519"})
+    public String keyType;
+
+    private final RunGenKeys genKeys = new RunGenKeys();
+    private RunGenKeys.KeyAlgorithm algorithm;
+    private int keyLength;
+    private KeyPair keyPair;
+    private SecretKey dataKey;
+    private HybridHeader header;
+
+    /**
+     * Generates the key pair and one wrapped data key.
+     *
+     * @throws Exception If the keys cannot be generated.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String[] parts = keyType.split("-");
+        algorithm = RunGenKeys.KeyAlgorithm.parse(parts[0]);
+        keyLength = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        keyPair = genKeys.generateKeyPair(algorithm, keyLength);
+        dataKey = KeyWrap.generateDataKey();
+        header = new HybridHeader(HybridHeader.VERSION, 0, HybridHeader.SUITE_AES_GCM,
+            HybridHeader.DEFAULT_SEGMENT_SIZE, new byte[HybridHeader.NONCE_PREFIX_LENGTH],
+            KeyWrap.wrapAlgorithmFor(keyPair.getPublic()), KeyWrap.wrap(dataKey, keyPair.getPublic()));
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return genKeys.generateKeyPair(algorithm, keyLength);
+    }
+
+    @Benchmark
+    public byte[] wrap() throws Exception {
+        return KeyWrap.wrap(dataKey, keyPair.getPublic());
+    }
+
+    @Benchmark
+    public SecretKey unwrap() throws Exception {
+        return KeyWrap.unwrap(header, keyPair.getPrivate());
+    }
+}
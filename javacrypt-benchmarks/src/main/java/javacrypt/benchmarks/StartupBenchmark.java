@@ -0,0 +1,115 @@
+/*
+ * File: StartupBenchmark.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time to first byte of the command line: from starting a new JVM with JavaCrypt.jar until the first byte of an
+ * encrypted small file arrives on its standard output. This covers JVM startup, class loading, the key load and the
+ * cipher setup, which dominate the run time of small files.
+ * <p>
+ * With appCds set, the JVM maps the class-data-sharing archive built by "mvn -Pappcds package". The jar and the
+ * archive are taken from the system properties javacrypt.jar and javacrypt.jsa, by default from ../target; the
+ * archive only works with the jar at the path it was built with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean appCds;
+
+    private File dir;
+    private List<String> command;
+    private Process process;
+
+    /**
+     * Writes a key pair and a small file to encrypt, and builds the command line.
+     *
+     * @throws IOException If the files cannot be written, or the jar or the archive is missing.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File jar = new File(System.getProperty("javacrypt.jar", "../target/JavaCrypt.jar")).getAbsoluteFile();
+        File archive = new File(System.getProperty("javacrypt.jsa", "../target/JavaCrypt.jsa")).getAbsoluteFile();
+        if (!jar.isFile()) {
+            throw new IOException("JavaCrypt.jar not found: " + jar);
+        }
+        if (appCds && !archive.isFile()) {
+            throw new IOException("AppCDS archive not found, build it with mvn -Pappcds package: " + archive);
+        }
+
+        dir = BenchmarkFiles.createDirectory();
+        File privateKeyFile = new File(dir, "priv.key");
+        File publicKeyFile = new File(dir, "pub.key");
+        File plainFile = new File(dir, "small.txt");
+        BenchmarkFiles.generateKeys(privateKeyFile, publicKeyFile);
+        BenchmarkFiles.writeRandom(plainFile, 100);
+
+        command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (appCds) {
+            command.add("-XX:SharedArchiveFile=" + archive.getPath());
+        }
+        command.add("-jar");
+        command.add(jar.getPath());
+        command.add("-encrypt");
+        command.add(publicKeyFile.getPath());
+        command.add(plainFile.getPath());
+        command.add("-");
+    }
+
+    /**
+     * Lets the process of the last invocation finish, outside of the measured time.
+     *
+     * @throws Exception If the process cannot be waited for.
+     */
+    @TearDown(Level.Invocation)
+    public void finishProcess() throws Exception {
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        process.waitFor();
+    }
+
+    /**
+     * Removes the working directory.
+     *
+     * @throws IOException If the files cannot be removed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public int encryptFirstByte() throws IOException {
+        process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        int first = process.getInputStream().read();
+        if (first < 0) {
+            throw new IOException("No output from " + command);
+        }
+        return first;
+    }
+}
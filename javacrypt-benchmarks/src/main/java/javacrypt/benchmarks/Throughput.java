@@ -0,0 +1,44 @@
+/*
+ * File: Throughput.java
+ * Package: javacrypt.benchmarks
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary JMH counter: the payload megabytes (10^6 bytes) processed, reported by JMH as MB/s.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    // Megabytes processed during the iteration
+    public double mb;
+
+    /**
+     * Resets the counter before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        mb = 0;
+    }
+
+    /**
+     * Counts one processed payload.
+     *
+     * @param bytes The payload size in bytes.
+     */
+    void add(long bytes) {
+        mb += bytes / 1e6;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * File: AuthenticationException.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+/**
+ * Signals encrypted data that failed authentication: a segment or chunk was modified, reordered, dropped or cut
+ * off. No plaintext of a failed segment is ever returned.
+ */
+public class AuthenticationException extends JavaCryptException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     */
+    public AuthenticationException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     * @param cause   The underlying exception.
+     */
+    public AuthenticationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * File: BufferPool.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of byte arrays of a few fixed sizes, so that the buffers of one file are reused for the next instead of
+ * being allocated again.
+ * <p>
+ * Arrays are handed out with {@link #take(int)} and given back with {@link #give(byte[])}; an array that is not
+ * given back is simply collected. The pool keeps at most {@link #MAX_RETAINED_BYTES} in all, whatever the sizes,
+ * since segment sizes come from file headers and a long-running daemon may see many of them. Arrays are cleared
+ * when they are given back, so plaintext in a returned crypto buffer does not outlive its use. The pool is
+ * thread-safe.
+ * <p>
+ * Example usage:
+ * <p>
+ * byte[] buf = BufferPool.getDefault().take(65536);
+ * try {
+ * ...
+ * } finally {
+ * BufferPool.getDefault().give(buf);
+ * }
+ */
+public final class BufferPool {
+
+    // Maximum number of bytes kept in free arrays of all sizes together
+    public static final long MAX_RETAINED_BYTES = 64L << 20;
+
+    // The pool shared by all commands of this process
+    private static final BufferPool DEFAULT = new BufferPool();
+
+    // Free arrays by length
+    private final Map<Integer, Queue<byte[]>> free = new ConcurrentHashMap<>();
+
+    // Bytes in the free arrays
+    private final AtomicLong retained = new AtomicLong();
+
+    /**
+     * Returns the pool shared by all commands of this process.
+     *
+     * @return The shared pool.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Takes an array of the given length from the pool, or allocates one if none is free.
+     *
+     * @param length The length.
+     * @return The array, cleared.
+     */
+    public byte[] take(int length) {
+        Queue<byte[]> queue = free.get(length);
+        byte[] buf = queue != null ? queue.poll() : null;
+        if (buf == null) {
+            return new byte[length];
+        }
+        retained.addAndGet(-length);
+        return buf;
+    }
+
+    /**
+     * Gives an array back to the pool, which clears it. It must not be used afterwards.
+     *
+     * @param buf The array, or null.
+     */
+    public void give(byte[] buf) {
+        if (buf == null || buf.length == 0) {
+            return;
+        }
+        Arrays.fill(buf, (byte) 0);
+        // A full pool drops the array, which bounds what unusual sizes can pin
+        if (retained.addAndGet(buf.length) > MAX_RETAINED_BYTES) {
+            retained.addAndGet(-buf.length);
+            return;
+        }
+        free.computeIfAbsent(buf.length, length -> new ConcurrentLinkedQueue<>()).offer(buf);
+    }
+}
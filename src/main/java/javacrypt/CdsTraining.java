@@ -0,0 +1,94 @@
+/*
+ * File: CdsTraining.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * The training run for the class-data-sharing archive of JavaCrypt.jar.
+ * <p>
+ * The JVM writes every class loaded during a run into the archive given with -XX:ArchiveClassesAtExit, and later
+ * runs started with -XX:SharedArchiveFile map those classes instead of loading and verifying them again. This run
+ * therefore goes through the everyday commands once (key generation, encryption, decryption and verification of a
+ * small and a multi-segment file) in a temporary directory that is deleted afterwards. The output of the
+ * commands is discarded.
+ * <p>
+ * The build profile "appcds" runs it after packaging:
+ * <p>
+ * java -XX:ArchiveClassesAtExit=target/JavaCrypt.jsa -cp target/JavaCrypt.jar javacrypt.CdsTraining
+ */
+public class CdsTraining {
+
+    // Size of the multi-segment training file
+    private static final int LARGE_FILE_SIZE = 3 * HybridHeader.DEFAULT_SEGMENT_SIZE + 1;
+
+    /**
+     * Runs the training commands.
+     *
+     * @param args Not used.
+     * @throws Exception If a command fails, or the temporary directory cannot be created or deleted.
+     */
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("javacrypt-cds");
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        try {
+            String priv = file(dir, "priv.key");
+            String pub = file(dir, "pub.key");
+            run(Command.GENKEYS, priv, pub);
+
+            byte[] large = new byte[LARGE_FILE_SIZE];
+            new Random(0).nextBytes(large);
+            Files.write(dir.resolve("small"), "JavaCrypt".getBytes("UTF-8"));
+            Files.write(dir.resolve("large"), large);
+
+            for (String name : new String[]{"small", "large"}) {
+                run(Command.ENCRYPT, pub, file(dir, name), file(dir, name + ".enc"));
+                run(Command.DECRYPT, priv, file(dir, name + ".enc"), file(dir, name + ".dec"));
+                run(Command.VERIFY, priv, file(dir, name + ".enc"));
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+            delete(dir);
+        }
+    }
+
+    // Runs a command through the entry point of the command line, so its startup path is archived too
+    private static void run(Command command, String... args) throws Exception {
+        String[] commandLine = new String[args.length + 1];
+        commandLine[0] = command.getName();
+        System.arraycopy(args, 0, commandLine, 1, args.length);
+        MyCryptMain.main(commandLine);
+    }
+
+    // The path of a file in the training directory
+    private static String file(Path dir, String name) {
+        return dir.resolve(name).toString();
+    }
+
+    // Deletes the training directory and everything in it
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * File: ChunkManifest.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+/**
+ * The sidecar that incremental encryption keeps next to an incremental file: which plaintext chunk is stored
+ * where, so that the next run can tell unchanged chunks by their hash and reuse their ciphertext.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   magic           4 bytes  "JCRM"
+ *   version         1 byte
+ *   file length     8 bytes  length of the incremental file this manifest describes
+ *   trailer offset  8 bytes
+ *   chunk size      4 bytes  average chunk size of the chunker
+ *   recipient       since version 2: fingerprint of the public key the data keys are wrapped with, as
+ *                   modified UTF-8 with a 2-byte length, see {@link KeyCodec#fingerprint(java.security.Key)}
+ *   salt            32 bytes random per manifest, prefixed to every chunk before hashing
+ *   keys            as in the trailer of the file
+ *   chunk count     4 bytes
+ *   chunks          per chunk: SHA-256 of salt and plaintext (32 bytes), then the table entry of the trailer
+ * </pre>
+ * The hashes are salted so they cannot be matched against other files, but anyone holding the manifest can still
+ * confirm a guess of a chunk's content. The manifest is written owner-readable only and must be trusted like the
+ * input: a manipulated manifest makes the next run store the wrong chunks. A manifest of version 1 does not name
+ * the recipient; the next run writes such a file from scratch.
+ */
+public class ChunkManifest {
+
+    // File signature
+    public static final byte[] MAGIC = {'J', 'C', 'R', 'M'};
+
+    // Current format version
+    public static final int VERSION = 2;
+
+    // First format version that records the recipient
+    public static final int VERSION_RECIPIENT = 2;
+
+    // Suffix of the manifest next to the incremental file
+    public static final String SUFFIX = ".jcm";
+
+    // Length of the chunk hashes
+    public static final int HASH_LENGTH = 32;
+
+    private final long fileLength;
+    private final long trailerOffset;
+    private final int chunkSize;
+    private final String recipient;
+    private final byte[] salt;
+    private final List<WrappedKey> keys;
+    private final List<Entry> entries;
+
+    /**
+     * Constructs a manifest.
+     *
+     * @param fileLength    The length of the incremental file.
+     * @param trailerOffset The offset of its current trailer.
+     * @param chunkSize     The average chunk size.
+     * @param recipient     The fingerprint of the recipient's public key, or null if unknown.
+     * @param salt          The salt of the chunk hashes.
+     * @param keys          The keys of the current trailer.
+     * @param entries       The chunks in plaintext order.
+     */
+    public ChunkManifest(long fileLength, long trailerOffset, int chunkSize, String recipient, byte[] salt,
+                         List<WrappedKey> keys, List<Entry> entries) {
+        if (salt.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Salt must be " + HASH_LENGTH + " bytes");
+        }
+        this.fileLength = fileLength;
+        this.trailerOffset = trailerOffset;
+        this.chunkSize = chunkSize;
+        this.recipient = recipient;
+        this.salt = salt.clone();
+        this.keys = new ArrayList<>(keys);
+        this.entries = new ArrayList<>(entries);
+    }
+
+    /**
+     * Reads a manifest.
+     *
+     * @param path The manifest file.
+     * @return The manifest.
+     * @throws IOException If the file cannot be read or is not a manifest.
+     */
+    public static ChunkManifest read(Path path) throws IOException {
+        try (DataInputStream din = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), RunEncrypt.STREAM_BUFSIZE))) {
+            byte[] magic = new byte[MAGIC.length];
+            din.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a chunk manifest: " + path);
+            }
+            int version = din.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported manifest version: " + version);
+            }
+            long fileLength = din.readLong();
+            long trailerOffset = din.readLong();
+            int chunkSize = din.readInt();
+            String recipient = version >= VERSION_RECIPIENT ? din.readUTF() : "";
+            byte[] salt = new byte[HASH_LENGTH];
+            din.readFully(salt);
+            List<WrappedKey> keys = ChunkedContainer.readKeys(din);
+
+            int count = din.readInt();
+            List<Entry> entries = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                byte[] hash = new byte[HASH_LENGTH];
+                din.readFully(hash);
+                int keyIndex = din.readUnsignedByte();
+                long offset = din.readLong();
+                int cipherLength = din.readInt();
+                byte[] nonce = new byte[SegmentCipher.NONCE_LENGTH];
+                din.readFully(nonce);
+                byte[] tag = new byte[SegmentCipher.TAG_LENGTH];
+                din.readFully(tag);
+                if (keyIndex >= keys.size()) {
+                    throw new IOException("Malformed chunk manifest: " + path);
+                }
+                entries.add(new Entry(hash, new ChunkedContainer.Chunk(keyIndex, offset, cipherLength, nonce, tag)));
+            }
+            return new ChunkManifest(fileLength, trailerOffset, chunkSize, recipient.isEmpty() ? null : recipient,
+                salt, keys, entries);
+        }
+    }
+
+    /**
+     * Writes the manifest. It is written to a temporary file first and moved into place, so a crash leaves either
+     * the old or the new manifest.
+     *
+     * @param path The manifest file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), RunEncrypt.STREAM_BUFSIZE))) {
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system
+            }
+            dos.write(MAGIC);
+            dos.writeByte(VERSION);
+            dos.writeLong(fileLength);
+            dos.writeLong(trailerOffset);
+            dos.writeInt(chunkSize);
+            dos.writeUTF(recipient != null ? recipient : "");
+            dos.write(salt);
+            ChunkedContainer.writeKeys(dos, keys);
+            dos.writeInt(entries.size());
+            for (Entry entry : entries) {
+                ChunkedContainer.Chunk chunk = entry.chunk;
+                dos.write(entry.hash);
+                dos.writeByte(chunk.getKeyIndex());
+                dos.writeLong(chunk.getOffset());
+                dos.writeInt(chunk.getCipherLength());
+                dos.write(chunk.getNonce());
+                dos.write(chunk.getTag());
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    public long getTrailerOffset() {
+        return trailerOffset;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the fingerprint of the public key the data keys of the file are wrapped with.
+     *
+     * @return The fingerprint, or null if the manifest does not record it.
+     */
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public byte[] getSalt() {
+        return salt.clone();
+    }
+
+    public List<WrappedKey> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the number of ciphertext bytes in the file that no chunk of the current version uses: replaced
+     * chunks and old trailers.
+     *
+     * @return The number of unused bytes.
+     */
+    public long getUnusedBytes() {
+        long used = ChunkedContainer.HEADER_LENGTH + (fileLength - trailerOffset);
+        // Repeated content is stored once and referenced by several entries
+        Set<Long> offsets = new HashSet<>();
+        for (Entry entry : entries) {
+            if (offsets.add(entry.chunk.getOffset())) {
+                used += entry.chunk.getCipherLength();
+            }
+        }
+        return Math.max(0, fileLength - used);
+    }
+
+    /**
+     * One chunk: the hash of its plaintext and where its ciphertext is.
+     */
+    public static final class Entry {
+
+        private final byte[] hash;
+        private final ChunkedContainer.Chunk chunk;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param hash  The salted SHA-256 of the plaintext.
+         * @param chunk The table entry of the chunk.
+         */
+        public Entry(byte[] hash, ChunkedContainer.Chunk chunk) {
+            this.hash = hash.clone();
+            this.chunk = chunk;
+        }
+
+        public byte[] getHash() {
+            return hash.clone();
+        }
+
+        public ChunkedContainer.Chunk getChunk() {
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * File: ChunkedContainer.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * The file format written by incremental encryption (see {@link IncrementalEncryptor}).
+ * <p>
+ * Unlike the hybrid format, whose segments are bound to their position, the chunks of this format can be reused
+ * at any place in a later version of the file. Each chunk is encrypted with AES-256-GCM under a random nonce, and
+ * the order of the chunks is given by an encrypted table in the trailer at the end of the file. A new version
+ * appends its new chunks and a new trailer; the chunks it shares with the old version stay where they are.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   magic          4 bytes  "JCRK"
+ *   version        1 byte
+ *   chunks and the trailers of earlier versions
+ *   trailer
+ *     key count      2 bytes
+ *     keys           per key: wrap algorithm (1 byte), length (2 bytes), wrapped data key
+ *     table nonce    12 bytes
+ *     table length   4 bytes
+ *     table          encrypted with the last key; associated data: magic, version and the keys
+ *   trailer offset 8 bytes
+ *   magic          4 bytes  "JCRK"
+ * </pre>
+ * The table holds the plaintext size and, per chunk in plaintext order, the key index (1 byte), the offset of
+ * the ciphertext (8 bytes), its length including the tag (4 bytes), the nonce (12 bytes) and the tag (16 bytes).
+ * Every version encrypts its new chunks with a new data key, so appending needs the public key only; the keys of
+ * older versions are carried over as long as chunks still use them.
+ */
+public final class ChunkedContainer {
+
+    // File signature
+    public static final byte[] MAGIC = {'J', 'C', 'R', 'K'};
+
+    // Current format version
+    public static final int VERSION = 1;
+
+    // Length of the magic and version at the start of the file
+    public static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    // Length of the trailer offset and magic at the end of the file
+    public static final int FOOTER_LENGTH = 8 + MAGIC.length;
+
+    // Most data keys a trailer can list
+    public static final int MAX_KEYS = 64;
+
+    // Length of a table entry
+    private static final int CHUNK_ENTRY_LENGTH = 1 + 8 + 4 + SegmentCipher.NONCE_LENGTH + SegmentCipher.TAG_LENGTH;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ChunkedContainer() {
+    }
+
+    /**
+     * Checks whether the given bytes start with the signature of this format.
+     *
+     * @param head The first bytes of a file.
+     * @param len  The number of valid bytes in head.
+     * @return True if the signature matches.
+     */
+    public static boolean hasMagic(byte[] head, int len) {
+        return len >= MAGIC.length && Arrays.equals(Arrays.copyOf(head, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Returns the bytes at the start of the file, which every chunk authenticates as associated data.
+     *
+     * @return The header bytes.
+     */
+    public static byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, HEADER_LENGTH);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    /**
+     * Encrypts one chunk and writes it to the file.
+     *
+     * @param cipher   A cipher for {@link SegmentCipher#AES_GCM_TRANSFORMATION}, reused across chunks.
+     * @param key      The data key of the current version.
+     * @param keyIndex The index of the data key in the trailer.
+     * @param in       The plaintext buffer.
+     * @param inOff    Offset of the plaintext.
+     * @param inLen    Length of the plaintext.
+     * @param file     The file.
+     * @param position The position to write the ciphertext at.
+     * @return The table entry of the chunk.
+     * @throws GeneralSecurityException If encryption fails.
+     * @throws IOException              If the file cannot be written.
+     */
+    public static Chunk writeChunk(Cipher cipher, SecretKey key, int keyIndex, byte[] in, int inOff, int inLen,
+                                   FileChannel file, long position) throws GeneralSecurityException, IOException {
+        byte[] nonce = new byte[SegmentCipher.NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(SegmentCipher.TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header());
+        byte[] out = cipher.doFinal(in, inOff, inLen);
+        writeFully(file, ByteBuffer.wrap(out), position);
+        return new Chunk(keyIndex, position, out.length, nonce,
+            Arrays.copyOfRange(out, out.length - SegmentCipher.TAG_LENGTH, out.length));
+    }
+
+    /**
+     * Writes a trailer and the footer that points to it.
+     *
+     * @param file     The file.
+     * @param position The position of the trailer; the file is truncated after the footer.
+     * @param keys     The wrapped data keys; the last one encrypts the table.
+     * @param tableKey The unwrapped last key.
+     * @param chunks   The chunks in plaintext order.
+     * @param size     The plaintext size.
+     * @return The length of the file.
+     * @throws GeneralSecurityException If the table cannot be encrypted.
+     * @throws IOException              If the file cannot be written.
+     */
+    public static long writeTrailer(FileChannel file, long position, List<WrappedKey> keys, SecretKey tableKey,
+                                    List<Chunk> chunks, long size) throws GeneralSecurityException, IOException {
+        if (keys.isEmpty() || keys.size() > MAX_KEYS) {
+            throw new IllegalArgumentException("A trailer lists 1 to " + MAX_KEYS + " keys");
+        }
+        byte[] keyBytes = encodeKeys(keys);
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream(12 + chunks.size() * CHUNK_ENTRY_LENGTH);
+        DataOutputStream dos = new DataOutputStream(table);
+        dos.writeLong(size);
+        dos.writeInt(chunks.size());
+        for (Chunk chunk : chunks) {
+            dos.writeByte(chunk.keyIndex);
+            dos.writeLong(chunk.offset);
+            dos.writeInt(chunk.cipherLength);
+            dos.write(chunk.nonce);
+            dos.write(chunk.tag);
+        }
+
+        byte[] nonce = new byte[SegmentCipher.NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        Cipher cipher = Cipher.getInstance(SegmentCipher.AES_GCM_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, tableKey, new GCMParameterSpec(SegmentCipher.TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header());
+        cipher.updateAAD(keyBytes);
+        byte[] encryptedTable = cipher.doFinal(table.toByteArray());
+
+        ByteArrayOutputStream trailer = new ByteArrayOutputStream(keyBytes.length + encryptedTable.length + 32);
+        dos = new DataOutputStream(trailer);
+        dos.write(keyBytes);
+        dos.write(nonce);
+        dos.writeInt(encryptedTable.length);
+        dos.write(encryptedTable);
+        dos.writeLong(position);
+        dos.write(MAGIC);
+
+        writeFully(file, ByteBuffer.wrap(trailer.toByteArray()), position);
+        long length = position + trailer.size();
+        file.truncate(length);
+        return length;
+    }
+
+    /**
+     * Reads the footer and returns the offset of the current trailer.
+     *
+     * @param file   The file.
+     * @param length The length of the file.
+     * @return The trailer offset.
+     * @throws IOException If the file has no valid footer.
+     */
+    public static long readTrailerOffset(FileChannel file, long length) throws IOException {
+        if (length < HEADER_LENGTH + FOOTER_LENGTH) {
+            throw new IOException("Truncated incremental file");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+        readFully(file, footer, length - FOOTER_LENGTH);
+        long trailerOffset = footer.getLong(0);
+        byte[] magic = Arrays.copyOfRange(footer.array(), 8, FOOTER_LENGTH);
+        if (!Arrays.equals(magic, MAGIC) || trailerOffset < HEADER_LENGTH
+            || trailerOffset > length - FOOTER_LENGTH) {
+            throw new IOException("Truncated or incomplete incremental file (bad footer)");
+        }
+        return trailerOffset;
+    }
+
+    /**
+     * Reads the current trailer and decrypts its table.
+     *
+     * @param file       The file.
+     * @param privateKey The recipient's private key.
+     * @return The trailer.
+     * @throws IOException              If the file is not a complete incremental file.
+     * @throws GeneralSecurityException If a key cannot be unwrapped or the table fails authentication.
+     */
+    public static Trailer readTrailer(FileChannel file, PrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        long length = file.size();
+        ByteBuffer head = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(file, head, 0);
+        if (!hasMagic(head.array(), HEADER_LENGTH)) {
+            throw new UnsupportedFormatException("Not an incremental JavaCrypt file (bad signature)");
+        }
+        if (head.get(MAGIC.length) != VERSION) {
+            throw new UnsupportedFormatException("Unsupported format version: " + head.get(MAGIC.length));
+        }
+
+        long trailerOffset = readTrailerOffset(file, length);
+        long trailerLength = length - FOOTER_LENGTH - trailerOffset;
+        if (trailerLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("Trailer too large: " + trailerLength);
+        }
+        ByteBuffer trailer = ByteBuffer.allocate((int) trailerLength);
+        readFully(file, trailer, trailerOffset);
+        DataInputStream din = new DataInputStream(new ByteArrayInputStream(trailer.array()));
+
+        List<WrappedKey> keys = readKeys(din);
+        byte[] keyBytes = encodeKeys(keys);
+        byte[] nonce = new byte[SegmentCipher.NONCE_LENGTH];
+        din.readFully(nonce);
+        byte[] encryptedTable = new byte[din.readInt()];
+        din.readFully(encryptedTable);
+        if (din.available() != 0) {
+            throw new IOException("Malformed trailer");
+        }
+
+        List<SecretKey> dataKeys = new ArrayList<>(keys.size());
+        for (WrappedKey key : keys) {
+            dataKeys.add(KeyWrap.unwrap(key.getWrapAlgorithm(), key.getEntry(), privateKey));
+        }
+        Cipher cipher = Cipher.getInstance(SegmentCipher.AES_GCM_TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, dataKeys.get(dataKeys.size() - 1),
+            new GCMParameterSpec(SegmentCipher.TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header());
+        cipher.updateAAD(keyBytes);
+        din = new DataInputStream(new ByteArrayInputStream(cipher.doFinal(encryptedTable)));
+
+        long size = din.readLong();
+        int count = din.readInt();
+        List<Chunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int keyIndex = din.readUnsignedByte();
+            long offset = din.readLong();
+            int cipherLength = din.readInt();
+            byte[] chunkNonce = new byte[SegmentCipher.NONCE_LENGTH];
+            din.readFully(chunkNonce);
+            byte[] tag = new byte[SegmentCipher.TAG_LENGTH];
+            din.readFully(tag);
+            if (keyIndex >= keys.size() || cipherLength < SegmentCipher.TAG_LENGTH || offset < HEADER_LENGTH
+                || offset > trailerOffset - cipherLength) {
+                throw new IOException("Malformed chunk table");
+            }
+            chunks.add(new Chunk(keyIndex, offset, cipherLength, chunkNonce, tag));
+        }
+        return new Trailer(trailerOffset, keys, dataKeys, chunks, size);
+    }
+
+    /**
+     * Decrypts a file in this format.
+     *
+     * @param file         The file.
+     * @param privateKey   The recipient's private key.
+     * @param outputWriter The plaintext stream.
+     * @param stats        The statistics of the run.
+     * @return The number of plaintext bytes written.
+     * @throws IOException              If the file is not complete or a chunk fails authentication.
+     * @throws GeneralSecurityException If a key cannot be unwrapped.
+     */
+    public static long decrypt(FileChannel file, PrivateKey privateKey, OutputStream outputWriter, CryptStats stats)
+            throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        Trailer trailer = readTrailer(file, privateKey);
+        stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
+        stats.addBytesIn(file.size());
+
+        Cipher cipher = Cipher.getInstance(SegmentCipher.AES_GCM_TRANSFORMATION);
+        byte[] in = new byte[0];
+        byte[] out = new byte[0];
+        long size = 0;
+        for (int i = 0; i < trailer.chunks.size(); i++) {
+            Chunk chunk = trailer.chunks.get(i);
+            if (in.length < chunk.cipherLength) {
+                in = new byte[chunk.cipherLength];
+                out = new byte[chunk.cipherLength];
+            }
+
+            start = System.nanoTime();
+            readFully(file, ByteBuffer.wrap(in, 0, chunk.cipherLength), chunk.offset);
+            stats.record(CryptStats.Phase.READ, start, chunk.cipherLength);
+
+            start = System.nanoTime();
+            int len;
+            try {
+                // The tag in the table ties the ciphertext at this position to this version of the file
+                byte[] tag = Arrays.copyOfRange(in, chunk.cipherLength - SegmentCipher.TAG_LENGTH, chunk.cipherLength);
+                if (!MessageDigest.isEqual(tag, chunk.tag)) {
+                    throw new GeneralSecurityException("Tag mismatch!");
+                }
+                cipher.init(Cipher.DECRYPT_MODE, trailer.dataKeys.get(chunk.keyIndex),
+                    new GCMParameterSpec(SegmentCipher.TAG_LENGTH * 8, chunk.nonce));
+                cipher.updateAAD(header());
+                len = cipher.doFinal(in, 0, chunk.cipherLength, out, 0);
+            } catch (GeneralSecurityException e) {
+                throw new AuthenticationException(
+                    "Chunk " + i + " at offset " + chunk.offset + " failed: " + e.getMessage(), e);
+            }
+            stats.record(CryptStats.Phase.CRYPTO, start, len);
+
+            start = System.nanoTime();
+            outputWriter.write(out, 0, len);
+            stats.record(CryptStats.Phase.WRITE, start, len);
+            size += len;
+        }
+        if (size != trailer.size) {
+            throw new IOException("Chunk table does not add up to the plaintext size");
+        }
+        stats.addBytesOut(size);
+        return size;
+    }
+
+    // The key section of a trailer
+    private static byte[] encodeKeys(List<WrappedKey> keys) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeShort(keys.size());
+            for (WrappedKey key : keys) {
+                dos.writeByte(key.getWrapAlgorithm());
+                dos.writeShort(key.getEntryLength());
+                dos.write(key.getEntry());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Reads a key section, as written in trailers and manifests.
+     *
+     * @param din The stream.
+     * @return The wrapped keys.
+     * @throws IOException If the section is malformed.
+     */
+    static List<WrappedKey> readKeys(DataInputStream din) throws IOException {
+        int count = din.readUnsignedShort();
+        if (count == 0 || count > MAX_KEYS) {
+            throw new IOException("Invalid key count: " + count);
+        }
+        List<WrappedKey> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int wrapAlgorithm = din.readUnsignedByte();
+            byte[] entry = new byte[din.readUnsignedShort()];
+            din.readFully(entry);
+            keys.add(new WrappedKey(wrapAlgorithm, entry));
+        }
+        return keys;
+    }
+
+    /**
+     * Writes a key section.
+     *
+     * @param dos  The stream.
+     * @param keys The wrapped keys.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeKeys(DataOutputStream dos, List<WrappedKey> keys) throws IOException {
+        dos.write(encodeKeys(keys));
+    }
+
+    static void readFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = file.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("Truncated incremental file");
+            }
+            position += n;
+        }
+    }
+
+    static void writeFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += file.write(buffer, position);
+        }
+    }
+
+    /**
+     * The table entry of one chunk.
+     */
+    public static final class Chunk {
+
+        private final int keyIndex;
+        private final long offset;
+        private final int cipherLength;
+        private final byte[] nonce;
+        private final byte[] tag;
+
+        /**
+         * Constructs a table entry.
+         *
+         * @param keyIndex     The index of the data key in the trailer.
+         * @param offset       The offset of the ciphertext in the file.
+         * @param cipherLength The length of the ciphertext including the tag.
+         * @param nonce        The nonce.
+         * @param tag          The authentication tag.
+         */
+        public Chunk(int keyIndex, long offset, int cipherLength, byte[] nonce, byte[] tag) {
+            this.keyIndex = keyIndex;
+            this.offset = offset;
+            this.cipherLength = cipherLength;
+            this.nonce = nonce.clone();
+            this.tag = tag.clone();
+        }
+
+        /**
+         * Returns the same chunk with another key index, for a trailer that lists the keys differently.
+         *
+         * @param newKeyIndex The key index.
+         * @return The entry.
+         */
+        public Chunk withKeyIndex(int newKeyIndex) {
+            return newKeyIndex == keyIndex ? this : new Chunk(newKeyIndex, offset, cipherLength, nonce, tag);
+        }
+
+        public int getKeyIndex() {
+            return keyIndex;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getCipherLength() {
+            return cipherLength;
+        }
+
+        public int getPlainLength() {
+            return cipherLength - SegmentCipher.TAG_LENGTH;
+        }
+
+        byte[] getNonce() {
+            return nonce;
+        }
+
+        byte[] getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * The current trailer of a file, with its keys unwrapped.
+     */
+    public static final class Trailer {
+
+        private final long offset;
+        private final List<WrappedKey> keys;
+        private final List<SecretKey> dataKeys;
+        private final List<Chunk> chunks;
+        private final long size;
+
+        Trailer(long offset, List<WrappedKey> keys, List<SecretKey> dataKeys, List<Chunk> chunks, long size) {
+            this.offset = offset;
+            this.keys = keys;
+            this.dataKeys = dataKeys;
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public List<Chunk> getChunks() {
+            return Collections.unmodifiableList(chunks);
+        }
+
+        public int getKeyCount() {
+            return keys.size();
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * File: CipherSuites.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import javax.crypto.Cipher;
+
+/**
+ * The cipher suites of the hybrid format, by id and by the name used on the command line, and the choice of the
+ * fastest one for this machine.
+ * <p>
+ * AES-GCM is fast where the CPU has AES and carry-less multiply instructions, which the JVM uses as intrinsics;
+ * without them, ChaCha20-Poly1305, which needs nothing but additions, rotations and XORs, is several times faster.
+ * {@link #fastest()} therefore looks for these instructions instead of timing the ciphers, which would take longer
+ * than encrypting a small file and mean little before the JIT compiler has run. The -bench command measures both
+ * on the current machine.
+ */
+public final class CipherSuites {
+
+    // Command-line name of AES-256-GCM
+    public static final String NAME_AES_GCM = "aes-gcm";
+
+    // Command-line name of ChaCha20-Poly1305
+    public static final String NAME_CHACHA20_POLY1305 = "chacha20-poly1305";
+
+    // Command-line name of the automatic choice
+    public static final String NAME_AUTO = "auto";
+
+    // Where Linux lists the CPU features
+    private static final Path CPU_INFO = Paths.get("/proc/cpuinfo");
+
+    // The suite chosen by fastest(), 0 until the first call
+    private static volatile int fastest;
+
+    private CipherSuites() {
+    }
+
+    /**
+     * Returns the suite for a command-line name.
+     *
+     * @param name "aes-gcm", "chacha20-poly1305" or "auto" for {@link #fastest()}.
+     * @return The suite id, see {@link HybridHeader#SUITE_AES_GCM}.
+     * @throws IllegalArgumentException If the name is unknown or the suite is not available in this JVM.
+     */
+    public static int forName(String name) {
+        int suite;
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case NAME_AES_GCM:
+                suite = HybridHeader.SUITE_AES_GCM;
+                break;
+            case NAME_CHACHA20_POLY1305:
+                suite = HybridHeader.SUITE_CHACHA20_POLY1305;
+                break;
+            case NAME_AUTO:
+                return fastest();
+            default:
+                throw new IllegalArgumentException("Unknown cipher suite: " + name + " (expected " + NAME_AES_GCM
+                    + ", " + NAME_CHACHA20_POLY1305 + " or " + NAME_AUTO + ")");
+        }
+        if (!isAvailable(suite)) {
+            throw new IllegalArgumentException("Cipher suite not available in this JVM: " + name);
+        }
+        return suite;
+    }
+
+    /**
+     * Returns the command-line name of a suite.
+     *
+     * @param suite The suite id.
+     * @return The name, or "suite n" for an unknown id.
+     */
+    public static String getName(int suite) {
+        switch (suite) {
+            case HybridHeader.SUITE_AES_GCM:
+                return NAME_AES_GCM;
+            case HybridHeader.SUITE_CHACHA20_POLY1305:
+                return NAME_CHACHA20_POLY1305;
+            default:
+                return "suite " + suite;
+        }
+    }
+
+    /**
+     * Returns the JCE transformation of a suite.
+     *
+     * @param suite The suite id.
+     * @return The transformation.
+     * @throws GeneralSecurityException If the suite is unknown.
+     */
+    public static String getTransformation(int suite) throws GeneralSecurityException {
+        switch (suite) {
+            case HybridHeader.SUITE_AES_GCM:
+                return SegmentCipher.AES_GCM_TRANSFORMATION;
+            case HybridHeader.SUITE_CHACHA20_POLY1305:
+                return SegmentCipher.CHACHA20_POLY1305_TRANSFORMATION;
+            default:
+                throw new NoSuchAlgorithmException("Unsupported cipher suite: " + suite);
+        }
+    }
+
+    /**
+     * Checks whether a provider of this JVM implements the suite.
+     *
+     * @param suite The suite id.
+     * @return True if the suite can be used.
+     */
+    public static boolean isAvailable(int suite) {
+        try {
+            Cipher.getInstance(getTransformation(suite));
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the suite that is fastest on this machine: AES-GCM if the CPU has AES instructions or they cannot be
+     * detected, ChaCha20-Poly1305 otherwise. The result is computed once per process.
+     *
+     * @return The suite id.
+     */
+    public static int fastest() {
+        int suite = fastest;
+        if (suite == 0) {
+            suite = Boolean.FALSE.equals(hasAesInstructions())
+                && isAvailable(HybridHeader.SUITE_CHACHA20_POLY1305)
+                ? HybridHeader.SUITE_CHACHA20_POLY1305
+                : HybridHeader.SUITE_AES_GCM;
+            fastest = suite;
+        }
+        return suite;
+    }
+
+    /**
+     * Checks whether the CPU has the instructions AES-GCM is accelerated with: AES and PCLMULQDQ on x86, AES and
+     * PMULL on ARM.
+     *
+     * @return True or false, or null if the CPU features cannot be read, as on systems other than Linux.
+     */
+    public static Boolean hasAesInstructions() {
+        if (!Files.isReadable(CPU_INFO)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(CPU_INFO)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                // "flags" on x86, "Features" on ARM; the first processor stands for all
+                String lower = line.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("flags") || lower.startsWith("features")) {
+                    String features = " " + lower.substring(lower.indexOf(':') + 1).trim() + " ";
+                    return features.contains(" aes ")
+                        && (features.contains(" pclmulqdq ") || features.contains(" pmull "));
+                }
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
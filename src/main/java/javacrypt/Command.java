@@ -0,0 +1,179 @@
+/*
+ * File: Command.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+/**
+ * The commands of the command line, each with its name, its argument synopsis and the code that creates it.
+ * <p>
+ * The commands are created directly instead of by class name through reflection, so a run loads the classes of
+ * the command it executes and nothing of the reflection machinery. The order is the order of the usage text.
+ * <p>
+ * Example usage:
+ * <p>
+ * Command command = Command.forName("-decrypt");
+ * command.newInstance().run(arguments);
+ */
+public enum Command {
+
+    GENKEYS("-genkeys", "[priv_keyfile] [pub_keyfile] [--algorithm rsa|ec|x25519] [--key-size bits] [--format pem|der]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunGenKeys();
+        }
+    },
+    ENCRYPT("-encrypt", "[pub_keyfile] [ifile] [ofile] [--recipient pub_keyfile ...] [--threads n] "
+        + "[--segment-size bytes] [--suite name] [--compress] [--incremental [--manifest file] [--chunk-size bytes]] "
+        + "[--resume] [--stats-json file]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunEncrypt();
+        }
+    },
+    DECRYPT("-decrypt", "[privkeyfile] [ifile] [ofile] [--threads n] [--stats-json file]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunDecrypt();
+        }
+    },
+    COPY("-copy", "[ifile] [ofile] [--parallel] [--threads n]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunCopy();
+        }
+    },
+    ENCRYPT_DIR("-encrypt-dir", "[pub_keyfile] [srcdir] [dstdir] [--recipient pub_keyfile ...] [--jobs n] "
+        + "[--threads n] [--segment-size bytes] [--suite name] [--compress] [--stats-json file]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunEncryptDir();
+        }
+    },
+    DECRYPT_DIR("-decrypt-dir", "[privkeyfile] [srcdir] [dstdir] [--jobs n] [--threads n] [--stats-json file]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunDecryptDir();
+        }
+    },
+    CONVERT_KEY("-convert-key", "[ikeyfile] [okeyfile] [--format pem|der]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunConvertKey();
+        }
+    },
+    DAEMON("-daemon", "[socket] [keyfile ...] [--threads n]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunDaemon();
+        }
+    },
+    CLIENT("-client", "[socket] [encrypt|decrypt] [keyfile] [ifile] [ofile]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunClient();
+        }
+    },
+    GENKEYS_BATCH("-genkeys-batch", "[count] [outdir] [--algorithm rsa|ec|x25519] [--key-size bits] [--threads n] "
+        + "[--format pem|der]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunGenKeysBatch();
+        }
+    },
+    DECRYPT_RANGE("-decrypt-range", "[privkeyfile] [ifile] [ofile] [offset] [length]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunDecryptRange();
+        }
+    },
+    PACK("-pack", "[pub_keyfile] [archive] [input ...] [--jobs n] [--threads n] [--segment-size bytes]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunPack();
+        }
+    },
+    UNPACK("-unpack", "[privkeyfile] [archive] [outdir] [member ...] [--jobs n] [--threads n]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunUnpack();
+        }
+    },
+    LIST("-list", "[privkeyfile] [archive]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunList();
+        }
+    },
+    VERIFY("-verify", "[privkeyfile] [file ...] [--jobs n] [--threads n] [--stats-json file]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunVerify();
+        }
+    },
+    REWRAP("-rewrap", "[old_privkeyfile] [new_pubkeyfile] [file ...] [--jobs n]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunRewrap();
+        }
+    },
+    BENCH("-bench", "[--seconds n] [--segment-size bytes]") {
+        @Override
+        public RunnableInterface newInstance() {
+            return new RunBench();
+        }
+    };
+
+    private final String name;
+    private final String synopsis;
+
+    Command(String name, String synopsis) {
+        this.name = name;
+        this.synopsis = synopsis;
+    }
+
+    /**
+     * Creates a new instance of the command.
+     *
+     * @return The command, ready to run.
+     */
+    public abstract RunnableInterface newInstance();
+
+    /**
+     * Returns the command with the given name.
+     *
+     * @param name The name as given on the command line, such as "-encrypt".
+     * @return The command, or null if there is no command of that name.
+     */
+    public static Command forName(String name) {
+        for (Command command : values()) {
+            if (command.name.equals(name)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the command as given on the command line.
+     *
+     * @return The name, such as "-encrypt".
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the arguments the command takes, for the usage text.
+     *
+     * @return The synopsis.
+     */
+    public String getSynopsis() {
+        return synopsis;
+    }
+}
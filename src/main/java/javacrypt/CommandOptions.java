@@ -0,0 +1,183 @@
+/*
+ * File: CommandOptions.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.util.*;
+
+/**
+ * Splits the arguments of a command into positional arguments and named options.
+ * <p>
+ * Options start with "--". Value options consume the following argument ("--threads 8"), flag options stand alone
+ * ("--resume"). Options may appear anywhere between the positional arguments. A value option given more than once
+ * keeps all its values for {@link #getAll(String)}; {@link #get(String, String)} returns the last one.
+ * <p>
+ * Example usage:
+ * <p>
+ * CommandOptions options = new CommandOptions(args, new String[]{"--threads"}, new String[0]);
+ * int threads = options.getInt("--threads", 4);
+ * String inputFile = options.getPositional(0, "in.dat");
+ */
+public class CommandOptions {
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, List<String>> values = new HashMap<>();
+    private final Set<String> flags = new HashSet<>();
+
+    /**
+     * Parses the given arguments.
+     *
+     * @param args         The command-line arguments after the command keyword.
+     * @param valueOptions The names of options that take a value.
+     * @param flagOptions  The names of options without a value.
+     * @throws IllegalArgumentException If an unknown option is given or a value is missing.
+     */
+    public CommandOptions(List<String> args, String[] valueOptions, String[] flagOptions) {
+        List<String> valueNames = Arrays.asList(valueOptions);
+        List<String> flagNames = Arrays.asList(flagOptions);
+
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+            } else if (valueNames.contains(arg)) {
+                if (i + 1 >= args.size()) {
+                    throw new IllegalArgumentException("Missing value for option " + arg);
+                }
+                values.computeIfAbsent(arg, name -> new ArrayList<>()).add(args.get(++i));
+            } else if (flagNames.contains(arg)) {
+                flags.add(arg);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+    }
+
+    /**
+     * Returns the positional arguments.
+     *
+     * @return The positional arguments, in order.
+     */
+    public List<String> getPositional() {
+        return Collections.unmodifiableList(positional);
+    }
+
+    /**
+     * Returns a positional argument.
+     *
+     * @param index        The index among the positional arguments.
+     * @param defaultValue The value if the argument is absent.
+     * @return The argument.
+     */
+    public String getPositional(int index, String defaultValue) {
+        return index < positional.size() ? positional.get(index) : defaultValue;
+    }
+
+    /**
+     * Returns the value of an option.
+     *
+     * @param name         The option name.
+     * @param defaultValue The value if the option is absent.
+     * @return The value.
+     */
+    public String get(String name, String defaultValue) {
+        List<String> all = values.get(name);
+        return all != null ? all.get(all.size() - 1) : defaultValue;
+    }
+
+    /**
+     * Returns all values of an option that may be repeated.
+     *
+     * @param name The option name.
+     * @return The values in command-line order, or an empty list if the option is absent.
+     */
+    public List<String> getAll(String name) {
+        return Collections.unmodifiableList(values.getOrDefault(name, Collections.emptyList()));
+    }
+
+    /**
+     * Returns the value of a positive integer option.
+     *
+     * @param name         The option name.
+     * @param defaultValue The value if the option is absent.
+     * @return The value.
+     * @throws IllegalArgumentException If the value is not a positive integer.
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = get(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new NumberFormatException();
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Returns the value of a size option. The value may carry a K, M or G suffix (powers of 1024).
+     *
+     * @param name         The option name.
+     * @param defaultValue The value if the option is absent.
+     * @return The size in bytes.
+     * @throws IllegalArgumentException If the value is not a positive size.
+     */
+    public long getSize(String name, long defaultValue) {
+        String value = get(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        long result = parseSize(name, value);
+        if (result <= 0) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a size that may carry a K, M or G suffix (powers of 1024).
+     *
+     * @param name  The name of the option or argument, used in the error message.
+     * @param value The value.
+     * @return The size in bytes, zero or more.
+     * @throws IllegalArgumentException If the value is not a size.
+     */
+    public static long parseSize(String name, String value) {
+        String digits = value.toUpperCase(Locale.ROOT);
+        long factor = 1;
+        if (digits.endsWith("K") || digits.endsWith("M") || digits.endsWith("G")) {
+            factor = 1L << (10 * ("KMG".indexOf(digits.charAt(digits.length() - 1)) + 1));
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        try {
+            long result = Math.multiplyExact(Long.parseLong(digits), factor);
+            if (result < 0) {
+                throw new NumberFormatException();
+            }
+            return result;
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Checks whether a flag option is set.
+     *
+     * @param name The option name.
+     * @return True if the flag is set.
+     */
+    public boolean has(String name) {
+        return flags.contains(name);
+    }
+}
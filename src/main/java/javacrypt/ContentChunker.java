@@ -0,0 +1,168 @@
+/*
+ * File: ContentChunker.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a stream into content-defined chunks.
+ * <p>
+ * A chunk ends where a rolling Gear hash over the last 64 bytes hits a bit pattern, so the boundaries depend on the
+ * content rather than on the position: an edit in one place changes the chunks around it, and the chunks before
+ * and after it come out the same as before, even when the edit inserts or removes bytes. Hashing starts only after
+ * the minimum chunk size, and a chunk is cut at the maximum size if no boundary was found. Chunks are about the
+ * average size plus the minimum size on average.
+ * <p>
+ * The boundaries must stay the same across versions, or every chunk would change; the Gear table is therefore
+ * generated by a fixed SplitMix64 sequence instead of a JDK random generator.
+ * <p>
+ * Example usage:
+ * <p>
+ * ContentChunker chunker = new ContentChunker(in, 1 << 20);
+ * for (int len = chunker.next(); len > 0; len = chunker.next()) {
+ * process(chunker.getBuffer(), chunker.getOffset(), len);
+ * }
+ */
+public class ContentChunker {
+
+    // Default average chunk size
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    // Smallest accepted average chunk size
+    public static final int MIN_CHUNK_SIZE = 4096;
+
+    // Largest accepted average chunk size
+    public static final int MAX_CHUNK_SIZE = 64 << 20;
+
+    // Seed of the Gear table; changing it moves every chunk boundary
+    private static final long GEAR_SEED = 0x4A61766143727970L;
+
+    private static final long[] GEAR = gearTable();
+
+    private final InputStream in;
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+    private final byte[] buffer;
+    private int offset;
+    private int length;
+    private int end;
+    private boolean eof;
+
+    /**
+     * Constructs a chunker.
+     *
+     * @param in          The stream to split.
+     * @param averageSize The average chunk size, a power of two; chunks are at least a quarter and at most four
+     *                    times this size.
+     */
+    public ContentChunker(InputStream in, int averageSize) {
+        checkChunkSize(averageSize);
+        this.in = in;
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 4;
+        // The high bits of the hash depend on all of the last 64 bytes, the low bits only on the last few
+        this.mask = -1L << (64 - Integer.numberOfTrailingZeros(averageSize));
+        this.buffer = new byte[maxSize];
+    }
+
+    /**
+     * Checks an average chunk size.
+     *
+     * @param averageSize The average chunk size.
+     * @throws IllegalArgumentException If the size is not a power of two in the accepted range.
+     */
+    public static void checkChunkSize(int averageSize) {
+        if (Integer.bitCount(averageSize) != 1 || averageSize < MIN_CHUNK_SIZE || averageSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be a power of two between " + MIN_CHUNK_SIZE
+                + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+    }
+
+    /**
+     * Reads the next chunk.
+     *
+     * @return The length of the chunk, which starts at {@link #getOffset()} in {@link #getBuffer()}, or 0 at the
+     * end of the stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    public int next() throws IOException {
+        offset += length;
+        if (end - offset < maxSize && !eof) {
+            System.arraycopy(buffer, offset, buffer, 0, end - offset);
+            end -= offset;
+            offset = 0;
+            while (end < buffer.length) {
+                int n = in.read(buffer, end, buffer.length - end);
+                if (n < 0) {
+                    eof = true;
+                    break;
+                }
+                end += n;
+            }
+        }
+        length = cut(end - offset);
+        return length;
+    }
+
+    /**
+     * Returns the buffer holding the current chunk. It is overwritten by the next call to {@link #next()}.
+     *
+     * @return The buffer.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the offset of the current chunk in the buffer.
+     *
+     * @return The offset.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Finds the end of the chunk that starts at the current offset.
+     *
+     * @param available The number of buffered bytes from the current offset.
+     * @return The chunk length.
+     */
+    private int cut(int available) {
+        if (available <= minSize) {
+            return available;
+        }
+        int limit = offset + Math.min(available, maxSize);
+        long hash = 0;
+        for (int i = offset + minSize; i < limit; i++) {
+            hash = (hash << 1) + GEAR[buffer[i] & 0xFF];
+            if ((hash & mask) == 0) {
+                return i + 1 - offset;
+            }
+        }
+        return limit - offset;
+    }
+
+    // One random 64-bit value per byte value, from SplitMix64
+    private static long[] gearTable() {
+        long[] table = new long[256];
+        long state = GEAR_SEED;
+        for (int i = 0; i < table.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * File: CryptStats.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.*;
+
+/**
+ * Collects where the time of a run goes: key loading, cipher setup, reading, encryption or decryption, and
+ * writing, together with the bytes read and written.
+ * <p>
+ * Every recorded phase is also emitted as a {@link PhaseEvent} and every finished run as a {@link RunEvent}, so a
+ * Flight Recorder recording of a production job (-XX:StartFlightRecording) shows them without further options.
+ * The counters are thread-safe; when several files are processed concurrently the phase times add up across
+ * threads and can exceed the elapsed time.
+ */
+public class CryptStats {
+
+    /**
+     * The phases of a run.
+     */
+    public enum Phase {
+        KEY_LOAD("keyLoad"),
+        CIPHER_INIT("cipherInit"),
+        READ("read"),
+        CRYPTO("crypto"),
+        WRITE("write");
+
+        private final String jsonName;
+
+        Phase(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    private final String command;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private long allocatedAtStart = -1;
+    private long elapsedNanos = -1;
+    private long allocatedBytes = -1;
+
+    /**
+     * Constructs the statistics of a run.
+     *
+     * @param command The name of the command, recorded in the events and the report.
+     */
+    public CryptStats(String command) {
+        this.command = command;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Starts counting the bytes allocated on the heap until {@link #finish()}. This is not done by default, since
+     * the management beans it needs add to the startup time.
+     */
+    public void trackAllocations() {
+        allocatedAtStart = allocatedBytes();
+    }
+
+    /**
+     * Records the time spent in a phase.
+     *
+     * @param phase The phase.
+     * @param start The System.nanoTime() at the start of the phase.
+     * @param bytes The number of bytes the phase handled, or 0.
+     */
+    public void record(Phase phase, long start, long bytes) {
+        recordNanos(phase, System.nanoTime() - start, bytes);
+    }
+
+    /**
+     * Records time spent in a phase that was measured in pieces, such as the blocks of a pipeline stage.
+     *
+     * @param phase The phase.
+     * @param nanos The time in nanoseconds.
+     * @param bytes The number of bytes the phase handled, or 0.
+     */
+    public void recordNanos(Phase phase, long nanos, long bytes) {
+        phaseNanos[phase.ordinal()].add(nanos);
+
+        // Loading an event class costs startup time, so it is only touched once a recording exists
+        if (!FlightRecorder.isInitialized()) {
+            return;
+        }
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.command = command;
+            event.phase = phase.jsonName;
+            event.time = nanos;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds to the number of bytes read.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * Adds to the number of bytes written.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Counts one processed file.
+     */
+    public void addFile() {
+        files.increment();
+    }
+
+    /**
+     * Ends the run: fixes the elapsed time and the allocated bytes, and emits the {@link RunEvent}.
+     */
+    public void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        if (allocatedAtStart >= 0) {
+            allocatedBytes = Math.max(0, allocatedBytes() - allocatedAtStart);
+        }
+
+        if (!FlightRecorder.isInitialized()) {
+            return;
+        }
+        RunEvent event = new RunEvent();
+        if (event.isEnabled()) {
+            event.command = command;
+            event.files = files.sum();
+            event.bytesIn = bytesIn.sum();
+            event.bytesOut = bytesOut.sum();
+            event.elapsed = elapsedNanos;
+            event.keyLoad = getNanos(Phase.KEY_LOAD);
+            event.cipherInit = getNanos(Phase.CIPHER_INIT);
+            event.read = getNanos(Phase.READ);
+            event.crypto = getNanos(Phase.CRYPTO);
+            event.write = getNanos(Phase.WRITE);
+            event.allocated = allocatedBytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the total time recorded for a phase.
+     *
+     * @param phase The phase.
+     * @return The time in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Returns the report as a JSON object. Times are in milliseconds and MB/s refers to the plaintext; the
+     * allocated bytes are -1 unless {@link #trackAllocations()} was called.
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        long elapsed = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"command\": \"").append(command).append("\",\n");
+        sb.append("  \"files\": ").append(files.sum()).append(",\n");
+        sb.append("  \"elapsedMs\": ").append(millis(elapsed)).append(",\n");
+        sb.append("  \"phasesMs\": {");
+        for (Phase phase : Phase.values()) {
+            sb.append(phase.ordinal() == 0 ? "\n" : ",\n");
+            sb.append("    \"").append(phase.jsonName).append("\": ").append(millis(getNanos(phase)));
+        }
+        sb.append("\n  },\n");
+        sb.append("  \"bytesIn\": ").append(bytesIn.sum()).append(",\n");
+        sb.append("  \"bytesOut\": ").append(bytesOut.sum()).append(",\n");
+        sb.append("  \"mbPerSecond\": ")
+            .append(String.format(Locale.ROOT, "%.1f", payloadBytes() / 1e6 / (Math.max(elapsed, 1) / 1e9)))
+            .append(",\n");
+        sb.append("  \"allocatedBytes\": ").append(allocatedBytes).append("\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the JSON report.
+     *
+     * @param target The report file, or "-" to print it with the status messages.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeJson(File target) throws IOException {
+        if (RunnableBase.isStdio(target)) {
+            System.out.print(toJson());
+        } else {
+            Files.write(target.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // The plaintext side of the run: bytes in when encrypting, bytes out when decrypting, even if compressed
+    private long payloadBytes() {
+        return Math.max(bytesIn.sum(), bytesOut.sum());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Returns the bytes allocated so far by the live platform threads, or -1 if the JVM cannot tell.
+     * Threads that ended in between are not counted, so the difference is a lower bound.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Time spent in one phase of a run.
+     */
+    @Name("javacrypt.Phase")
+    @Label("JavaCrypt Phase")
+    @Category("JavaCrypt")
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+
+        @Label("Command")
+        String command;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Summary of a finished run.
+     */
+    @Name("javacrypt.Run")
+    @Label("JavaCrypt Run")
+    @Category("JavaCrypt")
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+
+        @Label("Command")
+        String command;
+
+        @Label("Files")
+        long files;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Bytes Out")
+        @DataAmount
+        long bytesOut;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Key Load")
+        @Timespan(Timespan.NANOSECONDS)
+        long keyLoad;
+
+        @Label("Cipher Init")
+        @Timespan(Timespan.NANOSECONDS)
+        long cipherInit;
+
+        @Label("Read")
+        @Timespan(Timespan.NANOSECONDS)
+        long read;
+
+        @Label("Crypto")
+        @Timespan(Timespan.NANOSECONDS)
+        long crypto;
+
+        @Label("Write")
+        @Timespan(Timespan.NANOSECONDS)
+        long write;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
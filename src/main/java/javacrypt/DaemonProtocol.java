@@ -0,0 +1,206 @@
+/*
+ * File: DaemonProtocol.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The framed protocol spoken between the daemon (RunDaemon) and its clients (RunClient).
+ * <p>
+ * One request per connection, all numbers big-endian:
+ * <pre>
+ *   request:  version (1 byte), operation (1 byte), key file path (2-byte length + UTF-8),
+ *             input data frames
+ *   response: output data frames, status (1 byte), message (2-byte length + UTF-8)
+ * </pre>
+ * A data frame is a 4-byte length followed by that many bytes; a frame of length 0 ends the data.
+ * The client must keep reading the response while it is still sending input, since the daemon streams its
+ * output as soon as it is produced.
+ */
+public final class DaemonProtocol {
+
+    // Protocol version
+    public static final int VERSION = 1;
+
+    // Operation: encrypt the input with the public key
+    public static final int OP_ENCRYPT = 1;
+
+    // Operation: decrypt the input with the private key
+    public static final int OP_DECRYPT = 2;
+
+    // Status: the output is complete
+    public static final int STATUS_OK = 0;
+
+    // Status: the request failed, the output must be discarded
+    public static final int STATUS_ERROR = 1;
+
+    // Largest data frame a writer produces
+    public static final int FRAME_SIZE = 256 * 1024;
+
+    // Largest data frame a reader accepts
+    public static final int MAX_FRAME_SIZE = 16 << 20;
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * Returns the default socket file: javacrypt-[user].sock in the temporary directory.
+     *
+     * @return The socket file.
+     */
+    public static Path defaultSocket() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "javacrypt-" + System.getProperty("user.name") + ".sock");
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @param out The stream.
+     * @param s   The string.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(bytes.length, 0xFFFF);
+        out.writeShort(len);
+        out.write(bytes, 0, len);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     *
+     * @param in The stream.
+     * @return The string.
+     * @throws IOException If an I/O error occurs.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An output stream that sends everything written to it as data frames. Closing it sends the end frame but
+     * leaves the underlying stream open.
+     */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte[] buf = new byte[FRAME_SIZE];
+        private int len;
+        private boolean closed;
+
+        FrameOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (len == buf.length) {
+                writeFrame();
+            }
+            buf[len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                if (len == buf.length) {
+                    writeFrame();
+                }
+                int k = Math.min(n, buf.length - len);
+                System.arraycopy(b, off, buf, len, k);
+                len += k;
+                off += k;
+                n -= k;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeFrame();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                writeFrame();
+                out.writeInt(0);
+                out.flush();
+            }
+        }
+
+        private void writeFrame() throws IOException {
+            if (len > 0) {
+                out.writeInt(len);
+                out.write(buf, 0, len);
+                len = 0;
+            }
+        }
+    }
+
+    /**
+     * An input stream that reads data frames until the end frame. Closing it skips the remaining frames but
+     * leaves the underlying stream open.
+     */
+    static final class FrameInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private int remaining;
+        private boolean ended;
+
+        FrameInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int n) throws IOException {
+            if (n == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (ended) {
+                    return -1;
+                }
+                int frame = in.readInt();
+                if (frame < 0 || frame > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length: " + frame);
+                }
+                remaining = frame;
+                ended = frame == 0;
+            }
+            int k = in.read(b, off, Math.min(n, remaining));
+            if (k == -1) {
+                throw new EOFException("Connection closed inside a frame");
+            }
+            remaining -= k;
+            return k;
+        }
+
+        @Override
+        public void close() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) != -1) {
+                // Discard the rest of the data
+            }
+        }
+    }
+}
@@ -0,0 +1,567 @@
+/*
+ * File: EncryptedArchive.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import javax.crypto.SecretKey;
+
+/**
+ * An archive of many files under one data key, with an encrypted index at the end.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   magic          4 bytes  "JCRA"
+ *   version        1 byte
+ *   segment size   4 bytes
+ *   wrap algorithm 1 byte   see HybridHeader
+ *   wrapped length 2 bytes
+ *   wrapped key    n bytes
+ *   members        the segments of each member, as in the hybrid format
+ *   index          one segment
+ *   index offset   8 bytes
+ *   magic          4 bytes  "JCRA"
+ * </pre>
+ * Each member is encrypted like a hybrid file whose nonce prefix is the member's number, so no two members share
+ * a nonce, and a member cannot be moved to another place in the index. The index, encrypted under the reserved
+ * nonce prefix FF..FF, lists per member the name (2-byte length, UTF-8), the plaintext size, the modification
+ * time and the offset of its first segment. The ciphertext length of a member follows from its size, so all
+ * offsets are known before any member is encrypted, and members are written in parallel at their positions.
+ * Listing reads only the index, and extracting a member reads only the index and that member.
+ * <p>
+ * The methods that write and extract members may be called from several threads at once.
+ */
+public class EncryptedArchive implements Closeable {
+
+    // File signature
+    public static final byte[] MAGIC = {'J', 'C', 'R', 'A'};
+
+    // Current format version
+    public static final int VERSION = 1;
+
+    // Length of the index offset and magic at the end of the file
+    public static final int FOOTER_LENGTH = 8 + MAGIC.length;
+
+    // Members of at least this size are encrypted across all cores, smaller ones on one thread each
+    public static final long LARGE_MEMBER_SIZE = 16 << 20;
+
+    // Nonce prefix of the index; member numbers never reach it
+    private static final byte[] INDEX_PREFIX = {-1, -1, -1, -1, -1, -1, -1};
+
+    private final FileChannel channel;
+    private final SecretKey dataKey;
+    private final int segmentSize;
+    private final int wrapAlgorithm;
+    private final byte[] wrappedKey;
+    private final long headerLength;
+    private final List<Entry> entries = new ArrayList<>();
+    private long end;
+
+    private EncryptedArchive(FileChannel channel, SecretKey dataKey, int segmentSize, int wrapAlgorithm,
+                             byte[] wrappedKey) {
+        this.channel = channel;
+        this.dataKey = dataKey;
+        this.segmentSize = segmentSize;
+        this.wrapAlgorithm = wrapAlgorithm;
+        this.wrappedKey = wrappedKey;
+        this.headerLength = MAGIC.length + 1 + 4 + 3 + wrappedKey.length;
+        this.end = headerLength;
+    }
+
+    /**
+     * Creates a new archive with a fresh data key and writes its header.
+     *
+     * @param path        The archive file; replaced if it exists.
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext segment size of the members.
+     * @return The archive, ready for {@link #addEntry}.
+     * @throws IOException              If the file cannot be written.
+     * @throws GeneralSecurityException If the data key cannot be wrapped.
+     */
+    public static EncryptedArchive create(Path path, PublicKey publicKey, int segmentSize)
+            throws IOException, GeneralSecurityException {
+        SecretKey dataKey = KeyWrap.generateDataKey();
+        byte[] wrappedKey = KeyWrap.wrap(dataKey, publicKey);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        EncryptedArchive archive = new EncryptedArchive(channel, dataKey, segmentSize,
+            KeyWrap.wrapAlgorithmFor(publicKey), wrappedKey);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.write(MAGIC);
+        dos.writeByte(VERSION);
+        dos.writeInt(segmentSize);
+        dos.writeByte(archive.wrapAlgorithm);
+        dos.writeShort(wrappedKey.length);
+        dos.write(wrappedKey);
+        try {
+            ChunkedContainer.writeFully(channel, ByteBuffer.wrap(bos.toByteArray()), 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    /**
+     * Opens an archive and reads its index.
+     *
+     * @param path       The archive file.
+     * @param privateKey The recipient's private key.
+     * @return The archive.
+     * @throws IOException              If the file is not a complete archive.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped or the index fails authentication.
+     */
+    public static EncryptedArchive open(Path path, PrivateKey privateKey) throws IOException, GeneralSecurityException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            DataInputStream din = new DataInputStream(new BufferedInputStream(new ChannelInputStream(channel, 0,
+                channel.size()), 1024));
+            byte[] magic = new byte[MAGIC.length];
+            din.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new UnsupportedFormatException("Not a JavaCrypt archive (bad signature)");
+            }
+            int version = din.readUnsignedByte();
+            if (version != VERSION) {
+                throw new UnsupportedFormatException("Unsupported archive version: " + version);
+            }
+            int segmentSize = din.readInt();
+            int wrapAlgorithm = din.readUnsignedByte();
+            byte[] wrappedKey = new byte[din.readUnsignedShort()];
+            din.readFully(wrappedKey);
+            if (segmentSize <= 0) {
+                throw new IOException("Invalid segment size: " + segmentSize);
+            }
+
+            SecretKey dataKey = KeyWrap.unwrap(wrapAlgorithm, wrappedKey, privateKey);
+            EncryptedArchive archive = new EncryptedArchive(channel, dataKey, segmentSize, wrapAlgorithm, wrappedKey);
+            archive.readIndex();
+            return archive;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the wrapped data key in the header of an archive, so that it is read with another key pair; the
+     * members and the index are not touched. The index is read first, which checks the old key.
+     * <p>
+     * The member offsets in the index count from the start of the file, so the header cannot change its length:
+     * the new key must wrap the data key to as many bytes as the old one, which holds for keys of the same type
+     * and size.
+     *
+     * @param path          The archive file.
+     * @param oldPrivateKey The private key the archive is encrypted for.
+     * @param newPublicKey  The public key it is to be encrypted for.
+     * @throws IOException              If the file is not a complete archive, the header would change its length
+     *                                  or an I/O error occurs.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped or wrapped.
+     */
+    public static void rewrap(Path path, PrivateKey oldPrivateKey, PublicKey newPublicKey)
+            throws IOException, GeneralSecurityException {
+        SecretKey dataKey;
+        int oldLength;
+        try (EncryptedArchive archive = open(path, oldPrivateKey)) {
+            dataKey = archive.dataKey;
+            oldLength = archive.wrappedKey.length;
+        }
+        byte[] wrappedKey = KeyWrap.wrap(dataKey, newPublicKey);
+        if (wrappedKey.length != oldLength) {
+            throw new IOException("The new key would change the length of the archive header; archives can only be "
+                + "rewrapped with a key of the same type and size");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(3 + wrappedKey.length);
+        buffer.put((byte) KeyWrap.wrapAlgorithmFor(newPublicKey)).putShort((short) wrappedKey.length).put(wrappedKey);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ChunkedContainer.writeFully(channel, buffer, MAGIC.length + 1 + 4);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Adds a member to the index and reserves its place in the archive.
+     *
+     * @param name     The member name, with "/" as separator.
+     * @param size     The plaintext size.
+     * @param modified The modification time in milliseconds since the epoch.
+     * @return The entry, to be passed to {@link #writeEntry}.
+     */
+    public synchronized Entry addEntry(String name, long size, long modified) {
+        checkName(name);
+        Entry entry = new Entry(entries.size(), name, size, modified, end);
+        entries.add(entry);
+        end += cipherLength(size);
+        return entry;
+    }
+
+    /**
+     * Encrypts a member into its reserved place.
+     *
+     * @param entry       The entry.
+     * @param inputReader The plaintext; it must hold exactly the size given to {@link #addEntry}.
+     * @param pool        The pool that encrypts large members.
+     * @throws IOException If an I/O error occurs or the input has a different size.
+     */
+    public void writeEntry(Entry entry, InputStream inputReader, ForkJoinPool pool) throws IOException {
+        SegmentCipher segmentCipher = memberCipher(entry.number);
+        long written;
+        try (OutputStream out = new BufferedOutputStream(new ChannelOutputStream(channel, entry.offset),
+                 bufferSize(cipherLength(entry.size)))) {
+            if (entry.size >= LARGE_MEMBER_SIZE) {
+                written = SegmentEngine.encrypt(segmentCipher, pool, inputReader, out);
+            } else {
+                written = encryptSmall(segmentCipher, entry.size, inputReader, out);
+            }
+        }
+        if (written != entry.size) {
+            throw new IOException(entry.name + " changed while it was packed");
+        }
+    }
+
+    /**
+     * Writes the index and the footer. The archive is complete afterwards.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void finish() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(entries.size());
+        for (Entry entry : entries) {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            dos.writeShort(name.length);
+            dos.write(name);
+            dos.writeLong(entry.size);
+            dos.writeLong(entry.modified);
+            dos.writeLong(entry.offset);
+        }
+        byte[] index = bos.toByteArray();
+
+        byte[] encrypted = new byte[index.length + SegmentCipher.TAG_LENGTH];
+        try {
+            indexCipher(index.length).encryptSegment(0, true, index, 0, index.length, encrypted, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Index cannot be encrypted: " + e.getMessage(), e);
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH).putLong(end).put(MAGIC);
+        footer.flip();
+        ChunkedContainer.writeFully(channel, ByteBuffer.wrap(encrypted), end);
+        ChunkedContainer.writeFully(channel, footer, end + encrypted.length);
+        channel.truncate(end + encrypted.length + FOOTER_LENGTH);
+        channel.force(false);
+    }
+
+    /**
+     * Reads and decrypts the index.
+     *
+     * @throws IOException If the index is missing, malformed, fails authentication or names a member twice.
+     */
+    private void readIndex() throws IOException {
+        long length = channel.size();
+        if (length < headerLength + SegmentCipher.TAG_LENGTH + FOOTER_LENGTH) {
+            throw new IOException("Truncated archive");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_LENGTH);
+        ChunkedContainer.readFully(channel, footer, length - FOOTER_LENGTH);
+        long indexOffset = footer.getLong(0);
+        if (!Arrays.equals(Arrays.copyOfRange(footer.array(), 8, FOOTER_LENGTH), MAGIC)
+            || indexOffset < headerLength || length - FOOTER_LENGTH - indexOffset < SegmentCipher.TAG_LENGTH
+            || length - FOOTER_LENGTH - indexOffset > Integer.MAX_VALUE - 8) {
+            throw new IOException("Truncated or incomplete archive (bad footer)");
+        }
+
+        byte[] encrypted = new byte[(int) (length - FOOTER_LENGTH - indexOffset)];
+        ChunkedContainer.readFully(channel, ByteBuffer.wrap(encrypted), indexOffset);
+        byte[] index = new byte[encrypted.length - SegmentCipher.TAG_LENGTH];
+        try {
+            indexCipher(index.length).decryptSegment(0, true, encrypted, 0, encrypted.length, index, 0);
+        } catch (GeneralSecurityException e) {
+            throw new AuthenticationException("Archive index failed: " + e.getMessage(), e);
+        }
+
+        DataInputStream din = new DataInputStream(new ByteArrayInputStream(index));
+        int count = din.readInt();
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[din.readUnsignedShort()];
+            din.readFully(name);
+            long size = din.readLong();
+            long modified = din.readLong();
+            long offset = din.readLong();
+            if (size < 0 || offset < headerLength || offset > indexOffset - cipherLength(size)) {
+                throw new IOException("Malformed archive index");
+            }
+            String member = new String(name, StandardCharsets.UTF_8);
+            if (!names.add(member)) {
+                // A second member of the same name would overwrite the first on extraction
+                throw new IOException("Duplicate member in the archive index: " + member);
+            }
+            entries.add(new Entry(i, member, size, modified, offset));
+        }
+        end = indexOffset;
+    }
+
+    /**
+     * Decrypts a member.
+     *
+     * @param entry        The entry.
+     * @param outputWriter The plaintext stream.
+     * @param pool         The pool that decrypts large members.
+     * @return The number of plaintext bytes written.
+     * @throws IOException If an I/O error occurs or a segment fails authentication.
+     */
+    public long extract(Entry entry, OutputStream outputWriter, ForkJoinPool pool) throws IOException {
+        SegmentCipher segmentCipher = memberCipher(entry.number);
+        long cipherLength = cipherLength(entry.size);
+        InputStream in = new BufferedInputStream(new ChannelInputStream(channel, entry.offset, cipherLength),
+            bufferSize(cipherLength));
+        long size = entry.size >= LARGE_MEMBER_SIZE
+            ? SegmentEngine.decrypt(segmentCipher, pool, in, outputWriter)
+            : decryptSmall(segmentCipher, cipherLength, in, outputWriter);
+        if (size != entry.size) {
+            throw new IOException(entry.name + " does not match its size in the index");
+        }
+        return size;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the ciphertext length of a member: a tag per segment, and one empty segment for an empty member.
+     *
+     * @param size The plaintext size.
+     * @return The ciphertext length.
+     */
+    public long cipherLength(long size) {
+        long segments = Math.max(1, (size + segmentSize - 1) / segmentSize);
+        return size + segments * SegmentCipher.TAG_LENGTH;
+    }
+
+    /**
+     * Returns the size of an I/O buffer for a member: at most 1 MiB, but no larger than the member, since
+     * archives are mostly made of small files.
+     *
+     * @param length The length of the member.
+     * @return The buffer size.
+     */
+    public static int bufferSize(long length) {
+        return (int) Math.max(8192, Math.min(RunEncrypt.STREAM_BUFSIZE, length));
+    }
+
+    // Encrypts a member on the calling thread
+    private long encryptSmall(SegmentCipher segmentCipher, long size, InputStream in, OutputStream out)
+            throws IOException {
+        byte[] plain = new byte[(int) Math.min(segmentSize, Math.max(size, 1))];
+        byte[] encrypted = new byte[plain.length + SegmentCipher.TAG_LENGTH];
+        long segments = Math.max(1, (size + segmentSize - 1) / segmentSize);
+        long total = 0;
+        try {
+            for (long i = 0; i < segments; i++) {
+                int len = in.readNBytes(plain, 0, (int) Math.min(plain.length, size - total));
+                total += len;
+                int n = segmentCipher.encryptSegment(i, i == segments - 1, plain, 0, len, encrypted, 0);
+                out.write(encrypted, 0, n);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Segment cannot be encrypted: " + e.getMessage(), e);
+        }
+        // More input than announced
+        return in.read() < 0 ? total : total + 1;
+    }
+
+    // Decrypts a member on the calling thread
+    private long decryptSmall(SegmentCipher segmentCipher, long cipherLength, InputStream in, OutputStream out)
+            throws IOException {
+        int cipherSegmentSize = segmentSize + SegmentCipher.TAG_LENGTH;
+        byte[] encrypted = new byte[(int) Math.min(cipherSegmentSize, cipherLength)];
+        byte[] plain = new byte[encrypted.length];
+        long segments = (cipherLength + cipherSegmentSize - 1) / cipherSegmentSize;
+        long total = 0;
+        for (long i = 0; i < segments; i++) {
+            int len = in.readNBytes(encrypted, 0, encrypted.length);
+            try {
+                int n = segmentCipher.decryptSegment(i, i == segments - 1, encrypted, 0, len, plain, 0);
+                out.write(plain, 0, n);
+                total += n;
+            } catch (GeneralSecurityException e) {
+                throw new SegmentEngine.SegmentFailedException(i, e);
+            }
+        }
+        return total;
+    }
+
+    // The segment cipher of a member: the member number is the nonce prefix
+    private SegmentCipher memberCipher(long number) throws IOException {
+        byte[] prefix = new byte[HybridHeader.NONCE_PREFIX_LENGTH];
+        for (int i = prefix.length - 1; i >= 0; i--, number >>>= 8) {
+            prefix[i] = (byte) number;
+        }
+        return segmentCipher(prefix, segmentSize);
+    }
+
+    // The segment cipher of the index, a single segment of the given size
+    private SegmentCipher indexCipher(int indexLength) throws IOException {
+        return segmentCipher(INDEX_PREFIX, Math.max(indexLength, 1));
+    }
+
+    private SegmentCipher segmentCipher(byte[] prefix, int size) throws IOException {
+        try {
+            return new SegmentCipher(dataKey, new HybridHeader(HybridHeader.VERSION, 0, HybridHeader.SUITE_AES_GCM,
+                size, prefix, wrapAlgorithm, wrappedKey));
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks that a member name is relative and stays below the directory it is extracted to.
+     *
+     * @param name The member name.
+     * @throws IllegalArgumentException If the name is empty, absolute or contains "." or ".." parts.
+     */
+    public static void checkName(String name) {
+        if (name.isEmpty() || name.startsWith("/") || name.indexOf('\\') >= 0 || name.indexOf(':') >= 0) {
+            throw new IllegalArgumentException("Invalid member name: " + name);
+        }
+        for (String part : name.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                throw new IllegalArgumentException("Invalid member name: " + name);
+            }
+        }
+        if (name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+            throw new IllegalArgumentException("Member name too long: " + name);
+        }
+    }
+
+    /**
+     * One member of the archive.
+     */
+    public static final class Entry {
+
+        private final int number;
+        private final String name;
+        private final long size;
+        private final long modified;
+        private final long offset;
+
+        Entry(int number, String name, long size, long modified, long offset) {
+            this.number = number;
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Returns the position of the member's first segment in the archive.
+         *
+         * @return The offset.
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Reads a range of a file channel with positional reads, so several streams can share the channel.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Writes to a file channel from a position on, with positional writes.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private final FileChannel channel;
+        private long position;
+
+        ChannelOutputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ChunkedContainer.writeFully(channel, ByteBuffer.wrap(b, off, len), position);
+            position += len;
+        }
+    }
+}
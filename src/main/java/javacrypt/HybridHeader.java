@@ -0,0 +1,320 @@
+/*
+ * File: HybridHeader.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The versioned header that precedes every file written in the hybrid format.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   magic          4 bytes  "JCRY"
+ *   version        1 byte
+ *   flags          1 byte   bit 0: payload is a zlib (Deflate) stream; other bits reserved, 0
+ *   cipher suite   1 byte   1 = AES-256-GCM, 2 = ChaCha20-Poly1305 (see CipherSuites)
+ *   segment size   4 bytes  plaintext bytes per segment, at most 64 MiB
+ *   nonce prefix   7 bytes  random per file
+ *   wrap algorithm 1 byte   1 = RSA-OAEP-SHA256, 2 = X25519, 3 = ECDH (see KeyWrap)
+ *   wrapped length 2 bytes
+ *   wrapped key    n bytes  the data key, wrapped with the recipient's public key
+ * </pre>
+ * Version 2 files have several recipients. After the nonce prefix, they hold the number of recipients (2 bytes),
+ * followed by the wrap algorithm, wrapped length and wrapped key of each, all wrapping the same data key. Files
+ * with one recipient are written as version 1, so older releases can read them.
+ * <p>
+ * The fixed part up to and including the nonce prefix is authenticated as associated data of every segment.
+ * The wrapped keys are not, so they can be replaced without touching the payload.
+ */
+public class HybridHeader {
+
+    // File signature
+    public static final byte[] MAGIC = {'J', 'C', 'R', 'Y'};
+
+    // Format version of files with one recipient
+    public static final int VERSION = 1;
+
+    // Format version of files with several recipients
+    public static final int VERSION_RECIPIENTS = 2;
+
+    // Most recipients a header can list
+    public static final int MAX_RECIPIENTS = 64;
+
+    // Cipher suite: AES-256 in GCM mode
+    public static final int SUITE_AES_GCM = 1;
+
+    // Cipher suite: ChaCha20-Poly1305, for CPUs without AES instructions
+    public static final int SUITE_CHACHA20_POLY1305 = 2;
+
+    // Key wrap algorithm: RSA with OAEP padding (SHA-256, MGF1-SHA-256)
+    public static final int WRAP_RSA_OAEP = 1;
+
+    // Key wrap algorithm: X25519 key agreement, HKDF-SHA256 and AES key wrap
+    public static final int WRAP_X25519 = 2;
+
+    // Key wrap algorithm: ECDH key agreement on the recipient's curve, HKDF-SHA256 and AES key wrap
+    public static final int WRAP_ECDH = 3;
+
+    // Flag: the plaintext was compressed with Deflate (zlib format) before it was encrypted
+    public static final int FLAG_COMPRESSED = 0x01;
+
+    // All flags this version understands
+    public static final int KNOWN_FLAGS = FLAG_COMPRESSED;
+
+    // Default plaintext bytes per segment
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    // Length of the random per-file nonce prefix
+    public static final int NONCE_PREFIX_LENGTH = 7;
+
+    // Length of the fixed (authenticated) part of the header
+    public static final int FIXED_LENGTH = MAGIC.length + 3 + 4 + NONCE_PREFIX_LENGTH;
+
+    private final int version;
+    private final int flags;
+    private final int suite;
+    private final int segmentSize;
+    private final byte[] noncePrefix;
+    private final List<WrappedKey> recipients;
+
+    /**
+     * Constructs a header with one recipient.
+     *
+     * @param version       The format version.
+     * @param flags         The flag bits.
+     * @param suite         The cipher suite id.
+     * @param segmentSize   The plaintext segment size.
+     * @param noncePrefix   The per-file nonce prefix.
+     * @param wrapAlgorithm The key wrap algorithm id.
+     * @param wrappedKey    The wrapped data key.
+     */
+    public HybridHeader(int version, int flags, int suite, int segmentSize, byte[] noncePrefix,
+                        int wrapAlgorithm, byte[] wrappedKey) {
+        this(version, flags, suite, segmentSize, noncePrefix,
+            Collections.singletonList(new WrappedKey(wrapAlgorithm, wrappedKey)));
+    }
+
+    /**
+     * Constructs a header.
+     *
+     * @param version     The format version: {@link #VERSION} for one recipient, {@link #VERSION_RECIPIENTS} for
+     *                    any number.
+     * @param flags       The flag bits.
+     * @param suite       The cipher suite id.
+     * @param segmentSize The plaintext segment size.
+     * @param noncePrefix The per-file nonce prefix.
+     * @param recipients  The data key, wrapped for each recipient.
+     */
+    public HybridHeader(int version, int flags, int suite, int segmentSize, byte[] noncePrefix,
+                        List<WrappedKey> recipients) {
+        if (recipients.isEmpty() || recipients.size() > MAX_RECIPIENTS) {
+            throw new IllegalArgumentException("A header lists 1 to " + MAX_RECIPIENTS + " recipients");
+        }
+        if (version == VERSION && recipients.size() != 1) {
+            throw new IllegalArgumentException("Version " + VERSION + " headers have exactly one recipient");
+        }
+        if (noncePrefix.length != NONCE_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Nonce prefix must be " + NONCE_PREFIX_LENGTH + " bytes");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.version = version;
+        this.flags = flags;
+        this.suite = suite;
+        this.segmentSize = segmentSize;
+        this.noncePrefix = noncePrefix.clone();
+        this.recipients = Collections.unmodifiableList(new ArrayList<>(recipients));
+    }
+
+    /**
+     * Returns a copy of this header with other recipients. The authenticated part is unchanged, so the payload stays
+     * valid.
+     *
+     * @param recipients The data key, wrapped for each new recipient.
+     * @return The new header.
+     * @throws IllegalArgumentException If a version 1 header would get more than one recipient.
+     */
+    public HybridHeader withRecipients(List<WrappedKey> recipients) {
+        return new HybridHeader(version, flags, suite, segmentSize, noncePrefix, recipients);
+    }
+
+    /**
+     * Returns the format version for the given number of recipients.
+     *
+     * @param recipients The number of recipients.
+     * @return {@link #VERSION} for one recipient, {@link #VERSION_RECIPIENTS} otherwise.
+     */
+    public static int versionFor(int recipients) {
+        return recipients == 1 ? VERSION : VERSION_RECIPIENTS;
+    }
+
+    /**
+     * Checks whether the given bytes start with the hybrid format signature.
+     *
+     * @param head The first bytes of a file.
+     * @param len  The number of valid bytes in head.
+     * @return True if the signature matches.
+     */
+    public static boolean hasMagic(byte[] head, int len) {
+        return len >= MAGIC.length && Arrays.equals(Arrays.copyOf(head, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Reads a header from the given stream.
+     *
+     * @param in The stream positioned at the start of the file.
+     * @return The header.
+     * @throws IOException If the header cannot be read, or an {@link UnsupportedFormatException} if the stream does
+     *                     not contain a valid header.
+     */
+    public static HybridHeader read(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        din.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new UnsupportedFormatException("Not a JavaCrypt file (bad signature)");
+        }
+        int version = din.readUnsignedByte();
+        if (version != VERSION && version != VERSION_RECIPIENTS) {
+            throw new UnsupportedFormatException("Unsupported format version: " + version);
+        }
+        int flags = din.readUnsignedByte();
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new UnsupportedFormatException("Unsupported header flags: " + flags);
+        }
+        int suite = din.readUnsignedByte();
+        int segmentSize = din.readInt();
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        din.readFully(noncePrefix);
+        int count = version == VERSION ? 1 : din.readUnsignedShort();
+        if (count == 0 || count > MAX_RECIPIENTS) {
+            throw new UnsupportedFormatException("Invalid recipient count: " + count);
+        }
+        List<WrappedKey> recipients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int wrapAlgorithm = din.readUnsignedByte();
+            byte[] wrappedKey = new byte[din.readUnsignedShort()];
+            din.readFully(wrappedKey);
+            recipients.add(new WrappedKey(wrapAlgorithm, wrappedKey));
+        }
+        // The segment size decides what readers allocate before anything is authenticated
+        if (segmentSize <= 0 || segmentSize > RunEncrypt.MAX_SEGMENT_SIZE) {
+            throw new UnsupportedFormatException("Invalid segment size: " + segmentSize);
+        }
+        return new HybridHeader(version, flags, suite, segmentSize, noncePrefix, recipients);
+    }
+
+    /**
+     * Writes the header to the given stream.
+     *
+     * @param out The stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void write(OutputStream out) throws IOException {
+        out.write(toByteArray());
+    }
+
+    /**
+     * Returns the encoded header.
+     *
+     * @return The header bytes.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(length());
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.write(getAssociatedData());
+            if (version != VERSION) {
+                dos.writeShort(recipients.size());
+            }
+            for (WrappedKey recipient : recipients) {
+                dos.writeByte(recipient.getWrapAlgorithm());
+                dos.writeShort(recipient.getEntryLength());
+                dos.write(recipient.getEntry());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the fixed part of the header, which every segment authenticates as associated data.
+     *
+     * @return The associated data.
+     */
+    public byte[] getAssociatedData() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(FIXED_LENGTH);
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.write(MAGIC);
+            dos.writeByte(version);
+            dos.writeByte(flags);
+            dos.writeByte(suite);
+            dos.writeInt(segmentSize);
+            dos.write(noncePrefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Returns the encoded length of the header.
+     *
+     * @return The length in bytes.
+     */
+    public int length() {
+        int length = FIXED_LENGTH + (version != VERSION ? 2 : 0);
+        for (WrappedKey recipient : recipients) {
+            length += 3 + recipient.getEntryLength();
+        }
+        return length;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    public int getSuite() {
+        return suite;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public byte[] getNoncePrefix() {
+        return noncePrefix.clone();
+    }
+
+    public int getWrapAlgorithm() {
+        return recipients.get(0).getWrapAlgorithm();
+    }
+
+    public byte[] getWrappedKey() {
+        return recipients.get(0).getEntry();
+    }
+
+    public List<WrappedKey> getRecipients() {
+        return recipients;
+    }
+}
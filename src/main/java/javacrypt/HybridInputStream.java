@@ -0,0 +1,165 @@
+/*
+ * File: HybridInputStream.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+
+/**
+ * An input stream that decrypts and authenticates a file in the hybrid format.
+ * <p>
+ * The header is read and the data key unwrapped when the stream is constructed. Ciphertext is then read one
+ * segment ahead, so the final segment can be recognised, and no plaintext is returned before its segment has
+ * been authenticated. Memory use is two ciphertext segments and one plaintext segment.
+ * <p>
+ * The stream returns the payload as stored. If the header has {@link HybridHeader#FLAG_COMPRESSED} set, the
+ * payload is a zlib stream; wrap this stream in an InflaterInputStream to get the original data.
+ */
+public class HybridInputStream extends FilterInputStream {
+
+    private final SegmentCipher segmentCipher;
+    private byte[] current;
+    private byte[] next;
+    private int nextLen;
+    private final byte[] plainBuf;
+    private int plainPos;
+    private int plainLen;
+    private long segmentIndex;
+    private boolean finished;
+
+    /**
+     * Constructs a stream that decrypts with the given private key.
+     *
+     * @param in         The underlying stream, positioned at the start of the header.
+     * @param privateKey The recipient's private key.
+     * @throws IOException              If the header cannot be read.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    public HybridInputStream(InputStream in, PrivateKey privateKey) throws IOException, GeneralSecurityException {
+        this(in, HybridHeader.read(in), privateKey);
+    }
+
+    /**
+     * Constructs a stream for a header that has already been read from the underlying stream.
+     *
+     * @param in         The underlying stream, positioned after the header.
+     * @param header     The header.
+     * @param privateKey The recipient's private key.
+     * @throws IOException              If the first segment cannot be read.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    public HybridInputStream(InputStream in, HybridHeader header, PrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        this(in, new SegmentCipher(KeyWrap.unwrap(header, privateKey), header));
+    }
+
+    /**
+     * Constructs a stream for an already prepared segment cipher.
+     *
+     * @param in            The underlying stream, positioned after the header.
+     * @param segmentCipher The segment cipher.
+     * @throws IOException If the first segment cannot be read.
+     */
+    public HybridInputStream(InputStream in, SegmentCipher segmentCipher) throws IOException {
+        super(in);
+        this.segmentCipher = segmentCipher;
+        this.current = new byte[segmentCipher.getCipherSegmentSize()];
+        this.next = new byte[segmentCipher.getCipherSegmentSize()];
+        this.plainBuf = new byte[segmentCipher.getSegmentSize()];
+        this.nextLen = readFully(in, next);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (plainPos == plainLen) {
+            if (finished) {
+                return -1;
+            }
+            nextSegment();
+        }
+        int n = Math.min(len, plainLen - plainPos);
+        System.arraycopy(plainBuf, plainPos, b, off, n);
+        plainPos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        while (skipped < n) {
+            int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (r == -1) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return plainLen - plainPos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void nextSegment() throws IOException {
+        // Swap the read-ahead buffer in and read the following segment to learn whether this one is the last
+        byte[] tmp = current;
+        current = next;
+        next = tmp;
+        int currentLen = nextLen;
+        boolean last = currentLen < current.length;
+        if (!last) {
+            nextLen = readFully(in, next);
+            last = nextLen == 0;
+        }
+        if (currentLen < SegmentCipher.TAG_LENGTH) {
+            throw new AuthenticationException("Truncated ciphertext at segment " + segmentIndex);
+        }
+        try {
+            plainLen = segmentCipher.decryptSegment(segmentIndex, last, current, 0, currentLen, plainBuf, 0);
+            plainPos = 0;
+        } catch (GeneralSecurityException e) {
+            throw new AuthenticationException("Segment " + segmentIndex + " failed authentication", e);
+        }
+        segmentIndex++;
+        finished = last;
+    }
+
+    private static int readFully(InputStream in, byte[] buf) throws IOException {
+        int total = 0;
+        while (total < buf.length) {
+            int n = in.read(buf, total, buf.length - total);
+            if (n == -1) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+}
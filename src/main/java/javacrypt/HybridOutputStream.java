@@ -0,0 +1,321 @@
+/*
+ * File: HybridOutputStream.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import javax.crypto.SecretKey;
+
+/**
+ * An output stream that encrypts everything written to it in the hybrid format.
+ * <p>
+ * A fresh data key is generated per stream and wrapped once with each recipient's public key. The payload is
+ * buffered one segment at a time, so memory use does not depend on the amount of data written. A full segment
+ * is only encrypted once more data arrives.
+ * <p>
+ * The final segment is only written by {@link #finish()}. Closing the stream without it, as try-with-resources does
+ * when the source of the data fails, leaves the output without a final segment, so it fails authentication as
+ * truncated instead of passing for a complete file. Once a write fails, the stream refuses further writes and
+ * {@link #finish()}.
+ */
+public class HybridOutputStream extends FilterOutputStream {
+
+    private final SegmentCipher segmentCipher;
+    private final byte[] plainBuf;
+    private final byte[] cipherBuf;
+    private int plainLen;
+    private long segmentIndex;
+    private boolean finished;
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * Constructs a stream that encrypts for the given public key with the default segment size.
+     *
+     * @param out       The underlying stream receiving the ciphertext.
+     * @param publicKey The recipient's public key.
+     * @throws IOException              If the header cannot be written.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped.
+     */
+    public HybridOutputStream(OutputStream out, PublicKey publicKey) throws IOException, GeneralSecurityException {
+        this(out, publicKey, HybridHeader.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a stream that encrypts for the given public key.
+     *
+     * @param out         The underlying stream receiving the ciphertext.
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext segment size.
+     * @throws IOException              If the header cannot be written.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped.
+     */
+    public HybridOutputStream(OutputStream out, PublicKey publicKey, int segmentSize)
+            throws IOException, GeneralSecurityException {
+        this(out, newSegmentCipher(publicKey, segmentSize));
+    }
+
+    /**
+     * Constructs a stream for an already prepared segment cipher and writes its header.
+     *
+     * @param out           The underlying stream receiving the ciphertext.
+     * @param segmentCipher The segment cipher.
+     * @throws IOException If the header cannot be written.
+     */
+    public HybridOutputStream(OutputStream out, SegmentCipher segmentCipher) throws IOException {
+        super(out);
+        this.segmentCipher = segmentCipher;
+        this.plainBuf = new byte[segmentCipher.getSegmentSize()];
+        this.cipherBuf = new byte[segmentCipher.getCipherSegmentSize()];
+        segmentCipher.getHeader().write(out);
+    }
+
+    /**
+     * Generates a data key and header for the given recipient.
+     *
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext segment size.
+     * @return The segment cipher for the new file.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped.
+     */
+    public static SegmentCipher newSegmentCipher(PublicKey publicKey, int segmentSize) throws GeneralSecurityException {
+        return newSegmentCipher(publicKey, segmentSize, 0);
+    }
+
+    /**
+     * Generates a data key and header with the given flags for the given recipient.
+     *
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext segment size.
+     * @param flags       The header flags, see {@link HybridHeader#FLAG_COMPRESSED}.
+     * @return The segment cipher for the new file.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped.
+     */
+    public static SegmentCipher newSegmentCipher(PublicKey publicKey, int segmentSize, int flags)
+            throws GeneralSecurityException {
+        return newSegmentCipher(publicKey, segmentSize, flags, HybridHeader.SUITE_AES_GCM);
+    }
+
+    /**
+     * Generates a data key and header with the given flags and cipher suite for the given recipient.
+     *
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext segment size.
+     * @param flags       The header flags, see {@link HybridHeader#FLAG_COMPRESSED}.
+     * @param suite       The cipher suite, see {@link CipherSuites}.
+     * @return The segment cipher for the new file.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped, or the suite is unknown.
+     */
+    public static SegmentCipher newSegmentCipher(PublicKey publicKey, int segmentSize, int flags, int suite)
+            throws GeneralSecurityException {
+        return newSegmentCipher(Collections.singletonList(publicKey), segmentSize, flags, suite);
+    }
+
+    /**
+     * Generates a data key and header with the given flags and cipher suite for several recipients. The payload is
+     * encrypted once; each recipient gets a wrapped copy of the data key in the header.
+     *
+     * @param publicKeys  The recipients' public keys, 1 to {@link HybridHeader#MAX_RECIPIENTS}.
+     * @param segmentSize The plaintext segment size.
+     * @param flags       The header flags, see {@link HybridHeader#FLAG_COMPRESSED}.
+     * @param suite       The cipher suite, see {@link CipherSuites}.
+     * @return The segment cipher for the new file.
+     * @throws GeneralSecurityException If the data key cannot be generated or wrapped, or the suite is unknown.
+     */
+    public static SegmentCipher newSegmentCipher(List<PublicKey> publicKeys, int segmentSize, int flags, int suite)
+            throws GeneralSecurityException {
+        return newSegmentCipher(KeyWrap.generateDataKey(), publicKeys, segmentSize, flags, suite);
+    }
+
+    /**
+     * Builds the header of a new file, with a fresh nonce prefix, for a data key the caller keeps. Resumable
+     * encryption records the key and this header in its journal when it starts a file. It must not be used to
+     * continue a file: segments written under another nonce prefix would not decrypt, so a resumed run uses the
+     * header from the journal instead.
+     *
+     * @param dataKey     The data key, see {@link KeyWrap#generateDataKey()}.
+     * @param publicKeys  The recipients' public keys, 1 to {@link HybridHeader#MAX_RECIPIENTS}.
+     * @param segmentSize The plaintext segment size.
+     * @param flags       The header flags, see {@link HybridHeader#FLAG_COMPRESSED}.
+     * @param suite       The cipher suite, see {@link CipherSuites}.
+     * @return The segment cipher for the new file.
+     * @throws GeneralSecurityException If the data key cannot be wrapped, or the suite is unknown.
+     */
+    public static SegmentCipher newSegmentCipher(SecretKey dataKey, List<PublicKey> publicKeys, int segmentSize,
+                                                 int flags, int suite) throws GeneralSecurityException {
+        byte[] noncePrefix = new byte[HybridHeader.NONCE_PREFIX_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);
+        HybridHeader header = new HybridHeader(HybridHeader.versionFor(publicKeys.size()), flags, suite, segmentSize,
+            noncePrefix, KeyWrap.wrap(dataKey, publicKeys));
+        return new SegmentCipher(dataKey, header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkWritable();
+        try {
+            while (len > 0) {
+                if (plainLen == plainBuf.length) {
+                    // More data follows, so the buffered segment is not the last one
+                    writeSegment(false);
+                }
+                int n = Math.min(len, plainBuf.length - plainLen);
+                System.arraycopy(b, off, plainBuf, plainLen, n);
+                plainLen += n;
+                off += n;
+                len -= n;
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypts the pending data as the final segment and flushes the underlying stream. Call it once all data is
+     * written and before closing; the stream accepts no more data afterwards.
+     *
+     * @throws IOException If an I/O error occurs, or an earlier write failed.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        checkWritable();
+        try {
+            writeSegment(true);
+            out.flush();
+            finished = true;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    // Whether more data or the final segment may still be written
+    private void checkWritable() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (finished) {
+            throw new IOException("Stream finished");
+        }
+        if (failed) {
+            throw new IOException("An earlier write failed; the output is incomplete");
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Buffered plaintext stays buffered until its segment is complete.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying stream. Unless {@link #finish()} was called, no final segment is written and the
+     * output fails authentication.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+    }
+
+    /**
+     * Returns a channel that writes through this stream. Like the stream, it needs {@link #finish()} before it is
+     * closed.
+     *
+     * @return The channel.
+     */
+    public EncryptingChannel asChannel() {
+        return new EncryptingChannel(this);
+    }
+
+    private void writeSegment(boolean last) throws IOException {
+        try {
+            int n = segmentCipher.encryptSegment(segmentIndex++, last, plainBuf, 0, plainLen, cipherBuf, 0);
+            out.write(cipherBuf, 0, n);
+            plainLen = 0;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption of segment " + (segmentIndex - 1) + " failed", e);
+        }
+    }
+
+    /**
+     * A channel over an encrypting stream, with the same {@link #finish()}.
+     */
+    public static final class EncryptingChannel implements WritableByteChannel {
+
+        private final HybridOutputStream stream;
+
+        private EncryptingChannel(HybridOutputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (stream.closed) {
+                throw new ClosedChannelException();
+            }
+            int len = src.remaining();
+            if (src.hasArray()) {
+                stream.write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.limit());
+            } else {
+                byte[] b = new byte[len];
+                src.get(b);
+                stream.write(b, 0, len);
+            }
+            return len;
+        }
+
+        /**
+         * Writes the final segment, see {@link HybridOutputStream#finish()}.
+         *
+         * @throws IOException If an I/O error occurs, or an earlier write failed.
+         */
+        public void finish() throws IOException {
+            stream.finish();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !stream.closed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
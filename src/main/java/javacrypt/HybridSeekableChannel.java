@@ -0,0 +1,242 @@
+/*
+ * File: HybridSeekableChannel.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.Arrays;
+
+/**
+ * A read-only channel over the plaintext of a file in the hybrid format, with random access.
+ * <p>
+ * All segments but the last have the same size, so the segment index is implicit: the segment holding plaintext
+ * offset p starts at header length + (p / segment size) * ciphertext segment size, and the file size tells which
+ * segment is the last. A read decrypts and authenticates only the segments it covers, so reading a slice costs
+ * O(slice) instead of O(file). The most recently decrypted segment is kept, so small sequential reads decrypt
+ * each segment once. Truncated files are detected, because the segment that ends them was not encrypted as final;
+ * the end of the file is only reported after that segment has been authenticated.
+ * <p>
+ * Files written with compression and incremental files cannot be read at random positions. The channel is not
+ * thread-safe.
+ */
+public class HybridSeekableChannel implements SeekableByteChannel {
+
+    private final SeekableByteChannel channel;
+    private final SegmentCipher segmentCipher;
+    private final long headerLength;
+    private final int segmentSize;
+    private final int cipherSegmentSize;
+    private final long segmentCount;
+    private final int lastCipherLength;
+    private final long size;
+    private final byte[] cipherBuf;
+    private final byte[] plainBuf;
+    private long cachedSegment = -1;
+    private int cachedLength;
+    private long position;
+    private boolean endVerified;
+    private boolean open = true;
+
+    /**
+     * Opens a file for random-access decryption.
+     *
+     * @param path       The encrypted file.
+     * @param privateKey The recipient's private key.
+     * @return The channel; closing it closes the file.
+     * @throws IOException              If the file cannot be read or is not a seekable hybrid file.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    public static HybridSeekableChannel open(Path path, PrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new HybridSeekableChannel(file, privateKey);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Constructs a channel over an encrypted channel. The channel takes ownership of the encrypted channel and
+     * closes it when closed.
+     *
+     * @param channel    The encrypted channel; its position is moved freely.
+     * @param privateKey The recipient's private key.
+     * @throws IOException              If the channel does not hold a seekable hybrid file.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    public HybridSeekableChannel(SeekableByteChannel channel, PrivateKey privateKey)
+            throws IOException, GeneralSecurityException {
+        this.channel = channel;
+        ByteBuffer magic = ByteBuffer.allocate(ChunkedContainer.MAGIC.length);
+        channel.position(0);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic) < 0) {
+                break;
+            }
+        }
+        if (Arrays.equals(magic.array(), ChunkedContainer.MAGIC)) {
+            // The chunks of an incremental file are not laid out by plaintext offset
+            throw new UnsupportedFormatException("Incremental files cannot be read at random positions");
+        }
+        channel.position(0);
+        // Not closed: closing the stream would close the channel. The header is read without read-ahead.
+        InputStream headerStream = Channels.newInputStream(channel);
+        HybridHeader header = HybridHeader.read(headerStream);
+        if (header.isCompressed()) {
+            throw new UnsupportedFormatException("Compressed files cannot be read at random positions");
+        }
+
+        this.segmentCipher = new SegmentCipher(KeyWrap.unwrap(header, privateKey), header);
+        this.headerLength = header.length();
+        this.segmentSize = segmentCipher.getSegmentSize();
+        this.cipherSegmentSize = segmentCipher.getCipherSegmentSize();
+
+        long payload = channel.size() - headerLength;
+        this.segmentCount = Math.max(1, (payload + cipherSegmentSize - 1) / cipherSegmentSize);
+        long lastLength = payload - (segmentCount - 1) * cipherSegmentSize;
+        if (lastLength < SegmentCipher.TAG_LENGTH) {
+            throw new AuthenticationException("Truncated ciphertext");
+        }
+        this.lastCipherLength = (int) lastLength;
+        this.size = payload - segmentCount * SegmentCipher.TAG_LENGTH;
+        this.cipherBuf = new byte[cipherSegmentSize];
+        this.plainBuf = new byte[segmentSize];
+    }
+
+    /**
+     * Returns the header of the file.
+     *
+     * @return The header.
+     */
+    public HybridHeader getHeader() {
+        return segmentCipher.getHeader();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            // The end of the file is only reported once the final segment has been authenticated
+            if (!endVerified) {
+                loadSegment(segmentCount - 1);
+            }
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / segmentSize;
+            loadSegment(index);
+            int offset = (int) (position - index * segmentSize);
+            int n = Math.min(dst.remaining(), cachedLength - offset);
+            dst.put(plainBuf, offset, n);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads, decrypts and authenticates one segment into the plaintext buffer, unless it is already there.
+     *
+     * @param index The segment index.
+     * @throws IOException If the segment cannot be read or fails authentication.
+     */
+    private void loadSegment(long index) throws IOException {
+        if (index == cachedSegment) {
+            return;
+        }
+        boolean last = index == segmentCount - 1;
+        int len = last ? lastCipherLength : cipherSegmentSize;
+
+        ByteBuffer buffer = ByteBuffer.wrap(cipherBuf, 0, len);
+        channel.position(headerLength + index * cipherSegmentSize);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new AuthenticationException("Truncated ciphertext");
+            }
+        }
+
+        cachedSegment = -1;
+        try {
+            cachedLength = segmentCipher.decryptSegment(index, last, cipherBuf, 0, len, plainBuf, 0);
+        } catch (GeneralSecurityException e) {
+            throw new AuthenticationException("Segment " + index + " failed: " + e.getMessage(), e);
+        }
+        cachedSegment = index;
+        endVerified |= last;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * Returns the plaintext size.
+     *
+     * @return The size in bytes.
+     * @throws IOException If the channel is closed.
+     */
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        channel.close();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * File: IncrementalEncryptor.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.*;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+/**
+ * Encrypts a file incrementally: only the chunks that changed since the last run are encrypted and written.
+ * <p>
+ * The input is split into content-defined chunks ({@link ContentChunker}) and every chunk is hashed. The manifest
+ * of the last run ({@link ChunkManifest}) tells which of these hashes are already stored in the encrypted file;
+ * those chunks are referenced where they are, the others are encrypted with a new data key and appended, followed
+ * by a new trailer ({@link ChunkedContainer}). Only the public key is needed. Reading and hashing the input is
+ * still a full pass, but the encryption and the writes scale with the amount of change.
+ * <p>
+ * The file is written from scratch instead when there is no usable manifest, when the public key or the chunk
+ * size changed, when more than half of the file is taken up by replaced chunks, or when the trailer would list too
+ * many keys. A from-scratch run writes a temporary file and moves it into place; an appending run that fails leaves
+ * the file incomplete until the next run, which truncates it back to the state in the manifest.
+ */
+public class IncrementalEncryptor {
+
+    // The file is written from scratch once replaced chunks and old trailers exceed this fraction of it
+    public static final double MAX_UNUSED_RATIO = 0.5;
+
+    // Key index of chunks encrypted in this run, until the trailer's key list is known
+    private static final int NEW_KEY = -1;
+
+    private final PublicKey publicKey;
+    private final int chunkSize;
+    private final CryptStats stats;
+    private String rewriteReason;
+    private long chunks;
+    private long reusedChunks;
+    private long writtenBytes;
+
+    /**
+     * Constructs an incremental encryptor.
+     *
+     * @param publicKey The recipient's public key.
+     * @param chunkSize The average chunk size, see {@link ContentChunker}.
+     * @param stats     The statistics of the run.
+     */
+    public IncrementalEncryptor(PublicKey publicKey, int chunkSize, CryptStats stats) {
+        this.publicKey = publicKey;
+        this.chunkSize = chunkSize;
+        this.stats = stats;
+    }
+
+    /**
+     * Encrypts the input into the incremental file, reusing the chunks recorded in the manifest.
+     *
+     * @param inputReader  The plaintext stream.
+     * @param file         The incremental file.
+     * @param manifestFile The manifest; created or replaced.
+     * @return The number of plaintext bytes.
+     * @throws IOException              If an I/O error occurs.
+     * @throws GeneralSecurityException If encryption fails.
+     */
+    public long encrypt(InputStream inputReader, Path file, Path manifestFile)
+            throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        ChunkManifest old = loadManifest(file, manifestFile);
+        boolean append = old != null;
+        Path target = append ? file : file.resolveSibling(file.getFileName() + ".tmp");
+
+        SecretKey dataKey = KeyWrap.generateDataKey();
+        WrappedKey wrappedKey = new WrappedKey(
+            KeyWrap.wrapAlgorithmFor(publicKey), KeyWrap.wrap(dataKey, publicKey));
+        byte[] salt = append ? old.getSalt() : newSalt();
+        stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
+
+        // Chunks by hash: those of the last run, and those written by this run
+        Map<ByteBuffer, ChunkedContainer.Chunk> known = new HashMap<>();
+        if (append) {
+            for (ChunkManifest.Entry entry : old.getEntries()) {
+                known.put(ByteBuffer.wrap(entry.getHash()), entry.getChunk());
+            }
+        }
+
+        try {
+            return write(inputReader, file, target, manifestFile, old, dataKey, wrappedKey, salt, known);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            if (!append) {
+                Files.deleteIfExists(target);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Chunks the input, writes the new chunks and the trailer, and replaces the manifest.
+     *
+     * @param inputReader  The plaintext stream.
+     * @param file         The incremental file.
+     * @param target       The file to write: the incremental file when appending, a temporary file otherwise.
+     * @param manifestFile The manifest.
+     * @param old          The manifest of the last run, or null to write from scratch.
+     * @param dataKey      The data key of this run.
+     * @param wrappedKey   The data key, wrapped with the public key.
+     * @param salt         The salt of the chunk hashes.
+     * @param known        The chunks already stored, by hash.
+     * @return The number of plaintext bytes.
+     * @throws IOException              If an I/O error occurs.
+     * @throws GeneralSecurityException If encryption fails.
+     */
+    private long write(InputStream inputReader, Path file, Path target, Path manifestFile, ChunkManifest old,
+                       SecretKey dataKey, WrappedKey wrappedKey, byte[] salt,
+                       Map<ByteBuffer, ChunkedContainer.Chunk> known) throws IOException, GeneralSecurityException {
+        boolean append = old != null;
+        Cipher cipher = Cipher.getInstance(SegmentCipher.AES_GCM_TRANSFORMATION);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        List<ChunkManifest.Entry> entries = new ArrayList<>();
+        long size = 0;
+        long length;
+        long trailerOffset;
+        List<WrappedKey> keys;
+        try (FileChannel channel = append
+                ? FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position;
+            if (append) {
+                // Drops whatever an interrupted run appended after the state in the manifest
+                channel.truncate(old.getFileLength());
+                position = old.getFileLength();
+            } else {
+                ChunkedContainer.writeFully(channel, ByteBuffer.wrap(ChunkedContainer.header()), 0);
+                position = ChunkedContainer.HEADER_LENGTH;
+            }
+
+            ContentChunker chunker = new ContentChunker(inputReader, chunkSize);
+            while (true) {
+                long start = System.nanoTime();
+                int len = chunker.next();
+                stats.record(CryptStats.Phase.READ, start, len);
+                if (len == 0) {
+                    break;
+                }
+
+                start = System.nanoTime();
+                digest.update(salt);
+                digest.update(chunker.getBuffer(), chunker.getOffset(), len);
+                byte[] hash = digest.digest();
+                ChunkedContainer.Chunk chunk = known.get(ByteBuffer.wrap(hash));
+                if (chunk != null) {
+                    reusedChunks++;
+                } else {
+                    chunk = ChunkedContainer.writeChunk(cipher, dataKey, NEW_KEY, chunker.getBuffer(),
+                        chunker.getOffset(), len, channel, position);
+                    position += chunk.getCipherLength();
+                    writtenBytes += chunk.getCipherLength();
+                    known.put(ByteBuffer.wrap(hash), chunk);
+                }
+                stats.record(CryptStats.Phase.CRYPTO, start, len);
+                entries.add(new ChunkManifest.Entry(hash, chunk));
+                chunks++;
+                size += len;
+            }
+            stats.addBytesIn(size);
+            stats.addFile();
+
+            if (append && writtenBytes == 0 && sameChunks(old.getEntries(), entries)) {
+                return size;
+            }
+
+            // The keys still in use keep their order, the new key goes last and also encrypts the table
+            keys = new ArrayList<>();
+            int[] keyIndex = new int[append ? old.getKeys().size() : 0];
+            Arrays.fill(keyIndex, NEW_KEY);
+            for (ChunkManifest.Entry entry : entries) {
+                int index = entry.getChunk().getKeyIndex();
+                if (index != NEW_KEY) {
+                    keyIndex[index] = 0;
+                }
+            }
+            for (int i = 0; i < keyIndex.length; i++) {
+                if (keyIndex[i] == 0) {
+                    keyIndex[i] = keys.size();
+                    keys.add(old.getKeys().get(i));
+                }
+            }
+            int newKeyIndex = keys.size();
+            keys.add(wrappedKey);
+
+            List<ChunkManifest.Entry> remapped = new ArrayList<>(entries.size());
+            List<ChunkedContainer.Chunk> table = new ArrayList<>(entries.size());
+            for (ChunkManifest.Entry entry : entries) {
+                int index = entry.getChunk().getKeyIndex();
+                ChunkedContainer.Chunk chunk = entry.getChunk().withKeyIndex(
+                    index == NEW_KEY ? newKeyIndex : keyIndex[index]);
+                remapped.add(new ChunkManifest.Entry(entry.getHash(), chunk));
+                table.add(chunk);
+            }
+            entries = remapped;
+
+            long start = System.nanoTime();
+            trailerOffset = position;
+            length = ChunkedContainer.writeTrailer(channel, trailerOffset, keys, dataKey, table, size);
+            writtenBytes += length - trailerOffset;
+            channel.force(false);
+            stats.record(CryptStats.Phase.WRITE, start, length - trailerOffset);
+        }
+        stats.addBytesOut(writtenBytes);
+
+        if (!append) {
+            Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        new ChunkManifest(length, trailerOffset, chunkSize, KeyCodec.fingerprint(publicKey), salt, keys, entries)
+            .write(manifestFile);
+        return size;
+    }
+
+    /**
+     * Loads the manifest of the last run, if the file can be appended to.
+     *
+     * @param file         The incremental file.
+     * @param manifestFile The manifest.
+     * @return The manifest, or null if the file has to be written from scratch; see {@link #getRewriteReason()}.
+     * @throws IOException If the manifest exists but cannot be read.
+     */
+    private ChunkManifest loadManifest(Path file, Path manifestFile) throws IOException {
+        if (!Files.exists(manifestFile)) {
+            rewriteReason = "no manifest";
+            return null;
+        }
+        ChunkManifest manifest = ChunkManifest.read(manifestFile);
+        if (!Files.isRegularFile(file) || Files.size(file) < manifest.getFileLength()) {
+            rewriteReason = "the file does not match the manifest";
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ChunkedContainer.readTrailerOffset(channel, manifest.getFileLength()) != manifest.getTrailerOffset()) {
+                rewriteReason = "the file does not match the manifest";
+                return null;
+            }
+        } catch (IOException e) {
+            rewriteReason = "the file does not match the manifest";
+            return null;
+        }
+        // Every data key of the trailer must unwrap with the same private key
+        if (!KeyCodec.fingerprint(publicKey).equals(manifest.getRecipient())) {
+            rewriteReason = manifest.getRecipient() == null
+                ? "the manifest does not record the public key"
+                : "the public key changed";
+            return null;
+        }
+        if (manifest.getChunkSize() != chunkSize) {
+            rewriteReason = "the chunk size changed";
+            return null;
+        }
+        if (manifest.getUnusedBytes() > manifest.getFileLength() * MAX_UNUSED_RATIO) {
+            rewriteReason = "more than half of the file is unused";
+            return null;
+        }
+        if (manifest.getKeys().size() >= ChunkedContainer.MAX_KEYS) {
+            rewriteReason = "too many data keys";
+            return null;
+        }
+        return manifest;
+    }
+
+    // Whether the run produced exactly the chunk list of the last run
+    private static boolean sameChunks(List<ChunkManifest.Entry> a, List<ChunkManifest.Entry> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getChunk() != b.get(i).getChunk()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[ChunkManifest.HASH_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * Returns why the last run wrote the file from scratch.
+     *
+     * @return The reason, or null if it appended to the file.
+     */
+    public String getRewriteReason() {
+        return rewriteReason;
+    }
+
+    public long getChunks() {
+        return chunks;
+    }
+
+    public long getReusedChunks() {
+        return reusedChunks;
+    }
+
+    /**
+     * Returns the number of bytes written to the file by the last run: new chunks and the trailer.
+     *
+     * @return The number of bytes.
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+}
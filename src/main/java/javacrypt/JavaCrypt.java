@@ -0,0 +1,312 @@
+/*
+ * File: JavaCrypt.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+import javax.crypto.SecretKey;
+
+/**
+ * The library entry point: encrypts and decrypts data in the hybrid format inside the calling process, without
+ * files, command lines or console output.
+ * <p>
+ * All methods are static and thread-safe, and each call works on its own data key and buffers. Errors are thrown,
+ * never printed: {@link UnsupportedFormatException} for data that is not a JavaCrypt file,
+ * {@link KeyMismatchException} for a file encrypted for another key, {@link AuthenticationException} for data that
+ * was modified or cut off, and plain IOExceptions for errors of the underlying streams. Files written with
+ * {@code -encrypt --compress} are inflated transparently, except by {@link #openDecryptingChannel(Path, PrivateKey)}.
+ * <p>
+ * Example usage:
+ * <p>
+ * PublicKey publicKey = JavaCrypt.readPublicKey(Paths.get("pub.key"));
+ * try (HybridOutputStream out = JavaCrypt.newEncryptingStream(Files.newOutputStream(target), publicKey)) {
+ * out.write(data);
+ * out.finish();
+ * }
+ * <p>
+ * The encrypting streams and channels only write the final segment in finish(). If the data source fails and the
+ * stream is closed without it, the output fails authentication instead of passing for a complete, shorter file.
+ */
+public final class JavaCrypt {
+
+    private JavaCrypt() {
+    }
+
+    /**
+     * Reads a public key file in any encoding the command line accepts.
+     *
+     * @param path The key file.
+     * @return The public key.
+     * @throws IOException If the file cannot be read or does not hold a public key.
+     */
+    public static PublicKey readPublicKey(Path path) throws IOException {
+        Key key = KeyCodec.read(path.toFile());
+        if (!(key instanceof PublicKey)) {
+            throw new JavaCryptException("Not a public key: " + path);
+        }
+        return (PublicKey) key;
+    }
+
+    /**
+     * Reads a private key file in any encoding the command line accepts.
+     *
+     * @param path The key file.
+     * @return The private key.
+     * @throws IOException If the file cannot be read or does not hold a private key.
+     */
+    public static PrivateKey readPrivateKey(Path path) throws IOException {
+        Key key = KeyCodec.read(path.toFile());
+        if (!(key instanceof PrivateKey)) {
+            throw new JavaCryptException("Not a private key: " + path);
+        }
+        return (PrivateKey) key;
+    }
+
+    /**
+     * Returns a stream that encrypts everything written to it into the given stream. Call
+     * {@link HybridOutputStream#finish()} after the last write to write the final segment, then close it; closing
+     * it closes the given stream. Without finish(), the output fails authentication as truncated.
+     *
+     * @param out       The stream receiving the ciphertext.
+     * @param publicKey The recipient's public key.
+     * @return The encrypting stream.
+     * @throws IOException If the header cannot be written or the key cannot be used for encryption.
+     */
+    public static HybridOutputStream newEncryptingStream(OutputStream out, PublicKey publicKey) throws IOException {
+        return newEncryptingStream(out, publicKey, HybridHeader.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns a stream that encrypts everything written to it into the given stream, with the given segment size.
+     * As with {@link #newEncryptingStream(OutputStream, PublicKey)}, finish() writes the final segment.
+     *
+     * @param out         The stream receiving the ciphertext.
+     * @param publicKey   The recipient's public key.
+     * @param segmentSize The plaintext bytes per segment, see {@link RunEncrypt#checkSegmentSize(int)}.
+     * @return The encrypting stream.
+     * @throws IOException If the header cannot be written or the key cannot be used for encryption.
+     */
+    public static HybridOutputStream newEncryptingStream(OutputStream out, PublicKey publicKey, int segmentSize)
+            throws IOException {
+        RunEncrypt.checkSegmentSize(segmentSize);
+        return new HybridOutputStream(out, newSegmentCipher(Collections.singletonList(publicKey), segmentSize));
+    }
+
+    /**
+     * Returns a stream that encrypts everything written to it into the given stream, readable by each of the given
+     * recipients. The data is encrypted once; the header holds the data key wrapped for every recipient. As with
+     * {@link #newEncryptingStream(OutputStream, PublicKey)}, finish() writes the final segment.
+     *
+     * @param out        The stream receiving the ciphertext.
+     * @param publicKeys The recipients' public keys, 1 to {@link HybridHeader#MAX_RECIPIENTS}.
+     * @return The encrypting stream.
+     * @throws IOException If the header cannot be written or a key cannot be used for encryption.
+     */
+    public static HybridOutputStream newEncryptingStream(OutputStream out, List<PublicKey> publicKeys)
+            throws IOException {
+        return new HybridOutputStream(out, newSegmentCipher(publicKeys, HybridHeader.DEFAULT_SEGMENT_SIZE));
+    }
+
+    /**
+     * Returns a stream that decrypts the given stream. The header is read and the data key unwrapped right away;
+     * every segment is authenticated before any of its plaintext is returned.
+     *
+     * @param in         The stream holding the ciphertext.
+     * @param privateKey The recipient's private key.
+     * @return The decrypting stream.
+     * @throws IOException If the header cannot be read or the key does not match.
+     */
+    public static InputStream newDecryptingStream(InputStream in, PrivateKey privateKey) throws IOException {
+        HybridHeader header = HybridHeader.read(in);
+        InputStream plain = new HybridInputStream(in, openSegmentCipher(header, privateKey));
+        return header.isCompressed() ? new InflaterInputStream(plain) : plain;
+    }
+
+    /**
+     * Returns a channel that encrypts everything written to it into the given channel. Call
+     * {@link HybridOutputStream.EncryptingChannel#finish()} after the last write to write the final segment, then
+     * close it; closing it closes the given channel. Without finish(), the output fails authentication as truncated.
+     *
+     * @param channel   The channel receiving the ciphertext.
+     * @param publicKey The recipient's public key.
+     * @return The encrypting channel.
+     * @throws IOException If the header cannot be written or the key cannot be used for encryption.
+     */
+    public static HybridOutputStream.EncryptingChannel newEncryptingChannel(WritableByteChannel channel,
+                                                                            PublicKey publicKey) throws IOException {
+        return newEncryptingStream(Channels.newOutputStream(channel), publicKey).asChannel();
+    }
+
+    /**
+     * Returns a channel that decrypts the given channel.
+     *
+     * @param channel    The channel holding the ciphertext.
+     * @param privateKey The recipient's private key.
+     * @return The decrypting channel.
+     * @throws IOException If the header cannot be read or the key does not match.
+     */
+    public static ReadableByteChannel newDecryptingChannel(ReadableByteChannel channel, PrivateKey privateKey)
+            throws IOException {
+        return Channels.newChannel(newDecryptingStream(Channels.newInputStream(channel), privateKey));
+    }
+
+    /**
+     * Opens an encrypted file for reading at random positions, decrypting only the segments that are read.
+     *
+     * @param path       The encrypted file; it must be neither compressed nor incremental.
+     * @param privateKey The recipient's private key.
+     * @return The read-only channel over the plaintext.
+     * @throws IOException If the file cannot be opened or read, or the key does not match.
+     */
+    public static SeekableByteChannel openDecryptingChannel(Path path, PrivateKey privateKey) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new HybridSeekableChannel(file, privateKey);
+        } catch (GeneralSecurityException e) {
+            file.close();
+            throw new KeyMismatchException("The data key cannot be unwrapped with this private key", e);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encrypts a whole stream, with the segments encrypted in parallel on the common fork-join pool. Neither
+     * stream is closed.
+     *
+     * @param in        The plaintext.
+     * @param out       The stream receiving the ciphertext.
+     * @param publicKey The recipient's public key.
+     * @return The number of plaintext bytes.
+     * @throws IOException If an I/O error occurs or the key cannot be used for encryption.
+     */
+    public static long encrypt(InputStream in, OutputStream out, PublicKey publicKey) throws IOException {
+        return encrypt(in, out, Collections.singletonList(publicKey));
+    }
+
+    /**
+     * Encrypts a whole stream once for several recipients, with the segments encrypted in parallel on the common
+     * fork-join pool. Neither stream is closed.
+     *
+     * @param in         The plaintext.
+     * @param out        The stream receiving the ciphertext.
+     * @param publicKeys The recipients' public keys, 1 to {@link HybridHeader#MAX_RECIPIENTS}.
+     * @return The number of plaintext bytes.
+     * @throws IOException If an I/O error occurs or a key cannot be used for encryption.
+     */
+    public static long encrypt(InputStream in, OutputStream out, List<PublicKey> publicKeys) throws IOException {
+        SegmentCipher segmentCipher = newSegmentCipher(publicKeys, HybridHeader.DEFAULT_SEGMENT_SIZE);
+        segmentCipher.getHeader().write(out);
+        return SegmentEngine.encrypt(segmentCipher, ForkJoinPool.commonPool(), in, out);
+    }
+
+    /**
+     * Decrypts a whole stream, with the segments decrypted in parallel on the common fork-join pool. Neither
+     * stream is closed. Plaintext is written as the segments are authenticated, so after an exception the output
+     * holds an incomplete prefix and must be discarded.
+     *
+     * @param in         The ciphertext.
+     * @param out        The stream receiving the plaintext.
+     * @param privateKey The recipient's private key.
+     * @return The number of plaintext bytes.
+     * @throws IOException If an I/O error occurs, the key does not match or the data fails authentication.
+     */
+    public static long decrypt(InputStream in, OutputStream out, PrivateKey privateKey) throws IOException {
+        HybridHeader header = HybridHeader.read(in);
+        SegmentCipher segmentCipher = openSegmentCipher(header, privateKey);
+        if (!header.isCompressed()) {
+            return SegmentEngine.decrypt(segmentCipher, ForkJoinPool.commonPool(), in, out);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            InflaterOutputStream inflated = new InflaterOutputStream(out, inflater, RunEncrypt.COMPRESS_BUFSIZE);
+            SegmentEngine.decrypt(segmentCipher, ForkJoinPool.commonPool(), in, inflated);
+            inflated.finish();
+            if (!inflater.finished()) {
+                throw new AuthenticationException("Compressed payload is incomplete");
+            }
+            return inflater.getBytesWritten();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Encrypts a byte array.
+     *
+     * @param plaintext The plaintext.
+     * @param publicKey The recipient's public key.
+     * @return The encrypted file contents.
+     * @throws IOException If the key cannot be used for encryption.
+     */
+    public static byte[] encrypt(byte[] plaintext, PublicKey publicKey) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plaintext.length + 1024);
+        encrypt(new ByteArrayInputStream(plaintext), out, publicKey);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decrypts a byte array.
+     *
+     * @param ciphertext The encrypted file contents.
+     * @param privateKey The recipient's private key.
+     * @return The plaintext.
+     * @throws IOException If the key does not match or the data fails authentication.
+     */
+    public static byte[] decrypt(byte[] ciphertext, PrivateKey privateKey) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(ciphertext.length);
+        decrypt(new ByteArrayInputStream(ciphertext), out, privateKey);
+        return out.toByteArray();
+    }
+
+    // A fresh data key and header for the recipients
+    private static SegmentCipher newSegmentCipher(List<PublicKey> publicKeys, int segmentSize) throws IOException {
+        if (publicKeys.isEmpty() || publicKeys.size() > HybridHeader.MAX_RECIPIENTS) {
+            throw new IllegalArgumentException("Expected 1 to " + HybridHeader.MAX_RECIPIENTS + " recipients");
+        }
+        try {
+            return HybridOutputStream.newSegmentCipher(publicKeys, segmentSize, 0, HybridHeader.SUITE_AES_GCM);
+        } catch (GeneralSecurityException e) {
+            throw new JavaCryptException("Cannot encrypt for this key: " + e.getMessage(), e);
+        }
+    }
+
+    // The segment cipher of a file, with the data key unwrapped
+    private static SegmentCipher openSegmentCipher(HybridHeader header, PrivateKey privateKey) throws IOException {
+        SecretKey dataKey;
+        try {
+            dataKey = KeyWrap.unwrap(header, privateKey);
+        } catch (GeneralSecurityException e) {
+            throw new KeyMismatchException("The data key cannot be unwrapped with this private key", e);
+        }
+        try {
+            return new SegmentCipher(dataKey, header);
+        } catch (GeneralSecurityException e) {
+            throw new UnsupportedFormatException(e.getMessage());
+        }
+    }
+}
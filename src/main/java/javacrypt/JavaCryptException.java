@@ -0,0 +1,40 @@
+/*
+ * File: JavaCryptException.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+
+/**
+ * Signals that encrypted data cannot be processed: it is not in a supported format, it was modified, or it was not
+ * encrypted for the given key. I/O errors of the underlying streams are reported as plain IOExceptions.
+ */
+public class JavaCryptException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     */
+    public JavaCryptException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     * @param cause   The underlying exception.
+     */
+    public JavaCryptException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * File: KeyCodec.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.*;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.*;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Reads and writes key files in the standard encodings: PKCS#8 for private keys and X.509 SubjectPublicKeyInfo
+ * for public keys, either as binary DER or as PEM text. RSA, EC and X25519 keys are supported. Keys written by
+ * older JavaCrypt versions with Java object serialization can still be read.
+ */
+public final class KeyCodec {
+
+    /**
+     * The encodings a key file can be written in.
+     */
+    public enum Format {
+        PEM, DER;
+
+        /**
+         * Parses a format name, ignoring case.
+         *
+         * @param name The name, "pem" or "der".
+         * @return The format.
+         * @throws IllegalArgumentException If the name is unknown.
+         */
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown key format: " + name + " (use pem or der)");
+            }
+        }
+    }
+
+    // Key algorithms tried, in order, when parsing an encoded key
+    private static final String[] KEY_ALGORITHMS = {RunnableBase.CRYPTO_ALGORITHMUS, "EC", "XDH"};
+
+    // First two bytes of a Java serialization stream
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+
+    private static final String PEM_PRIVATE = "PRIVATE KEY";
+    private static final String PEM_PUBLIC = "PUBLIC KEY";
+
+    private KeyCodec() {
+    }
+
+    /**
+     * Reads a key file in any supported encoding.
+     *
+     * @param keyFile The key file.
+     * @return The key.
+     * @throws IOException If the file cannot be read or does not hold a supported key.
+     */
+    public static Key read(File keyFile) throws IOException {
+        return decode(Files.readAllBytes(keyFile.toPath()), keyFile.getPath());
+    }
+
+    /**
+     * Decodes the content of a key file.
+     *
+     * @param data   The file content.
+     * @param source The name of the file, used in error messages.
+     * @return The key.
+     * @throws IOException If the content does not hold a supported key.
+     */
+    public static Key decode(byte[] data, String source) throws IOException {
+        if (data.length >= 2 && ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) == SERIALIZATION_MAGIC) {
+            return readSerialized(data, source);
+        }
+
+        String text = new String(data, StandardCharsets.US_ASCII).trim();
+        if (text.startsWith("-----BEGIN ")) {
+            String label = text.substring("-----BEGIN ".length(), text.indexOf("-----", 5));
+            String body = text.substring(text.indexOf('\n') + 1, text.lastIndexOf("-----END"));
+            byte[] der = Base64.getMimeDecoder().decode(body);
+            if (label.endsWith(PEM_PRIVATE)) {
+                return decodePrivate(der, source);
+            }
+            if (label.endsWith(PEM_PUBLIC)) {
+                return decodePublic(der, source);
+            }
+            throw new IOException(source + ": unsupported PEM type '" + label + "'");
+        }
+
+        // Binary DER: a PKCS#8 private key or an X.509 public key
+        try {
+            return decodePrivate(data, source);
+        } catch (IOException e) {
+            return decodePublic(data, source);
+        }
+    }
+
+    /**
+     * Writes a key file. A private key is written to a temporary file that is readable by its owner only and then
+     * moved into place, so it is never readable by others, not even while it is written.
+     *
+     * @param key     The key; private keys are written as PKCS#8, public keys as X.509.
+     * @param keyFile The key file.
+     * @param format  The encoding.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Key key, File keyFile, Format format) throws IOException {
+        if (!(key instanceof PrivateKey)) {
+            Files.write(keyFile.toPath(), encode(key, format));
+            return;
+        }
+        Path path = keyFile.toPath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                try {
+                    Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+                } catch (UnsupportedOperationException e) {
+                    // Not a POSIX file system
+                }
+                out.write(encode(key, format));
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes a key.
+     *
+     * @param key    The key; private keys are encoded as PKCS#8, public keys as X.509.
+     * @param format The encoding.
+     * @return The encoded key.
+     */
+    public static byte[] encode(Key key, Format format) {
+        byte[] der = key.getEncoded();
+        if (format == Format.DER) {
+            return der;
+        }
+        String label = key instanceof PrivateKey ? PEM_PRIVATE : PEM_PUBLIC;
+        String body = Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(der);
+        String pem = "-----BEGIN " + label + "-----\n" + body + "\n-----END " + label + "-----\n";
+        return pem.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the fingerprint of a key: the hex SHA-256 of its public key in X.509 encoding.
+     * A private key and its public key have the same fingerprint where the public part can be derived.
+     *
+     * @param key The key.
+     * @return The fingerprint.
+     */
+    public static String fingerprint(Key key) {
+        byte[] encoded = key.getEncoded();
+        if (key instanceof RSAPrivateCrtKey) {
+            RSAPrivateCrtKey crt = (RSAPrivateCrtKey) key;
+            try {
+                encoded = KeyFactory.getInstance(key.getAlgorithm())
+                    .generatePublic(new RSAPublicKeySpec(crt.getModulus(), crt.getPublicExponent()))
+                    .getEncoded();
+            } catch (GeneralSecurityException e) {
+                // Fall back to the private encoding
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(encoded);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static PrivateKey decodePrivate(byte[] der, String source) throws IOException {
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePrivate(new PKCS8EncodedKeySpec(der));
+            } catch (GeneralSecurityException e) {
+                // Try the next algorithm
+            }
+        }
+        throw new IOException(source + ": not a supported PKCS#8 private key");
+    }
+
+    private static PublicKey decodePublic(byte[] der, String source) throws IOException {
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(der));
+            } catch (GeneralSecurityException e) {
+                // Try the next algorithm
+            }
+        }
+        throw new IOException(source + ": not a supported key file");
+    }
+
+    private static Key readSerialized(byte[] data, String source) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            Object object = ois.readObject();
+            if (!(object instanceof Key)) {
+                throw new IOException(source + ": serialized object is not a key");
+            }
+            return (Key) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(source + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * File: KeyMismatchException.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+/**
+ * Signals that the data key of a file cannot be unwrapped with the given private key, usually because the file
+ * was encrypted for a different recipient.
+ */
+public class KeyMismatchException extends JavaCryptException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     * @param cause   The underlying exception.
+     */
+    public KeyMismatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
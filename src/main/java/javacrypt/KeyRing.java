@@ -0,0 +1,116 @@
+/*
+ * File: KeyRing.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process cache of parsed keys, keyed by fingerprint.
+ * <p>
+ * Loading a key file that was loaded before only costs a stat call: the file's path, size and modification time
+ * map to the fingerprint of the key parsed last time. Changed files are parsed again. The key ring is thread-safe.
+ */
+public final class KeyRing {
+
+    // The key ring shared by all commands of this process
+    private static final KeyRing DEFAULT = new KeyRing();
+
+    // Parsed keys by fingerprint
+    private final Map<String, Key> keys = new ConcurrentHashMap<>();
+
+    // Fingerprint of the key last parsed from each file
+    private final Map<Path, FileEntry> files = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the key ring shared by all commands of this process.
+     *
+     * @return The shared key ring.
+     */
+    public static KeyRing getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Loads a key file, parsing it only if it is new or has changed since it was last loaded.
+     *
+     * @param keyFile The key file.
+     * @return The key.
+     * @throws IOException If the file cannot be read or does not hold a supported key.
+     */
+    public Key load(File keyFile) throws IOException {
+        Path path = keyFile.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        FileEntry entry = files.get(path);
+        if (entry != null && entry.size == attributes.size() && entry.modified == modified) {
+            Key key = keys.get(entry.ringKey);
+            if (key != null) {
+                return key;
+            }
+        }
+
+        Key key = KeyCodec.read(keyFile);
+        files.put(path, new FileEntry(attributes.size(), modified, ringKey(add(key), key instanceof PrivateKey)));
+        return key;
+    }
+
+    /**
+     * Adds a key to the ring.
+     *
+     * @param key The key.
+     * @return The fingerprint of the key.
+     */
+    public String add(Key key) {
+        String fingerprint = KeyCodec.fingerprint(key);
+        keys.put(ringKey(fingerprint, key instanceof PrivateKey), key);
+        return fingerprint;
+    }
+
+    /**
+     * Returns a key by fingerprint.
+     *
+     * @param fingerprint The fingerprint, see {@link KeyCodec#fingerprint(Key)}.
+     * @param privateKey  True for the private key, false for the public key.
+     * @return The key, or null if the ring does not hold it.
+     */
+    public Key get(String fingerprint, boolean privateKey) {
+        return keys.get(ringKey(fingerprint, privateKey));
+    }
+
+    // A private key and its public key share a fingerprint, so the map is keyed by type as well
+    private static String ringKey(String fingerprint, boolean privateKey) {
+        return (privateKey ? "private:" : "public:") + fingerprint;
+    }
+
+    /**
+     * What was loaded from a key file.
+     */
+    private static final class FileEntry {
+
+        private final long size;
+        private final long modified;
+        private final String ringKey;
+
+        FileEntry(long size, long modified, String ringKey) {
+            this.size = size;
+            this.modified = modified;
+            this.ringKey = ringKey;
+        }
+    }
+}
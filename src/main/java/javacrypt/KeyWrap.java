@@ -0,0 +1,307 @@
+/*
+ * File: KeyWrap.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.crypto.*;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Generates per-file data keys and wraps them with the recipient's asymmetric key.
+ * <p>
+ * The data key is the only thing the asymmetric operation touches; the payload itself is encrypted with it
+ * by {@link SegmentCipher}.
+ * <p>
+ * RSA keys wrap the data key directly with OAEP. X25519 and EC keys use key agreement instead: a fresh ephemeral
+ * key pair is generated per file, the shared secret is run through HKDF-SHA256 to get a key-encryption key, and
+ * the data key is wrapped with AES key wrap (RFC 3394). The wrapped key recorded in the header is then
+ * <pre>
+ *   length         1 byte   length of the ephemeral public key
+ *   ephemeral key  n bytes  X.509 encoding
+ *   wrapped key    40 bytes
+ * </pre>
+ * Unwrapping costs one key agreement, far less than an RSA private-key operation.
+ * <p>
+ * A file for several recipients carries one wrapped copy of the same data key per recipient. The entries do not
+ * name their recipient, so unwrapping tries the entries of the private key's type in turn.
+ */
+public final class KeyWrap {
+
+    // Algorithm of the per-file data key
+    public static final String DATA_KEY_ALGORITHMUS = "AES";
+
+    // Length of the per-file data key in bits
+    public static final int DATA_KEY_LENGTH = 256;
+
+    // RSA transformation used to wrap the data key
+    public static final String RSA_WRAP_TRANSFORMATION = "RSA/ECB/OAEPPadding";
+
+    // AES key wrap (RFC 3394), used with the key-encryption key of the key agreement modes
+    public static final String AES_WRAP_TRANSFORMATION = "AESWrap";
+
+    // MAC of the HKDF key derivation
+    public static final String KDF_MAC_ALGORITHMUS = "HmacSHA256";
+
+    // HKDF info prefix, separating these keys from any other use of the shared secret
+    private static final byte[] KDF_LABEL = "JavaCrypt key wrap".getBytes(StandardCharsets.US_ASCII);
+
+    // OAEP parameters; spelled out so every provider uses SHA-256 for both digest and MGF1
+    private static final OAEPParameterSpec OAEP_SPEC =
+        new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
+    // Length of the X.509 encoding of an X25519 public key; X448 keys are longer
+    private static final int X25519_PUBLIC_KEY_LENGTH = 44;
+
+    private KeyWrap() {
+    }
+
+    /**
+     * Generates a fresh random data key.
+     *
+     * @return The data key.
+     * @throws GeneralSecurityException If no AES key generator is available.
+     */
+    public static SecretKey generateDataKey() throws GeneralSecurityException {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance(DATA_KEY_ALGORITHMUS);
+        keyGenerator.init(DATA_KEY_LENGTH);
+        return keyGenerator.generateKey();
+    }
+
+    /**
+     * Wraps the data key with the given public key.
+     *
+     * @param dataKey   The data key.
+     * @param publicKey The recipient's public key.
+     * @return The wrapped key.
+     * @throws GeneralSecurityException If the key cannot be wrapped.
+     */
+    public static byte[] wrap(SecretKey dataKey, PublicKey publicKey) throws GeneralSecurityException {
+        int wrapAlgorithm = wrapAlgorithmFor(publicKey);
+        if (wrapAlgorithm == HybridHeader.WRAP_RSA_OAEP) {
+            Cipher cipher = Cipher.getInstance(RSA_WRAP_TRANSFORMATION);
+            cipher.init(Cipher.WRAP_MODE, publicKey, OAEP_SPEC);
+            return cipher.wrap(dataKey);
+        }
+
+        // Key agreement with a fresh ephemeral key pair on the recipient's curve
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithmFor(wrapAlgorithm));
+        if (wrapAlgorithm == HybridHeader.WRAP_ECDH) {
+            keyPairGenerator.initialize(((ECPublicKey) publicKey).getParams());
+        }
+        KeyPair ephemeral = keyPairGenerator.generateKeyPair();
+        byte[] ephemeralKey = ephemeral.getPublic().getEncoded();
+
+        Cipher cipher = Cipher.getInstance(AES_WRAP_TRANSFORMATION);
+        cipher.init(Cipher.WRAP_MODE, deriveKek(wrapAlgorithm, ephemeral.getPrivate(), publicKey, ephemeralKey));
+        byte[] wrapped = cipher.wrap(dataKey);
+
+        byte[] entry = new byte[1 + ephemeralKey.length + wrapped.length];
+        entry[0] = (byte) ephemeralKey.length;
+        System.arraycopy(ephemeralKey, 0, entry, 1, ephemeralKey.length);
+        System.arraycopy(wrapped, 0, entry, 1 + ephemeralKey.length, wrapped.length);
+        return entry;
+    }
+
+    /**
+     * Wraps the data key for each of the given recipients.
+     *
+     * @param dataKey    The data key.
+     * @param publicKeys The recipients' public keys.
+     * @return The wrapped keys, in the order of the public keys.
+     * @throws GeneralSecurityException If the key cannot be wrapped for one of the recipients, or a key is listed
+     *                                  twice.
+     */
+    public static List<WrappedKey> wrap(SecretKey dataKey, List<PublicKey> publicKeys)
+            throws GeneralSecurityException {
+        List<WrappedKey> recipients = new ArrayList<>(publicKeys.size());
+        Set<String> fingerprints = new HashSet<>();
+        for (PublicKey publicKey : publicKeys) {
+            if (!fingerprints.add(KeyCodec.fingerprint(publicKey))) {
+                throw new InvalidKeyException("The same public key is listed twice as a recipient");
+            }
+            recipients.add(new WrappedKey(wrapAlgorithmFor(publicKey), wrap(dataKey, publicKey)));
+        }
+        return recipients;
+    }
+
+    /**
+     * Returns the wrap algorithm id to record in the header for the given public key.
+     *
+     * @param publicKey The recipient's public key.
+     * @return The wrap algorithm id.
+     * @throws InvalidKeyException If the key type is not supported.
+     */
+    public static int wrapAlgorithmFor(PublicKey publicKey) throws InvalidKeyException {
+        switch (publicKey.getAlgorithm()) {
+            case RunnableBase.CRYPTO_ALGORITHMUS:
+                return HybridHeader.WRAP_RSA_OAEP;
+            case "XDH":
+            case "X25519":
+                if (publicKey.getEncoded().length == X25519_PUBLIC_KEY_LENGTH) {
+                    return HybridHeader.WRAP_X25519;
+                }
+                break;
+            case "EC":
+                return HybridHeader.WRAP_ECDH;
+            default:
+                break;
+        }
+        throw new InvalidKeyException("Unsupported public key algorithm: " + publicKey.getAlgorithm());
+    }
+
+    /**
+     * Unwraps the data key recorded in the header with the given private key.
+     *
+     * @param header     The file header.
+     * @param privateKey The recipient's private key.
+     * @return The data key.
+     * @throws GeneralSecurityException If the key matches no recipient or the wrap algorithm is unknown.
+     */
+    public static SecretKey unwrap(HybridHeader header, PrivateKey privateKey) throws GeneralSecurityException {
+        List<WrappedKey> recipients = header.getRecipients();
+        if (recipients.size() == 1) {
+            return unwrap(header.getWrapAlgorithm(), header.getWrappedKey(), privateKey);
+        }
+        GeneralSecurityException failure = null;
+        for (WrappedKey recipient : recipients) {
+            try {
+                return unwrap(recipient.getWrapAlgorithm(), recipient.getEntry(), privateKey);
+            } catch (GeneralSecurityException e) {
+                // Entries of another key type fail the type check at once, without an asymmetric operation
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw new InvalidKeyException("The private key matches none of the " + recipients.size()
+            + " recipients of the file", failure);
+    }
+
+    /**
+     * Unwraps a data key with the given private key.
+     *
+     * @param wrapAlgorithm The wrap algorithm id.
+     * @param entry         The wrapped key, as returned by {@link #wrap(SecretKey, PublicKey)}.
+     * @param privateKey    The recipient's private key.
+     * @return The data key.
+     * @throws GeneralSecurityException If the key does not match or the wrap algorithm is unknown.
+     */
+    public static SecretKey unwrap(int wrapAlgorithm, byte[] entry, PrivateKey privateKey)
+            throws GeneralSecurityException {
+        checkKeyType(wrapAlgorithm, privateKey);
+        if (wrapAlgorithm == HybridHeader.WRAP_RSA_OAEP) {
+            Cipher cipher = Cipher.getInstance(RSA_WRAP_TRANSFORMATION);
+            cipher.init(Cipher.UNWRAP_MODE, privateKey, OAEP_SPEC);
+            return (SecretKey) cipher.unwrap(entry, DATA_KEY_ALGORITHMUS, Cipher.SECRET_KEY);
+        }
+        if (wrapAlgorithm != HybridHeader.WRAP_X25519 && wrapAlgorithm != HybridHeader.WRAP_ECDH) {
+            throw new NoSuchAlgorithmException("Unsupported key wrap algorithm: " + wrapAlgorithm);
+        }
+
+        int ephemeralLength = entry.length > 0 ? entry[0] & 0xFF : 0;
+        if (ephemeralLength == 0 || 1 + ephemeralLength >= entry.length) {
+            throw new InvalidKeyException("Malformed wrapped key");
+        }
+        byte[] ephemeralKey = Arrays.copyOfRange(entry, 1, 1 + ephemeralLength);
+        PublicKey ephemeral = KeyFactory.getInstance(keyAlgorithmFor(wrapAlgorithm))
+            .generatePublic(new X509EncodedKeySpec(ephemeralKey));
+
+        Cipher cipher = Cipher.getInstance(AES_WRAP_TRANSFORMATION);
+        cipher.init(Cipher.UNWRAP_MODE, deriveKek(wrapAlgorithm, privateKey, ephemeral, ephemeralKey));
+        try {
+            return (SecretKey) cipher.unwrap(Arrays.copyOfRange(entry, 1 + ephemeralLength, entry.length),
+                DATA_KEY_ALGORITHMUS, Cipher.SECRET_KEY);
+        } catch (InvalidKeyException e) {
+            // AES key wrap fails its integrity check when the key-encryption key differs
+            throw new InvalidKeyException("The private key does not match the file", e);
+        }
+    }
+
+    /**
+     * Derives the key-encryption key of the key agreement modes: HKDF-SHA256 (RFC 5869) over the shared secret,
+     * with an empty salt and an info string that binds the key to the wrap algorithm and the ephemeral public key.
+     *
+     * @param wrapAlgorithm The wrap algorithm id.
+     * @param privateKey    Our private key (ephemeral when wrapping, the recipient's when unwrapping).
+     * @param publicKey     The other side's public key.
+     * @param ephemeralKey  The X.509 encoding of the ephemeral public key.
+     * @return The AES-256 key-encryption key.
+     * @throws GeneralSecurityException If the keys do not agree.
+     */
+    private static SecretKey deriveKek(int wrapAlgorithm, PrivateKey privateKey, PublicKey publicKey,
+                                       byte[] ephemeralKey) throws GeneralSecurityException {
+        KeyAgreement keyAgreement = KeyAgreement.getInstance(
+            wrapAlgorithm == HybridHeader.WRAP_X25519 ? "XDH" : "ECDH");
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        byte[] sharedSecret = keyAgreement.generateSecret();
+
+        Mac mac = Mac.getInstance(KDF_MAC_ALGORITHMUS);
+        mac.init(new SecretKeySpec(new byte[mac.getMacLength()], KDF_MAC_ALGORITHMUS));
+        byte[] prk = mac.doFinal(sharedSecret);
+        mac.init(new SecretKeySpec(prk, KDF_MAC_ALGORITHMUS));
+        mac.update(KDF_LABEL);
+        mac.update((byte) wrapAlgorithm);
+        mac.update(ephemeralKey);
+        mac.update((byte) 1);
+        byte[] kek = mac.doFinal();
+
+        Arrays.fill(sharedSecret, (byte) 0);
+        Arrays.fill(prk, (byte) 0);
+        return new SecretKeySpec(kek, DATA_KEY_ALGORITHMUS);
+    }
+
+    /**
+     * Checks that the private key has the type the file was encrypted for, to report a mismatch plainly.
+     *
+     * @param wrapAlgorithm The wrap algorithm id from the header.
+     * @param privateKey    The private key.
+     * @throws InvalidKeyException If the key has the wrong type.
+     */
+    private static void checkKeyType(int wrapAlgorithm, PrivateKey privateKey) throws InvalidKeyException {
+        String expected;
+        switch (wrapAlgorithm) {
+            case HybridHeader.WRAP_RSA_OAEP:
+                expected = RunnableBase.CRYPTO_ALGORITHMUS;
+                break;
+            case HybridHeader.WRAP_X25519:
+                expected = "XDH";
+                break;
+            case HybridHeader.WRAP_ECDH:
+                expected = "EC";
+                break;
+            default:
+                return;
+        }
+        String actual = "X25519".equals(privateKey.getAlgorithm()) ? "XDH" : privateKey.getAlgorithm();
+        if (!expected.equals(actual)) {
+            throw new InvalidKeyException("The file was encrypted for an " + expected + " key, not an "
+                + privateKey.getAlgorithm() + " key");
+        }
+    }
+
+    // The JCA algorithm of the keys used by a key agreement wrap algorithm
+    private static String keyAlgorithmFor(int wrapAlgorithm) {
+        return wrapAlgorithm == HybridHeader.WRAP_X25519 ? "X25519" : "EC";
+    }
+}
@@ -3,7 +3,7 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 16.07.2026
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
@@ -18,39 +18,42 @@ import java.util.List;
  * The program supports key pair generation, encryption, decryption, and file copying.
  * <p>
  * Command-line arguments:
- * -genkeys [priv_keyfile] [pub_keyfile]: Generates a key pair and stores it in the specified files.
- * -encrypt [pub_keyfile] [ifile] [ofile]: Encrypts the input file using the public key and saves the result to the output file.
- * -decrypt [privkeyfile] [ifile] [ofile]: Decrypts the input file using the private key and saves the result to the output file.
- * -copy [ifile] [ofile]: Copies the input file to the output file (without encryption).
+ * -genkeys [priv_keyfile] [pub_keyfile] [--algorithm rsa|ec|x25519] [--key-size bits] [--format pem|der]: Generates a key pair and stores it in the specified files.
+ * -encrypt [pub_keyfile] [ifile] [ofile] [--recipient pub_keyfile ...] [--threads n] [--segment-size bytes] [--suite aes-gcm|chacha20-poly1305|auto] [--compress] [--incremental [--manifest file] [--chunk-size bytes]] [--resume] [--stats-json file]: Encrypts the input file using the public key and saves the result to the output file.
+ * -decrypt [privkeyfile] [ifile] [ofile] [--threads n] [--stats-json file]: Decrypts the input file using the private key and saves the result to the output file.
+ * -copy [ifile] [ofile] [--parallel] [--threads n]: Copies the input file to the output file (without encryption).
+ * -encrypt-dir [pub_keyfile] [srcdir] [dstdir] [--recipient pub_keyfile ...]: Encrypts every file below srcdir into the same paths below dstdir.
+ * -decrypt-dir [privkeyfile] [srcdir] [dstdir]: Decrypts every file below srcdir into the same paths below dstdir.
+ * -convert-key [ikeyfile] [okeyfile] [--format pem|der]: Converts a key file, including legacy serialized keys, to PEM or DER.
+ * -daemon [socket] [keyfile ...]: Serves encrypt/decrypt requests on a Unix domain socket, keeping keys loaded.
+ * -client [socket] [encrypt|decrypt] [keyfile] [ifile] [ofile]: Has a running daemon encrypt or decrypt a file.
+ * -genkeys-batch [count] [outdir] [--key-size bits]: Generates count key pairs in parallel into outdir.
+ * -decrypt-range [privkeyfile] [ifile] [ofile] [offset] [length]: Decrypts only the given plaintext range.
+ * -pack [pub_keyfile] [archive] [input ...]: Encrypts files and directories in parallel into one archive.
+ * -unpack [privkeyfile] [archive] [outdir] [member ...]: Extracts all or the given members of an archive.
+ * -list [privkeyfile] [archive]: Lists the members of an archive.
+ * -verify [privkeyfile] [file ...]: Checks the integrity of encrypted files without writing the plaintext.
+ * -rewrap [old_privkeyfile] [new_pubkeyfile] [file ...]: Moves encrypted files to a new key pair without
+ * re-encrypting them.
+ * -bench: Measures the cipher suites and JCE providers on this machine.
+ * <p>
+ * Input and output files may be "-" for standard input and standard output. Status messages are then printed
+ * to standard error.
  */
 public class MyCryptMain {
 
     private static final String PROG_NAME = "JavaCrypt";
 
-    // Mapping of command and class
-    private static final List<String[]> MY_ARRAY = Arrays.asList(
-        new String[]{"-genkeys", "javacrypt.RunGenKeys"},
-        new String[]{"-encrypt", "javacrypt.RunEncrypt"},
-        new String[]{"-decrypt", "javacrypt.RunDecrypt"},
-        new String[]{"-copy", "javacrypt.RunCopy"}
-    );
-
     /**
      * Displays the usage of the program and exits.
      */
     private static void usage() {
-        String[] msg = {
-            "Program '" + PROG_NAME + "'",
-            "Usage:",
-            "\t" + PROG_NAME + " " + MY_ARRAY.get(0)[0] + " [priv_keyfile] [pub_keyfile]",
-            "\t" + PROG_NAME + " " + MY_ARRAY.get(1)[0] + " [pub_keyfile] [ifile] [ofile] ",
-            "\t" + PROG_NAME + " " + MY_ARRAY.get(2)[0] + " [privkeyfile] [ifile] [ofile] ",
-            "\t" + PROG_NAME + " " + MY_ARRAY.get(3)[0] + " [ifile] [ofile] ",
-            ""
-        };
-
-        // Output the strings
-        Arrays.stream(msg).forEach(System.err::println);
+        System.err.println("Program '" + PROG_NAME + "'");
+        System.err.println("Usage:");
+        for (Command command : Command.values()) {
+            System.err.println("\t" + PROG_NAME + " " + command.getName() + " " + command.getSynopsis() + " ");
+        }
+        System.err.println();
 
         // Exit the program with an error code
         System.exit(0);
@@ -63,9 +66,6 @@ public class MyCryptMain {
      * @throws Exception If an error occurs.
      */
     public static void main(String[] args) throws Exception {
-        // Factory instance
-        RunnableKeyValueFactory runnableKeyValueFactory = new RunnableKeyValueFactory(MY_ARRAY.toArray(new String[0][]));
-
         // Get the number of command-line arguments
         int argSize = args.length;
 
@@ -76,16 +76,22 @@ public class MyCryptMain {
         // Get the control argument
         String cmdKey = args[0];
 
-        // Check if the command exists
-        if (!runnableKeyValueFactory.containsKey(cmdKey)) {
+        // Check if the command exists; the registry creates it without reflection
+        Command command = Command.forName(cmdKey);
+        if (command == null) {
             usage();
         }
 
+        // With "-" as a file, the data goes to standard output, so the status messages move to standard error
+        if (Arrays.asList(args).contains(RunnableBase.STDIO_FILE_NAME)) {
+            System.setOut(System.err);
+        }
+
         // Perform the shift operation
         List<String> optArgList = Arrays.asList(args).subList(1, args.length);
 
-        // Instantiation using the factory method:
-        RunnableInterface myRun = runnableKeyValueFactory.getInstanceFromKey(cmdKey);
+        // Instantiation through the command registry
+        RunnableInterface myRun = command.newInstance();
 
         // Call the run method
         myRun.run(optArgList);
@@ -0,0 +1,100 @@
+/*
+ * File: PooledOutputStream.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered output stream whose buffer comes from the {@link BufferPool} and goes back to it on close, so writing
+ * many files in a row does not allocate a new buffer for each.
+ * <p>
+ * Small writes are collected in the buffer; a write at least as large as the buffer goes straight to the
+ * underlying stream. The stream is not thread-safe.
+ */
+public class PooledOutputStream extends FilterOutputStream {
+
+    private byte[] buf;
+    private int count;
+
+    /**
+     * Constructs the stream.
+     *
+     * @param out  The underlying stream.
+     * @param size The buffer size.
+     */
+    public PooledOutputStream(OutputStream out, int size) {
+        super(out);
+        this.buf = BufferPool.getDefault().take(size);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer().length) {
+            flushBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buffer().length) {
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the stream and gives the buffer back to the pool.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        try {
+            super.close();
+        } finally {
+            BufferPool.getDefault().give(buf);
+            buf = null;
+        }
+    }
+
+    // Writes out the buffered bytes
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    // The buffer, or an exception once the stream is closed
+    private byte[] buffer() throws IOException {
+        if (buf == null) {
+            throw new IOException("Stream closed");
+        }
+        return buf;
+    }
+}
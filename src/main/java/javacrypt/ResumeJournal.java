@@ -0,0 +1,339 @@
+/*
+ * File: ResumeJournal.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The sidecar that resumable encryption keeps next to the output file while it is written: the header and data key
+ * of the file, so an interrupted run can be continued with the same key, and the number of segments known to be on
+ * disk.
+ * <p>
+ * Layout (all numbers big-endian):
+ * <pre>
+ *   magic           4 bytes  "JCRJ"
+ *   version         1 byte
+ *   input length    8 bytes  length of the input file
+ *   input modified  8 bytes  modification time of the input file in milliseconds
+ *   data key        1 byte length, then the raw data key
+ *   header          4 bytes length, then the header of the output file
+ *   recipients      1 byte count, then per recipient the fingerprint of its public key as modified UTF-8 with a
+ *                   2-byte length, see {@link KeyCodec#fingerprint(java.security.Key)}
+ *   checkpoints     per checkpoint: committed segments (8 bytes), CRC-32 of those 8 bytes (4 bytes)
+ * </pre>
+ * A checkpoint is appended only after the segments it counts have been forced to disk, and is forced itself before
+ * encryption continues; a checkpoint torn by a crash fails its CRC and is dropped. The recipients let a resumed run
+ * refuse a command line that names other keys than the interrupted one. The data key decrypts the file
+ * without any private key, so the journal is written owner-readable only and deleted once the file is complete.
+ */
+public class ResumeJournal implements Closeable {
+
+    // File signature
+    public static final byte[] MAGIC = {'J', 'C', 'R', 'J'};
+
+    // Current format version
+    public static final int VERSION = 2;
+
+    // Suffix of the journal next to the output file
+    public static final String SUFFIX = ".jcj";
+
+    // Time between checkpoints; a restart repeats at most this much work
+    public static final long CHECKPOINT_MILLIS = 10_000;
+
+    // Length of one checkpoint
+    private static final int CHECKPOINT_LENGTH = 12;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long inputLength;
+    private final long inputModified;
+    private final byte[] dataKey;
+    private final HybridHeader header;
+    private final List<String> recipients;
+    private final ByteBuffer checkpoint = ByteBuffer.allocate(CHECKPOINT_LENGTH);
+    private long committedSegments;
+
+    private ResumeJournal(Path path, FileChannel channel, long inputLength, long inputModified, byte[] dataKey,
+                          HybridHeader header, List<String> recipients, long committedSegments) {
+        this.path = path;
+        this.channel = channel;
+        this.inputLength = inputLength;
+        this.inputModified = inputModified;
+        this.dataKey = dataKey;
+        this.header = header;
+        this.recipients = Collections.unmodifiableList(new ArrayList<>(recipients));
+        this.committedSegments = committedSegments;
+    }
+
+    /**
+     * Creates a journal without checkpoints. It is written to a temporary file first and moved into place, so a
+     * journal that exists is complete.
+     *
+     * @param path          The journal file.
+     * @param inputLength   The length of the input file.
+     * @param inputModified The modification time of the input file in milliseconds.
+     * @param dataKey       The data key of the output file.
+     * @param header        The header of the output file.
+     * @param recipients    The fingerprints of the recipients' public keys, in header order.
+     * @return The journal, open for checkpoints.
+     * @throws IOException If the file cannot be written.
+     */
+    public static ResumeJournal create(Path path, long inputLength, long inputModified, SecretKey dataKey,
+                                       HybridHeader header, List<String> recipients) throws IOException {
+        byte[] key = dataKey.getEncoded();
+        byte[] encodedHeader = header.toByteArray();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            try {
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system
+            }
+            dos.write(MAGIC);
+            dos.writeByte(VERSION);
+            dos.writeLong(inputLength);
+            dos.writeLong(inputModified);
+            dos.writeByte(key.length);
+            dos.write(key);
+            dos.writeInt(encodedHeader.length);
+            dos.write(encodedHeader);
+            dos.writeByte(recipients.size());
+            for (String recipient : recipients) {
+                dos.writeUTF(recipient);
+            }
+            dos.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new ResumeJournal(path, channel, inputLength, inputModified, key, header, recipients, 0);
+    }
+
+    /**
+     * Opens the journal of an interrupted run. A torn checkpoint at the end is cut off.
+     *
+     * @param path The journal file.
+     * @return The journal, open for further checkpoints.
+     * @throws IOException If the file cannot be read or is not a journal.
+     */
+    public static ResumeJournal open(Path path) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        DataInputStream din = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            din.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a resume journal: " + path);
+            }
+            int version = din.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version: " + version);
+            }
+            long inputLength = din.readLong();
+            long inputModified = din.readLong();
+            byte[] key = new byte[din.readUnsignedByte()];
+            din.readFully(key);
+            int headerLength = din.readInt();
+            if (headerLength < HybridHeader.FIXED_LENGTH || headerLength > din.available()) {
+                throw new IOException("Malformed resume journal: " + path);
+            }
+            byte[] encodedHeader = new byte[headerLength];
+            din.readFully(encodedHeader);
+            HybridHeader header = HybridHeader.read(new ByteArrayInputStream(encodedHeader));
+            int count = din.readUnsignedByte();
+            List<String> recipients = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                recipients.add(din.readUTF());
+            }
+
+            long committedSegments = 0;
+            int end = data.length - din.available();
+            ByteBuffer records = ByteBuffer.wrap(data);
+            for (int pos = end; pos + CHECKPOINT_LENGTH <= data.length; pos += CHECKPOINT_LENGTH) {
+                long segments = records.getLong(pos);
+                if (segments < committedSegments || (int) crc(segments) != records.getInt(pos + Long.BYTES)) {
+                    break;
+                }
+                committedSegments = segments;
+                end = pos + CHECKPOINT_LENGTH;
+            }
+
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            try {
+                channel.truncate(end);
+                channel.position(end);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new ResumeJournal(path, channel, inputLength, inputModified, key, header, recipients,
+                committedSegments);
+        } catch (EOFException e) {
+            throw new IOException("Incomplete resume journal: " + path, e);
+        }
+    }
+
+    /**
+     * Records that the given number of segments is on disk and forces the record to disk. The caller must have
+     * forced the segments first.
+     *
+     * @param segments The number of committed segments.
+     * @throws IOException If the journal cannot be written.
+     */
+    public void commit(long segments) throws IOException {
+        if (segments <= committedSegments) {
+            return;
+        }
+        checkpoint.clear();
+        checkpoint.putLong(segments).putInt((int) crc(segments)).flip();
+        while (checkpoint.hasRemaining()) {
+            channel.write(checkpoint);
+        }
+        channel.force(false);
+        committedSegments = segments;
+    }
+
+    /**
+     * Closes and deletes the journal, once the output file is complete.
+     *
+     * @throws IOException If the journal cannot be deleted.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getInputLength() {
+        return inputLength;
+    }
+
+    public long getInputModified() {
+        return inputModified;
+    }
+
+    public SecretKey getDataKey() {
+        return new SecretKeySpec(dataKey, KeyWrap.DATA_KEY_ALGORITHMUS);
+    }
+
+    public HybridHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the fingerprints of the recipients the output file is encrypted for.
+     *
+     * @return The fingerprints, in header order.
+     */
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    public long getCommittedSegments() {
+        return committedSegments;
+    }
+
+    // CRC-32 of the big-endian segment count
+    private static long crc(long segments) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(segments).array());
+        return crc.getValue();
+    }
+
+    /**
+     * Passes the ciphertext segments to the output file and checkpoints the journal every
+     * {@link #CHECKPOINT_MILLIS}: the buffered segments are flushed and forced to disk, then the count of full
+     * segments written so far is committed. The final segment is never counted, so a resumed run always has at
+     * least one segment left to write and mark as final.
+     */
+    public static final class CheckpointStream extends FilterOutputStream {
+
+        private final FileChannel file;
+        private final ResumeJournal journal;
+        private final long firstSegment;
+        private final long lastSegment;
+        private final int cipherSegmentSize;
+        private long bytes;
+        private long nextCheckpoint;
+
+        /**
+         * Constructs a checkpointing stream.
+         *
+         * @param out               The buffered stream of the output file.
+         * @param file              The channel of the output file, for forcing it to disk.
+         * @param journal           The journal.
+         * @param firstSegment      The index of the first segment written through this stream.
+         * @param lastSegment       The index of the final segment of the file.
+         * @param cipherSegmentSize The size of a full ciphertext segment.
+         */
+        public CheckpointStream(OutputStream out, FileChannel file, ResumeJournal journal, long firstSegment,
+                                long lastSegment, int cipherSegmentSize) {
+            super(out);
+            this.file = file;
+            this.journal = journal;
+            this.firstSegment = firstSegment;
+            this.lastSegment = lastSegment;
+            this.cipherSegmentSize = cipherSegmentSize;
+            this.nextCheckpoint = System.currentTimeMillis() + CHECKPOINT_MILLIS;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+            checkpointIfDue();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+            checkpointIfDue();
+        }
+
+        private void checkpointIfDue() throws IOException {
+            long now = System.currentTimeMillis();
+            if (now < nextCheckpoint) {
+                return;
+            }
+            nextCheckpoint = now + CHECKPOINT_MILLIS;
+            long segments = Math.min(firstSegment + bytes / cipherSegmentSize, lastSegment);
+            if (segments > journal.getCommittedSegments()) {
+                out.flush();
+                file.force(false);
+                journal.commit(segments);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * File: RunBench.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.List;
+import java.util.Locale;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+/**
+ * This class represents the RunBench command, which measures the cipher suites of the hybrid format with every JCE
+ * provider that implements them on this machine.
+ * It extends the RunnableBase class.
+ * <p>
+ * Each suite and provider encrypts and decrypts segments through {@link SegmentCipher} on one thread, the way a
+ * worker of the segment engine does, first for a warm-up period that lets the JIT compiler use the CPU's crypto
+ * instructions, then for the measured period. Segments much larger than the default may need a longer --seconds
+ * before the JIT compiler has caught up. The output names the fastest suite and the suite that
+ * "-encrypt --suite auto" selects.
+ *
+ * Command-line arguments:
+ * [--seconds n]: The measured time per suite, provider and direction (default: 1); the warm-up takes two to six
+ * times as long.
+ * [--segment-size bytes]: The plaintext segment size (default: 64 KB).
+ */
+public class RunBench extends RunnableBase {
+
+    // Default measured seconds per suite, provider and direction
+    public static final int DEFAULT_SECONDS = 1;
+
+    // Suites in the order they are measured
+    private static final int[] SUITES = {HybridHeader.SUITE_AES_GCM, HybridHeader.SUITE_CHACHA20_POLY1305};
+
+    // Plaintext bytes per call while warming up
+    private static final int WARM_UP_SEGMENT_SIZE = 4096;
+
+    // Factor by which the warm-up segment size grows
+    private static final int WARM_UP_STEP = 16;
+
+    /**
+     * Executes the RunBench command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunBench");
+
+        int seconds;
+        int segmentSize;
+        try {
+            CommandOptions options = new CommandOptions(args, new String[]{"--seconds", "--segment-size"},
+                new String[0]);
+            seconds = options.getInt("--seconds", DEFAULT_SECONDS);
+            segmentSize = (int) Math.min(Integer.MAX_VALUE,
+                options.getSize("--segment-size", HybridHeader.DEFAULT_SEGMENT_SIZE));
+            RunEncrypt.checkSegmentSize(segmentSize);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        Boolean aes = CipherSuites.hasAesInstructions();
+        System.out.println("CPU AES instructions: " + (aes == null ? "unknown" : aes ? "yes" : "no"));
+        System.out.println("Java: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        System.out.println("Segment size: " + segmentSize + " bytes, one thread, " + seconds + " s per measurement");
+        System.out.println(String.format(Locale.ROOT, "%-20s %-12s %14s %14s", "Suite", "Provider",
+            "Encrypt MB/s", "Decrypt MB/s"));
+
+        String fastest = null;
+        double fastestRate = 0;
+        try {
+            for (int suite : SUITES) {
+                String transformation = CipherSuites.getTransformation(suite);
+                Provider[] providers = Security.getProviders("Cipher." + transformation);
+                if (providers == null) {
+                    System.out.println(String.format(Locale.ROOT, "%-20s %-12s", CipherSuites.getName(suite),
+                        "(none)"));
+                    continue;
+                }
+                String preferred = Cipher.getInstance(transformation).getProvider().getName();
+                for (Provider provider : providers) {
+                    double[] rates = measure(suite, provider, segmentSize, seconds * 1_000_000_000L);
+                    String name = provider.getName() + (provider.getName().equals(preferred) ? "*" : "");
+                    System.out.println(String.format(Locale.ROOT, "%-20s %-12s %14.1f %14.1f",
+                        CipherSuites.getName(suite), name, rates[0], rates[1]));
+                    // Reading and writing files see the slower direction, so that one decides
+                    double rate = Math.min(rates[0], rates[1]);
+                    if (provider.getName().equals(preferred) && rate > fastestRate) {
+                        fastest = CipherSuites.getName(suite);
+                        fastestRate = rate;
+                    }
+                }
+            }
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        System.out.println("* = provider used by JavaCrypt");
+        System.out.println("Fastest suite: " + fastest);
+        System.out.println("--suite " + CipherSuites.NAME_AUTO + " selects: "
+            + CipherSuites.getName(CipherSuites.fastest()));
+    }
+
+    /**
+     * Measures the encryption and decryption rate of one suite and provider.
+     *
+     * @param suite       The suite id.
+     * @param provider    The provider.
+     * @param segmentSize The plaintext segment size.
+     * @param nanos       The measured time per direction.
+     * @return The encryption and decryption rates in MB/s.
+     * @throws GeneralSecurityException If the suite cannot be used with the provider.
+     */
+    public static double[] measure(int suite, Provider provider, int segmentSize, long nanos)
+            throws GeneralSecurityException {
+        byte[] noncePrefix = new byte[HybridHeader.NONCE_PREFIX_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);
+        SecretKey dataKey = KeyWrap.generateDataKey();
+        HybridHeader header = new HybridHeader(HybridHeader.VERSION, 0, suite, segmentSize, noncePrefix, 0,
+            new byte[0]);
+        SegmentCipher segmentCipher = new SegmentCipher(dataKey, header, provider);
+
+        byte[] plain = new byte[segmentSize];
+        new SecureRandom().nextBytes(plain);
+        byte[] sealed = new byte[segmentCipher.getCipherSegmentSize()];
+        byte[] out = new byte[segmentCipher.getCipherSegmentSize()];
+
+        // Every encryption needs a fresh nonce, so the segment index keeps counting; decryption repeats one
+        // sealed segment
+        long[] index = {0};
+        long[] sealedIndex = {0};
+        int[] length = {0};
+        Segment encrypt = () -> segmentCipher.encryptSegment(index[0]++, false, plain, 0, length[0], out, 0);
+        Segment decrypt = () -> segmentCipher.decryptSegment(sealedIndex[0], false, sealed, 0,
+            length[0] + SegmentCipher.TAG_LENGTH, out, 0);
+
+        // Small segments call the cipher often enough for the JIT compiler to replace it with the CPU's crypto
+        // instructions; at 64 KB per call that can take several seconds, at 1 MB far longer. The size then grows in
+        // steps, as jumping from small to large segments at once undoes much of the warm-up.
+        for (int warmUp = Math.min(segmentSize, WARM_UP_SEGMENT_SIZE); ; warmUp *= WARM_UP_STEP) {
+            length[0] = Math.min(warmUp, segmentSize);
+            sealedIndex[0] = index[0]++;
+            segmentCipher.encryptSegment(sealedIndex[0], false, plain, 0, length[0], sealed, 0);
+            run(encrypt, nanos);
+            run(decrypt, nanos);
+            if (length[0] == segmentSize) {
+                break;
+            }
+        }
+        return new double[]{
+            run(encrypt, nanos) * segmentSize / 1e6 / (nanos / 1e9),
+            run(decrypt, nanos) * segmentSize / 1e6 / (nanos / 1e9)
+        };
+    }
+
+    // Repeats the operation for the given time and returns how often it ran
+    private static long run(Segment segment, long nanos) throws GeneralSecurityException {
+        long count = 0;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            segment.process();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * One segment operation.
+     */
+    private interface Segment {
+
+        void process() throws GeneralSecurityException;
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
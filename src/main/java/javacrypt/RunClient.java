@@ -0,0 +1,175 @@
+/*
+ * File: RunClient.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Key;
+import java.util.List;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunClient command, which has a running daemon (RunDaemon) encrypt or decrypt a file.
+ * It extends the RunnableBase class.
+ * <p>
+ * The input file is streamed to the daemon on a second thread while the result is streamed back into the output
+ * file. If the daemon reports an error, the incomplete output file is removed.
+ *
+ * Command-line arguments:
+ * [socket] [encrypt|decrypt] [keyfile] [ifile] [ofile]: Sends the input file to the daemon and saves the result.
+ * Either file may be "-" for standard input or standard output. The program exits with status 1 if the request
+ * fails.
+ */
+public class RunClient extends RunnableBase {
+
+    // Exit status if the request failed
+    public static final int EXIT_FAILED = 1;
+
+    /**
+     * Executes the RunClient command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        long size = 0;
+        System.out.println("RunClient");
+
+        if (args.size() < 5) {
+            System.err.println("EXCEPTION: run : Expected [socket] [encrypt|decrypt] [keyfile] [ifile] [ofile]");
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        int op;
+        if ("encrypt".equals(args.get(1))) {
+            op = DaemonProtocol.OP_ENCRYPT;
+        } else if ("decrypt".equals(args.get(1))) {
+            op = DaemonProtocol.OP_DECRYPT;
+        } else {
+            System.err.println("EXCEPTION: run : Unknown operation: " + args.get(1));
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        File keyFile = new File(args.get(2));
+        File inputFile = new File(args.get(3));
+        File outputFile = new File(args.get(4));
+
+        try {
+            size = request(Paths.get(args.get(0)), op, keyFile, inputFile, outputFile);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        System.out.println("Number of bytes transferred: " + size);
+    }
+
+    /**
+     * Sends one request to the daemon. The input is opened before connecting, so a missing input file fails
+     * without leaving the daemon waiting for data.
+     *
+     * @param socket     The socket file.
+     * @param op         The operation.
+     * @param keyFile    The key file, sent as absolute path; the daemon reads it.
+     * @param inputFile  The input file.
+     * @param outputFile The output file.
+     * @return The number of bytes received.
+     * @throws Exception If the request fails.
+     */
+    public long request(Path socket, int op, File keyFile, File inputFile, File outputFile)
+            throws Exception {
+        try (InputStream inputReader = openInput(inputFile);
+             SocketChannel channel = UnixSockets.connect(socket);
+             DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(UnixSockets.newInputStream(channel), RunDaemon.SOCKET_BUFSIZE));
+             DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(UnixSockets.newOutputStream(channel), RunDaemon.SOCKET_BUFSIZE))) {
+
+            out.writeByte(DaemonProtocol.VERSION);
+            out.writeByte(op);
+            DaemonProtocol.writeString(out, keyFile.getAbsolutePath());
+            out.flush();
+
+            // Send the input on a second thread, so the response is drained while the input is still going out
+            IOException[] sendError = new IOException[1];
+            Thread sender = new Thread(() -> {
+                try (OutputStream data = new DaemonProtocol.FrameOutputStream(out)) {
+                    inputReader.transferTo(data);
+                } catch (IOException ex) {
+                    sendError[0] = ex;
+                    try {
+                        // The end frame may not have gone out; end the input so the daemon answers
+                        channel.shutdownOutput();
+                    } catch (IOException ignored) {
+                        // The connection is gone already
+                    }
+                }
+            }, "javacrypt-client-sender");
+            sender.start();
+
+            long size;
+            try (OutputStream outputWriter = new BufferedOutputStream(openOutput(outputFile),
+                     RunDaemon.SOCKET_BUFSIZE);
+                 InputStream result = new DaemonProtocol.FrameInputStream(in)) {
+                size = result.transferTo(outputWriter);
+            }
+            int status = in.readUnsignedByte();
+            String message = DaemonProtocol.readString(in);
+            sender.join();
+
+            if (status != DaemonProtocol.STATUS_OK || sendError[0] != null) {
+                if (!isStdio(outputFile)) {
+                    Files.deleteIfExists(outputFile.toPath());
+                }
+                throw new IOException(sendError[0] != null ? sendError[0].getMessage() : message);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * File: RunConvertKey.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Key;
+import java.util.List;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunConvertKey command, which converts a key file to PEM or DER.
+ * It reads every format JavaCrypt understands, including keys serialized by older versions.
+ * It extends the RunnableBase class.
+ *
+ * Command-line arguments:
+ * [ikeyfile] [okeyfile] [--format pem|der]: Converts the input key file and writes it to the output key file.
+ */
+public class RunConvertKey extends RunnableBase {
+
+    /**
+     * Executes the RunConvertKey command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunConvertKey");
+
+        CommandOptions options;
+        KeyCodec.Format format;
+        try {
+            options = new CommandOptions(args, new String[]{"--format"}, new String[0]);
+            format = KeyCodec.Format.parse(options.get("--format", "pem"));
+            if (options.getPositional().size() < 2) {
+                throw new IllegalArgumentException("Expected [ikeyfile] [okeyfile]");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Exception: " + ex.getMessage());
+            return;
+        }
+
+        File inputFile = new File(options.getPositional(0, null));
+        File outputFile = new File(options.getPositional(1, null));
+
+        try {
+            Key key = KeyCodec.read(inputFile);
+            KeyCodec.write(key, outputFile, format);
+            System.out.println("Key file: " + outputFile.getCanonicalPath());
+            System.out.println("Fingerprint: " + KeyCodec.fingerprint(key));
+        } catch (IOException ex) {
+            System.err.println("IOException: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -3,15 +3,26 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 18.11.2023
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
 package javacrypt;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This class represents the RunCopy command, which copies the input file to the output file without encryption.
@@ -19,9 +30,13 @@ import java.util.List;
  *
  * Command-line arguments:
  * [ifile] [ofile]: Copies the input file to the output file (without encryption).
+ * [ifile] [ofile] --parallel [--threads n]: Copies regions of the file in parallel and keeps sparse files sparse.
+ * Either file may be "-" for standard input or standard output; such copies are streamed.
  * 
- * Note: The buffer size used for copying is set to 32768 bytes.
- * Adjust the buffer size according to your specific requirements and system resources.
+ * Note: By default the copy is done with FileChannel.transferTo, so the kernel moves the data without passing it
+ * through the Java heap. The parallel mode reads and writes regions of COPY_BLOCK bytes with positional I/O;
+ * blocks of SPARSE_BLOCK zero bytes are skipped, which leaves holes in the destination. The destination is only
+ * extended to the final size, not preallocated, so a full disk is still reported in the middle of the copy.
  * 
  * @author Erik Skopp
  */
@@ -36,12 +51,33 @@ public class RunCopy extends RunnableBase {
     // Size of the crypto buffer
     public static final int RSA_COPY_BUFSIZE = 32768;
 
+    // Size of the blocks copied by the parallel mode
+    public static final int COPY_BLOCK = 1 << 20;
+
+    // Granularity of the zero-block detection of the parallel mode
+    public static final int SPARSE_BLOCK = 4096;
+
+    // A block of zero bytes to compare against
+    private static final byte[] ZERO_BLOCK = new byte[SPARSE_BLOCK];
+
+    // Copy regions in parallel
+    private boolean parallel;
+
     /**
      * Constructor
      */
     public RunCopy() {
     }
 
+    /**
+     * Enables or disables the parallel, sparse-aware copy mode.
+     *
+     * @param parallel True to copy regions in parallel.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     /**
      * Returns the size of the crypto buffer.
      *
@@ -85,7 +121,7 @@ public class RunCopy extends RunnableBase {
      */
     @Override
     public void run(List<String> args) {
-        int size = 0;
+        long size = 0;
 
         // Input file
         File inputFile;
@@ -95,21 +131,21 @@ public class RunCopy extends RunnableBase {
 
         System.out.println("RunCopy");
 
-        if (!args.isEmpty()) {
-            // Use the file specified in the command-line argument as the input file
-            inputFile = new File(args.get(0));
-        } else {
-            // Use the default input file if no command-line argument is provided
-            inputFile = new File(DEFAULT_IFILE);
+        CommandOptions options;
+        try {
+            options = new CommandOptions(args, new String[]{"--threads"}, new String[]{"--parallel"});
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            setParallel(options.has("--parallel"));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Exception: " + ex.getMessage());
+            return;
         }
 
-        if (args.size() > 1) {
-            // Use the file specified in the command-line argument as the output file
-            outputFile = new File(args.get(1));
-        } else {
-            // Use the default output file if no command-line argument is provided
-            outputFile = new File(DEFAULT_OFILE);
-        }
+        // Use the file specified in the command-line argument as the input file, or the default input file
+        inputFile = new File(options.getPositional(0, DEFAULT_IFILE));
+
+        // Use the file specified in the command-line argument as the output file, or the default output file
+        outputFile = new File(options.getPositional(1, DEFAULT_OFILE));
 
         try {
             // Perform the file copying operation without encryption
@@ -119,4 +155,162 @@ public class RunCopy extends RunnableBase {
         }
         System.out.println("Number of bytes transferred: " + size);
     }
+
+    /**
+     * Copies the source file to the destination file.
+     *
+     * @param key     Unused, since no encryption is performed.
+     * @param srcFile The source file.
+     * @param dstFile The destination file.
+     * @return The number of bytes copied.
+     * @throws Exception If an I/O error occurs.
+     */
+    @Override
+    public long encryptDecryptFile(Key key, File srcFile, File dstFile) throws Exception {
+        if (isStdio(srcFile) || isStdio(dstFile)) {
+            // Pipes have neither a size nor positions
+            return copyStream(srcFile, dstFile);
+        }
+        return parallel ? copyRegions(srcFile, dstFile) : transferFile(srcFile, dstFile);
+    }
+
+    /**
+     * Copies from or to standard input or standard output in blocks of COPY_BLOCK bytes.
+     *
+     * @param srcFile The source file, or "-" for standard input.
+     * @param dstFile The destination file, or "-" for standard output.
+     * @return The number of bytes copied.
+     * @throws IOException If an I/O error occurs.
+     */
+    private long copyStream(File srcFile, File dstFile) throws IOException {
+        try (InputStream inputReader = openInput(srcFile);
+             OutputStream outputWriter = openOutput(dstFile)) {
+            byte[] buf = new byte[COPY_BLOCK];
+            long size = 0;
+            int n;
+            while ((n = inputReader.read(buf)) > 0) {
+                outputWriter.write(buf, 0, n);
+                size += n;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Copies the file with FileChannel.transferTo, letting the kernel move the data.
+     *
+     * @param srcFile The source file.
+     * @param dstFile The destination file.
+     * @return The number of bytes copied.
+     * @throws IOException If an I/O error occurs.
+     */
+    private long transferFile(File srcFile, File dstFile) throws IOException {
+        try (FileChannel src = FileChannel.open(srcFile.toPath(), StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(dstFile.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = src.size();
+            long position = 0;
+            // transferTo may move fewer bytes than requested, so loop until done
+            while (position < size) {
+                long n = src.transferTo(position, size - position, dst);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Copies the file as one region per worker thread, using positional reads and writes.
+     * The destination is extended to the final size and zero blocks are not written, so holes of sparse
+     * source files stay holes. Extending reserves no disk space: reserving it would fill the holes, and Java has no
+     * portable fallocate.
+     *
+     * @param srcFile The source file.
+     * @param dstFile The destination file.
+     * @return The number of bytes copied.
+     * @throws IOException If an I/O error occurs.
+     */
+    private long copyRegions(File srcFile, File dstFile) throws IOException {
+        try (FileChannel src = FileChannel.open(srcFile.toPath(), StandardOpenOption.READ);
+             RandomAccessFile raf = new RandomAccessFile(dstFile, "rw")) {
+            long size = src.size();
+            raf.setLength(0);
+            raf.setLength(size);
+            FileChannel dst = raf.getChannel();
+
+            int regions = getPool().getParallelism();
+            long blocks = (size + COPY_BLOCK - 1) / COPY_BLOCK;
+            long blocksPerRegion = Math.max(1, (blocks + regions - 1) / regions);
+
+            List<Future<Long>> futures = new ArrayList<>();
+            for (long start = 0; start < size; start += blocksPerRegion * COPY_BLOCK) {
+                long from = start;
+                long to = Math.min(size, start + blocksPerRegion * COPY_BLOCK);
+                futures.add(getPool().submit(() -> copyRegion(src, dst, from, to)));
+            }
+
+            long copied = 0;
+            for (Future<Long> future : futures) {
+                copied += future.get();
+            }
+            return copied;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Copy interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Copies one region of the file, skipping blocks that contain only zero bytes.
+     *
+     * @param src  The source channel.
+     * @param dst  The destination channel, already sized.
+     * @param from The start of the region.
+     * @param to   The end of the region (exclusive).
+     * @return The number of bytes in the region.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static long copyRegion(FileChannel src, FileChannel dst, long from, long to) throws IOException {
+        byte[] buf = new byte[COPY_BLOCK];
+        ByteBuffer buffer = ByteBuffer.wrap(buf);
+        long position = from;
+
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(COPY_BLOCK, to - position));
+            while (buffer.hasRemaining()) {
+                if (src.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Source file shrank during copy");
+                }
+            }
+            int len = buffer.position();
+
+            // Write each run of non-zero blocks with one positional write
+            int off = 0;
+            while (off < len) {
+                int runStart = off;
+                while (off < len && !isZero(buf, off, Math.min(SPARSE_BLOCK, len - off))) {
+                    off += SPARSE_BLOCK;
+                }
+                int runEnd = Math.min(off, len);
+                if (runEnd > runStart) {
+                    ByteBuffer run = ByteBuffer.wrap(buf, runStart, runEnd - runStart);
+                    while (run.hasRemaining()) {
+                        dst.write(run, position + run.position());
+                    }
+                }
+                off = runEnd + SPARSE_BLOCK;
+            }
+            position += len;
+        }
+        return to - from;
+    }
+
+    private static boolean isZero(byte[] buf, int off, int len) {
+        return Arrays.mismatch(buf, off, off + len, ZERO_BLOCK, 0, len) == -1;
+    }
 }
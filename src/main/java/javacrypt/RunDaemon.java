@@ -0,0 +1,215 @@
+/*
+ * File: RunDaemon.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+/**
+ * This class represents the RunDaemon command, a long-running process that encrypts and decrypts streams sent
+ * to it over a Unix domain socket (see {@link DaemonProtocol}).
+ * It extends the RunnableBase class.
+ * <p>
+ * The daemon pays JVM startup, key parsing and JIT warm-up once. Keys are kept in the {@link KeyRing}, the
+ * segment cipher code is warmed up before the socket is opened, and every connection is served on its own
+ * (virtual, where available) thread while the segments run on the shared worker pool.
+ *
+ * Command-line arguments:
+ * [socket] [keyfile ...] [--threads n]: Listens on the socket file and preloads the given key files.
+ */
+public class RunDaemon extends RunnableBase {
+
+    // Number of platform threads serving connections if virtual threads are not available
+    public static final int MAX_CONNECTION_THREADS = 64;
+
+    // Bytes of dummy data encrypted and decrypted to warm up the JIT
+    public static final int WARM_UP_BYTES = 16 << 20;
+
+    // Size of the buffers around the socket streams
+    public static final int SOCKET_BUFSIZE = 64 * 1024;
+
+    private final RunEncrypt encrypt = new RunEncrypt();
+    private final RunDecrypt decrypt = new RunDecrypt();
+
+    /**
+     * Executes the RunDaemon command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunDaemon");
+
+        CommandOptions options;
+        try {
+            options = new CommandOptions(args, new String[]{"--threads"}, new String[0]);
+            int threads = options.getInt("--threads", Runtime.getRuntime().availableProcessors());
+            encrypt.setThreads(threads);
+            decrypt.setThreads(threads);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        Path socket = Paths.get(options.getPositional(0, DaemonProtocol.defaultSocket().toString()));
+
+        try {
+            // Preload the keys named on the command line
+            List<String> keyFiles = options.getPositional();
+            for (String keyFile : keyFiles.subList(Math.min(1, keyFiles.size()), keyFiles.size())) {
+                getKeyObjectFromFile(new File(keyFile));
+                System.out.println("Key file: " + new File(keyFile).getCanonicalPath());
+            }
+
+            warmUp();
+            serve(socket);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Accepts connections until the process is stopped.
+     *
+     * @param socket The socket file.
+     * @throws IOException If the socket cannot be bound.
+     */
+    private void serve(Path socket) throws IOException {
+        ExecutorService executor = newTaskExecutor(MAX_CONNECTION_THREADS);
+        try (ServerSocketChannel server = UnixSockets.bind(socket)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing left to do
+                }
+            }));
+            System.out.println("Listening on: " + socket.toAbsolutePath());
+
+            while (true) {
+                SocketChannel channel = server.accept();
+                executor.execute(() -> handle(channel));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Serves one request.
+     *
+     * @param channel The client connection.
+     */
+    private void handle(SocketChannel channel) {
+        try (SocketChannel ch = channel;
+             DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(UnixSockets.newInputStream(ch), SOCKET_BUFSIZE));
+             DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(UnixSockets.newOutputStream(ch), SOCKET_BUFSIZE))) {
+
+            int version = in.readUnsignedByte();
+            int op = in.readUnsignedByte();
+            String keyFile = DaemonProtocol.readString(in);
+
+            DaemonProtocol.FrameInputStream data = new DaemonProtocol.FrameInputStream(in);
+            DaemonProtocol.FrameOutputStream result = new DaemonProtocol.FrameOutputStream(out);
+            String error = null;
+            try {
+                if (version != DaemonProtocol.VERSION) {
+                    throw new IOException("Unsupported protocol version: " + version);
+                }
+                RunnableBase command;
+                if (op == DaemonProtocol.OP_ENCRYPT) {
+                    command = encrypt;
+                } else if (op == DaemonProtocol.OP_DECRYPT) {
+                    command = decrypt;
+                } else {
+                    throw new IOException("Unknown operation: " + op);
+                }
+                Key key = (Key) getKeyObjectFromFile(new File(keyFile));
+                command.encryptDecryptStream(key, data, result);
+            } catch (Exception ex) {
+                error = String.valueOf(ex.getMessage());
+            }
+
+            // End the output, consume any input the client is still sending, then report the outcome
+            result.close();
+            data.close();
+            out.writeByte(error == null ? DaemonProtocol.STATUS_OK : DaemonProtocol.STATUS_ERROR);
+            DaemonProtocol.writeString(out, error == null ? "" : error);
+            out.flush();
+        } catch (IOException ex) {
+            System.err.println("EXCEPTION: handle : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs the segment cipher over dummy data, so the first requests are served by compiled code.
+     *
+     * @throws Exception If the cipher suite is not available.
+     */
+    private void warmUp() throws Exception {
+        SecretKey dataKey = KeyWrap.generateDataKey();
+        byte[] noncePrefix = new byte[HybridHeader.NONCE_PREFIX_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);
+        HybridHeader header = new HybridHeader(HybridHeader.VERSION, 0, HybridHeader.SUITE_AES_GCM,
+            HybridHeader.DEFAULT_SEGMENT_SIZE, noncePrefix, HybridHeader.WRAP_RSA_OAEP, new byte[0]);
+        SegmentCipher segmentCipher = new SegmentCipher(dataKey, header);
+
+        byte[] plain = new byte[WARM_UP_BYTES];
+        ByteArrayOutputStream cipherText = new ByteArrayOutputStream(WARM_UP_BYTES + WARM_UP_BYTES / 64);
+        SegmentEngine.encrypt(segmentCipher, getPool(), new ByteArrayInputStream(plain), cipherText);
+        SegmentEngine.decrypt(segmentCipher, getPool(), new ByteArrayInputStream(cipherText.toByteArray()),
+            OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
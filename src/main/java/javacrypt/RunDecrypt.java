@@ -3,24 +3,36 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 18.11.2023
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
 package javacrypt;
 
+import java.util.Arrays;
 import java.util.List;
-import java.io.File;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.PrivateKey;
+import java.security.interfaces.RSAKey;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
 import javax.crypto.Cipher;
 
 /**
- * This class represents the RunDecrypt command, which performs RSA decryption using the private key.
+ * This class represents the RunDecrypt command, which performs decryption using the private key.
+ * Files in the hybrid format and in the incremental format are recognised by their header; anything else is
+ * treated as the legacy format of independent 128-byte RSA blocks. Incremental files are read by position, so
+ * they must be given as a file rather than on standard input.
  * It extends the RunnableBase class.
  *
  * Command-line arguments:
  * [privkeyfile] [ifile] [ofile]: Decrypts the input file using the private key and saves the result to the output file.
+ * [--stats-json file]: Writes the phase times and byte counts of the run as JSON ("-" prints them).
+ * Either file may be "-" to read standard input or write standard output, so the command works in a pipeline.
  */
 public class RunDecrypt extends RunnableBase {
 
@@ -33,9 +45,15 @@ public class RunDecrypt extends RunnableBase {
     // Default output file name if not specified through the command line
     public static final String DEFAULT_OFILE = "decrypt_outp.dat";
 
-    // Size of the crypto buffer
+    // Size of the crypto buffer of the legacy RSA block format
     public static final int RSA_DECRYPT_BUFSIZE = 128;
 
+    // Size of the I/O buffers around the input and output files
+    public static final int STREAM_BUFSIZE = 1 << 20;
+
+    // Size of the input buffer: it holds the header; segments of this size or more are read past it
+    public static final int HEADER_BUFSIZE = 8192;
+
     /**
      * Returns the size of the crypto buffer.
      *
@@ -47,6 +65,7 @@ public class RunDecrypt extends RunnableBase {
 
     /**
      * Decrypts the given text using the provided private key and cipher.
+     * The cipher must already be initialised for decryption with the key, see {@link #getCipher(Key)}.
      *
      * @param text   The encrypted bytes.
      * @param key    The private key.
@@ -57,7 +76,6 @@ public class RunDecrypt extends RunnableBase {
     public byte[] crypt(byte[] text, Key key, Cipher cipher) throws Exception {
         byte[] decryptedText = null;
         try {
-            cipher.init(Cipher.DECRYPT_MODE, (PrivateKey) key);
             decryptedText = cipher.doFinal(text);
         } catch (Exception e) {
             System.err.println("Exception: " + e.getMessage());
@@ -66,6 +84,22 @@ public class RunDecrypt extends RunnableBase {
         return decryptedText;
     }
 
+    /**
+     * Decrypts a chunk into the given buffer, without allocating.
+     *
+     * @param in     The ciphertext buffer.
+     * @param len    The number of ciphertext bytes.
+     * @param out    The plaintext buffer.
+     * @param key    The private key.
+     * @param cipher The cipher, initialised for decryption.
+     * @return The number of plaintext bytes.
+     * @throws Exception If an error occurs during decryption.
+     */
+    @Override
+    protected int crypt(byte[] in, int len, byte[] out, Key key, Cipher cipher) throws Exception {
+        return cipher.doFinal(in, 0, len, out, 0);
+    }
+
     /**
      * Executes the RunDecrypt command.
      *
@@ -73,44 +107,203 @@ public class RunDecrypt extends RunnableBase {
      */
     @Override
     public void run(List<String> args) {
-        int size = 0;
+        long size = 0;
         System.out.println("RunDecrypt");
 
+        CommandOptions options;
+        try {
+            options = new CommandOptions(args, new String[]{"--threads", "--stats-json"}, new String[0]);
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            if (options.get("--stats-json", null) != null) {
+                getStats().trackAllocations();
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
         // Input file
-        File privateKeyFile = null;
+        File privateKeyFile = new File(options.getPositional(0, DEFAULT_KEY_FILE));
 
         // Input file
-        File inputFile = null;
+        File inputFile = new File(options.getPositional(1, DEFAULT_IFILE));
 
         // Output file
-        File outputFile = null;
+        File outputFile = new File(options.getPositional(2, DEFAULT_OFILE));
+
+        try {
+            PrivateKey privateKey = (PrivateKey) getKeyObjectFromFile(privateKeyFile);
+            size = encryptDecryptFile(privateKey, inputFile, outputFile);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
 
-        if (!args.isEmpty()) {
-            privateKeyFile = new File(args.get(0));
-        } else {
-            privateKeyFile = new File(DEFAULT_KEY_FILE);
+        System.out.println("Number of bytes transferred: " + size);
+        reportStats(options.get("--stats-json", null));
+    }
+
+    /**
+     * Decrypts the input file and saves the result to the output file, choosing the format from the file header.
+     *
+     * @param key     The private key.
+     * @param srcFile The input file, or "-" for standard input.
+     * @param dstFile The output file, or "-" for standard output.
+     * @return The number of plaintext bytes written.
+     * @throws Exception If an error occurs during decryption.
+     */
+    @Override
+    public long encryptDecryptFile(Key key, File srcFile, File dstFile) throws Exception {
+        if (!isStdio(srcFile) && isChunked(srcFile)) {
+            try (FileChannel channel = FileChannel.open(srcFile.toPath(), StandardOpenOption.READ);
+                 OutputStream outputWriter = new PooledOutputStream(openOutput(dstFile), STREAM_BUFSIZE)) {
+                long size = ChunkedContainer.decrypt(channel, (PrivateKey) key, outputWriter, getStats());
+                getStats().addFile();
+                return size;
+            }
+        }
+        try (InputStream inputReader = new BufferedInputStream(openInput(srcFile), HEADER_BUFSIZE);
+             OutputStream outputWriter = new PooledOutputStream(openOutput(dstFile), STREAM_BUFSIZE)) {
+            return encryptDecryptStream(key, inputReader, outputWriter);
         }
+    }
 
-        if (args.size() > 1) {
-            inputFile = new File(args.get(1));
-        } else {
-            inputFile = new File(DEFAULT_IFILE);
+    /**
+     * Decrypts the input stream and writes the result to the output stream, choosing the format from the header.
+     *
+     * @param key          The private key.
+     * @param inputReader  The ciphertext stream.
+     * @param outputWriter The plaintext stream.
+     * @return The number of plaintext bytes written.
+     * @throws Exception If an error occurs during decryption.
+     */
+    @Override
+    protected long encryptDecryptStream(Key key, InputStream inputReader, OutputStream outputWriter) throws Exception {
+        if (!inputReader.markSupported()) {
+            inputReader = new BufferedInputStream(inputReader, HEADER_BUFSIZE);
+        }
+        CryptStats stats = getStats();
+        if (hasSignature(inputReader, ChunkedContainer.MAGIC)) {
+            throw new IOException("Incremental files must be decrypted from a file, not from a stream");
         }
+        if (isHybrid(inputReader)) {
+            long start = System.nanoTime();
+            HybridHeader header = HybridHeader.read(inputReader);
+            SegmentCipher segmentCipher = new SegmentCipher(KeyWrap.unwrap(header, (PrivateKey) key), header);
+            stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
+            stats.addBytesIn(header.length());
 
-        if (args.size() > 2) {
-            outputFile = new File(args.get(2));
-        } else {
-            outputFile = new File(DEFAULT_OFILE);
+            long size = header.isCompressed()
+                ? decryptCompressed(segmentCipher, inputReader, outputWriter)
+                : SegmentEngine.decrypt(segmentCipher, getPool(), inputReader, outputWriter, stats);
+            stats.addFile();
+            return size;
         }
+        if (!(key instanceof RSAKey)) {
+            throw new IOException("Not a JavaCrypt file, or a legacy file that needs an RSA key");
+        }
+        return decryptLegacy((PrivateKey) key, inputReader, outputWriter);
+    }
 
+    /**
+     * Decrypts a file whose payload was compressed before encryption, inflating the plaintext on its way out.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param inputReader   The ciphertext stream, positioned after the header.
+     * @param outputWriter  The plaintext stream.
+     * @return The number of plaintext bytes written, after inflation.
+     * @throws IOException If an I/O error occurs, a segment fails authentication or the payload is not a
+     *                     complete Deflate stream.
+     */
+    protected long decryptCompressed(SegmentCipher segmentCipher, InputStream inputReader, OutputStream outputWriter)
+            throws IOException {
+        Inflater inflater = new Inflater();
         try {
-            PrivateKey privateKey = (PrivateKey) getKeyObjectFromFile(privateKeyFile);
-            size = encryptDecryptFile(privateKey, inputFile, outputFile);
-        } catch (Exception ex) {
-            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            InflaterOutputStream inflated = new InflaterOutputStream(outputWriter, inflater, RunEncrypt.COMPRESS_BUFSIZE);
+            long compressedSize = SegmentEngine.decrypt(segmentCipher, getPool(), inputReader, inflated, getStats());
+            inflated.finish();
+            if (!inflater.finished()) {
+                throw new IOException("Compressed payload is incomplete");
+            }
+            // The engine counted the compressed bytes; count the inflated output instead
+            getStats().addBytesOut(inflater.getBytesWritten() - compressedSize);
+            return inflater.getBytesWritten();
+        } finally {
+            inflater.end();
         }
+    }
 
-        System.out.println("Number of bytes transferred: " + size);
+    /**
+     * Decrypts a file in the legacy format of independent RSA blocks.
+     * <p>
+     * Every block is a separate RSA private-key operation, so the blocks are spread across the worker pool by the
+     * {@link SegmentEngine}. Each worker thread initialises its own cipher once and reuses it for all its blocks;
+     * the engine writes the decrypted blocks in their original order.
+     *
+     * @param privateKey   The private key.
+     * @param inputReader  The ciphertext stream.
+     * @param outputWriter The plaintext stream.
+     * @return The number of plaintext bytes written.
+     * @throws IOException If an I/O error occurs or a block cannot be decrypted.
+     */
+    protected long decryptLegacy(PrivateKey privateKey, InputStream inputReader, OutputStream outputWriter)
+            throws IOException {
+        // The block size is the size of the RSA modulus, 128 bytes for the 1024-bit keys JavaCrypt generated
+        int blockSize = privateKey instanceof RSAKey
+            ? (((RSAKey) privateKey).getModulus().bitLength() + 7) / 8
+            : RSA_DECRYPT_BUFSIZE;
+
+        ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(() -> getCipher(privateKey));
+        SegmentEngine engine = new SegmentEngine(getPool(), blockSize, blockSize, false);
+        engine.setStats(getStats());
+        engine.run(inputReader, outputWriter, (index, last, in, len, out) -> {
+            Cipher c = cipher.get();
+            if (c == null) {
+                throw new InvalidKeyException("No RSA cipher for the private key");
+            }
+            return c.doFinal(in, 0, len, out, 0);
+        });
+        getStats().addFile();
+        return engine.getBytesWritten();
+    }
+
+    /**
+     * Checks whether the stream starts with the hybrid format header, without consuming any bytes.
+     *
+     * @param inputReader A stream supporting mark/reset.
+     * @return True if the stream holds a hybrid file.
+     * @throws IOException If an I/O error occurs.
+     */
+    protected static boolean isHybrid(InputStream inputReader) throws IOException {
+        return hasSignature(inputReader, HybridHeader.MAGIC);
+    }
+
+    /**
+     * Checks whether the file starts with the signature of the incremental format.
+     *
+     * @param file The file.
+     * @return True if the file holds an incremental file.
+     * @throws IOException If an I/O error occurs.
+     */
+    protected static boolean isChunked(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), ChunkedContainer.MAGIC.length)) {
+            return hasSignature(in, ChunkedContainer.MAGIC);
+        }
+    }
+
+    /**
+     * Checks whether the stream starts with the given signature, without consuming any bytes.
+     *
+     * @param inputReader A stream supporting mark/reset.
+     * @param magic       The signature.
+     * @return True if the signature matches.
+     * @throws IOException If an I/O error occurs.
+     */
+    protected static boolean hasSignature(InputStream inputReader, byte[] magic) throws IOException {
+        byte[] head = new byte[magic.length];
+        inputReader.mark(head.length);
+        int len = inputReader.readNBytes(head, 0, head.length);
+        inputReader.reset();
+        return len == head.length && Arrays.equals(head, magic);
     }
 
     /**
@@ -0,0 +1,37 @@
+/*
+ * File: RunDecryptDir.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+/**
+ * This class represents the RunDecryptDir command, which decrypts every file of a directory tree with one private key.
+ * It extends the RunDirectoryBase class.
+ *
+ * Command-line arguments:
+ * [privkeyfile] [srcdir] [dstdir] [--jobs n] [--threads n]:
+ * Decrypts all files below srcdir into the same relative paths below dstdir.
+ */
+public class RunDecryptDir extends RunDirectoryBase {
+
+    @Override
+    protected String getCommandName() {
+        return "RunDecryptDir";
+    }
+
+    /**
+     * Creates the RunDecrypt command that decrypts each file.
+     *
+     * @param options The parsed command-line options.
+     * @return The single-file command.
+     */
+    @Override
+    protected RunnableBase createFileCommand(CommandOptions options) {
+        return new RunDecrypt();
+    }
+}
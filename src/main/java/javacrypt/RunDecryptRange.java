@@ -0,0 +1,145 @@
+/*
+ * File: RunDecryptRange.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.util.List;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunDecryptRange command, which decrypts a byte range of a file in the hybrid format.
+ * It extends the RunnableBase class.
+ * <p>
+ * Only the segments covering the range are read, decrypted and authenticated (see {@link HybridSeekableChannel}),
+ * so the cost depends on the length of the range, not on the size of the file.
+ *
+ * Command-line arguments:
+ * [privkeyfile] [ifile] [ofile] [offset] [length]: Decrypts length bytes of plaintext starting at offset into the
+ * output file ("-" for standard output). Offset and length may carry a K, M or G suffix; a range reaching past the
+ * end of the file is cut off there.
+ */
+public class RunDecryptRange extends RunnableBase {
+
+    // Size of the buffer between the channel and the output
+    public static final int RANGE_BUFSIZE = 1 << 20;
+
+    /**
+     * Executes the RunDecryptRange command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        long size = 0;
+        System.out.println("RunDecryptRange");
+
+        CommandOptions options;
+        long offset;
+        long length;
+        try {
+            options = new CommandOptions(args, new String[0], new String[0]);
+            if (options.getPositional().size() < 5) {
+                throw new IllegalArgumentException("Expected [privkeyfile] [ifile] [ofile] [offset] [length]");
+            }
+            offset = CommandOptions.parseSize("offset", options.getPositional(3, null));
+            length = CommandOptions.parseSize("length", options.getPositional(4, null));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        File privateKeyFile = new File(options.getPositional(0, null));
+        File inputFile = new File(options.getPositional(1, null));
+        File outputFile = new File(options.getPositional(2, null));
+
+        try {
+            PrivateKey privateKey = (PrivateKey) getKeyObjectFromFile(privateKeyFile);
+            size = decryptRange(privateKey, inputFile, outputFile, offset, length);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
+
+        System.out.println("Number of bytes transferred: " + size);
+    }
+
+    /**
+     * Decrypts a range of the plaintext of the input file into the output file.
+     *
+     * @param privateKey The private key.
+     * @param srcFile    The encrypted file.
+     * @param dstFile    The output file, or "-" for standard output.
+     * @param offset     The plaintext offset of the range.
+     * @param length     The length of the range.
+     * @return The number of plaintext bytes written.
+     * @throws Exception If the file cannot be read or a segment fails authentication.
+     */
+    public long decryptRange(PrivateKey privateKey, File srcFile, File dstFile, long offset, long length)
+            throws Exception {
+        try (HybridSeekableChannel channel = HybridSeekableChannel.open(srcFile.toPath(), privateKey);
+             OutputStream outputWriter = openOutput(dstFile)) {
+            long end = Math.min(channel.size(), offset + Math.min(length, Long.MAX_VALUE - offset));
+            channel.position(offset);
+
+            byte[] buf = new byte[RANGE_BUFSIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(buf);
+            long size = 0;
+            while (offset + size < end) {
+                buffer.clear().limit((int) Math.min(buf.length, end - offset - size));
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    break;
+                }
+                outputWriter.write(buf, 0, n);
+                size += n;
+            }
+            if (offset >= channel.size()) {
+                // A range past the end is only reported empty once the final segment has been authenticated
+                channel.read(ByteBuffer.allocate(1));
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
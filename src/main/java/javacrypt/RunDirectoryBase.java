@@ -0,0 +1,245 @@
+/*
+ * File: RunDirectoryBase.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.crypto.Cipher;
+
+/**
+ * This abstract class serves as the base class for the commands that process a whole directory tree.
+ * It extends the RunnableBase class.
+ * <p>
+ * The key is loaded once, then every regular file below the source directory is handed to the single-file
+ * command (RunEncrypt or RunDecrypt) and written to the same relative path below the destination directory.
+ * Files are processed concurrently, on virtual threads when the JDK has them and on a fixed thread pool
+ * otherwise; at most "--jobs" files are in flight at any time. A summary of throughput and failures is printed
+ * at the end.
+ * <p>
+ * Command-line arguments:
+ * [keyfile] [srcdir] [dstdir] [--jobs n] [--threads n] [--stats-json file]
+ * The program exits with status 1 if any file fails, or if the arguments or the key are not usable, so that no file
+ * was processed.
+ */
+public abstract class RunDirectoryBase extends RunnableBase {
+
+    // Exit status if any file failed
+    public static final int EXIT_FAILED = 1;
+
+    // Maximum number of failures listed in the summary
+    public static final int MAX_LISTED_FAILURES = 20;
+
+    /**
+     * Returns the name of the command, printed at the start.
+     *
+     * @return The command name.
+     */
+    protected abstract String getCommandName();
+
+    /**
+     * Returns the value options accepted by the command in addition to "--jobs" and "--threads".
+     *
+     * @return The option names.
+     */
+    protected String[] getExtraValueOptions() {
+        return new String[0];
+    }
+
+    /**
+     * Returns the flag options accepted by the command.
+     *
+     * @return The option names.
+     */
+    protected String[] getExtraFlagOptions() {
+        return new String[0];
+    }
+
+    /**
+     * Creates and configures the single-file command that processes each file.
+     *
+     * @param options The parsed command-line options.
+     * @return The single-file command.
+     */
+    protected abstract RunnableBase createFileCommand(CommandOptions options);
+
+    /**
+     * Executes the directory command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println(getCommandName());
+
+        List<String> valueOptions = new ArrayList<>(Arrays.asList("--jobs", "--threads", "--stats-json"));
+        valueOptions.addAll(Arrays.asList(getExtraValueOptions()));
+
+        CommandOptions options;
+        RunnableBase fileCommand;
+        int jobs;
+        try {
+            options = new CommandOptions(args, valueOptions.toArray(new String[0]), getExtraFlagOptions());
+            if (options.getPositional().size() < 3) {
+                throw new IllegalArgumentException("Expected [keyfile] [srcdir] [dstdir]");
+            }
+            jobs = options.getInt("--jobs", 2 * Runtime.getRuntime().availableProcessors());
+            fileCommand = createFileCommand(options);
+            fileCommand.setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            // All files report into the statistics of the directory command
+            fileCommand.setStats(getStats());
+            if (options.get("--stats-json", null) != null) {
+                getStats().trackAllocations();
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        File keyFile = new File(options.getPositional(0, null));
+        Path srcDir = new File(options.getPositional(1, null)).toPath();
+        Path dstDir = new File(options.getPositional(2, null)).toPath();
+
+        int failed;
+        try {
+            // The key is read once for the whole tree
+            Key key = (Key) getKeyObjectFromFile(keyFile);
+            failed = processTree(fileCommand, key, srcDir, dstDir, jobs);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+        reportStats(options.get("--stats-json", null));
+
+        if (failed > 0) {
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    /**
+     * Processes every regular file below the source directory.
+     *
+     * @param fileCommand The single-file command.
+     * @param key         The key.
+     * @param srcDir      The source directory.
+     * @param dstDir      The destination directory.
+     * @param jobs        The maximum number of files in flight.
+     * @return The number of failed files.
+     * @throws IOException          If the source directory cannot be walked.
+     * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+     */
+    protected int processTree(RunnableBase fileCommand, Key key, Path srcDir, Path dstDir, int jobs)
+            throws IOException, InterruptedException {
+        if (!Files.isDirectory(srcDir)) {
+            throw new IOException("Not a directory: " + srcDir);
+        }
+
+        AtomicLong files = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        Map<Path, String> failures = new ConcurrentSkipListMap<>();
+        Semaphore inFlight = new Semaphore(jobs);
+        long start = System.nanoTime();
+
+        ExecutorService executor = newTaskExecutor(jobs);
+        try (Stream<Path> paths = Files.walk(srcDir)) {
+            Iterator<Path> it = paths.filter(Files::isRegularFile).iterator();
+            while (it.hasNext()) {
+                Path src = it.next();
+                Path dst = dstDir.resolve(srcDir.relativize(src));
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        Files.createDirectories(dst.getParent());
+                        bytes.addAndGet(fileCommand.encryptDecryptFile(key, src.toFile(), dst.toFile()));
+                        files.incrementAndGet();
+                    } catch (Exception ex) {
+                        failures.put(src, String.valueOf(ex.getMessage()));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        printSummary(files.get(), bytes.get(), failures, System.nanoTime() - start);
+        return failures.size();
+    }
+
+    /**
+     * Prints the throughput of the run and the failed files.
+     *
+     * @param files    The number of files processed successfully.
+     * @param bytes    The number of bytes processed.
+     * @param failures The failed files with their error messages.
+     * @param nanos    The elapsed time.
+     */
+    private static void printSummary(long files, long bytes, Map<Path, String> failures, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        System.out.println("Files processed: " + files);
+        System.out.println("Files failed: " + failures.size());
+        System.out.println("Number of bytes transferred: " + bytes);
+        System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.1f files/s, %.1f MB/s",
+            seconds, files / seconds, bytes / 1e6 / seconds));
+
+        int listed = 0;
+        for (Map.Entry<Path, String> failure : failures.entrySet()) {
+            if (listed++ == MAX_LISTED_FAILURES) {
+                System.err.println("... and " + (failures.size() - MAX_LISTED_FAILURES) + " more");
+                break;
+            }
+            System.err.println("FAILED: " + failure.getKey() + " : " + failure.getValue());
+        }
+    }
+
+    /**
+     * Returns the cipher. The directory commands delegate the work to the single-file command.
+     *
+     * @param key The key.
+     * @return Always null.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported; the directory commands delegate the work to the single-file command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
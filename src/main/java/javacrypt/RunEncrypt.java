@@ -3,28 +3,55 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 18.11.2023
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
 package javacrypt;
 
-import java.io.File;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
-import java.nio.file.Files;
+import javax.crypto.SecretKey;
 
 /**
- * This class represents the RunEncrypt command, which performs RSA encryption using the public key.
+ * This class represents the RunEncrypt command, which performs hybrid encryption using the public key:
+ * the file is encrypted with a fresh AES-GCM data key, and only that data key is encrypted with RSA.
  * It extends the RunnableBase class.
  *
  * Command-line arguments:
  * [pubkeyfile] [ifile] [ofile]: Encrypts the input file using the public key and saves the result to the output file.
+ * [--recipient pubkeyfile]: Also makes the file readable with this key; may be repeated. The payload is encrypted
+ * once and the data key is wrapped for every recipient.
+ * [--compress]: Compresses the input with Deflate before encryption, unless a sample shows it does not compress.
+ * [--suite aes-gcm|chacha20-poly1305|auto]: The cipher suite of the segments (default: aes-gcm); "auto" picks the
+ * faster one for this CPU, see {@link CipherSuites#fastest()}. The suite is recorded in the header.
+ * [--incremental]: Writes the incremental format and keeps a chunk manifest next to the output file
+ * ([--manifest file], default ofile.jcm), so the next run only encrypts and writes the chunks that changed
+ * ([--chunk-size bytes] sets the average chunk size). See {@link IncrementalEncryptor}.
+ * [--resume]: Keeps a journal of the segments on disk next to the output file (ofile.jcj), so a run that is
+ * interrupted continues where it stopped when started again with --resume. See {@link ResumeJournal}.
+ * [--stats-json file]: Writes the phase times and byte counts of the run as JSON ("-" prints them).
+ * Either file may be "-" to read standard input or write standard output, so the command works in a pipeline.
  */
 public class RunEncrypt extends RunnableBase {
 
@@ -37,15 +64,168 @@ public class RunEncrypt extends RunnableBase {
     // Default output file name if not specified through the command line
     public static final String DEFAULT_OFILE = "encr_outp.dat";
 
-    // Size of the crypto buffer
+    // Size of the crypto buffer of the legacy RSA block format
     public static final int RSA_ENCRYPT_BUFSIZE = 100;
 
+    // Size of the I/O buffer in front of the output file
+    public static final int STREAM_BUFSIZE = 1 << 20;
+
+    // Smallest accepted segment size
+    public static final int MIN_SEGMENT_SIZE = 1024;
+
+    // Largest accepted segment size
+    public static final int MAX_SEGMENT_SIZE = 64 << 20;
+
+    // Bytes from the start of the input that are test-compressed to decide whether compression pays off
+    public static final int COMPRESS_SAMPLE_SIZE = 256 * 1024;
+
+    // Compression is skipped unless the sample shrinks to at most this fraction of its size
+    public static final double COMPRESS_MAX_RATIO = 0.9;
+
+    // Deflate level; the fastest level keeps compression from becoming the bottleneck of the pipeline
+    public static final int COMPRESS_LEVEL = Deflater.BEST_SPEED;
+
+    // Size of the buffer of the compression stage
+    public static final int COMPRESS_BUFSIZE = 64 * 1024;
+
+    // Plaintext bytes per segment
+    private int segmentSize = HybridHeader.DEFAULT_SEGMENT_SIZE;
+
+    // Compress the plaintext before encryption, if a sample shows it pays off
+    private boolean compress;
+
+    // Cipher suite of newly encrypted files
+    private int suite = HybridHeader.SUITE_AES_GCM;
+
+    // Recipients of newly encrypted files besides the one whose key is passed in
+    private List<PublicKey> recipients = Collections.emptyList();
+
+    // Average chunk size of incremental encryption
+    private int chunkSize = ContentChunker.DEFAULT_CHUNK_SIZE;
+
     /**
      * Constructor
      */
     public RunEncrypt() {
     }
 
+    /**
+     * Sets the plaintext segment size of newly encrypted files.
+     *
+     * @param segmentSize The segment size in bytes.
+     */
+    public void setSegmentSize(int segmentSize) {
+        checkSegmentSize(segmentSize);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Checks a segment size.
+     *
+     * @param segmentSize The segment size in bytes.
+     * @throws IllegalArgumentException If the size is out of range.
+     */
+    public static void checkSegmentSize(int segmentSize) {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be between " + MIN_SEGMENT_SIZE
+                + " and " + MAX_SEGMENT_SIZE + " bytes");
+        }
+    }
+
+    /**
+     * Sets the cipher suite of newly encrypted files.
+     *
+     * @param suite The suite id, see {@link CipherSuites#forName(String)}.
+     */
+    public void setSuite(int suite) {
+        this.suite = suite;
+    }
+
+    /**
+     * Sets the recipients of newly encrypted files besides the one whose key is passed to
+     * {@link #encryptDecryptFile(Key, File, File)}.
+     *
+     * @param recipients The additional public keys.
+     * @throws IllegalArgumentException If there are more recipients than a header can list, or a key is listed
+     *                                  twice.
+     */
+    public void setRecipients(List<PublicKey> recipients) {
+        if (recipients.size() >= HybridHeader.MAX_RECIPIENTS) {
+            throw new IllegalArgumentException("At most " + HybridHeader.MAX_RECIPIENTS + " recipients are supported");
+        }
+        Set<String> fingerprints = new HashSet<>();
+        for (PublicKey recipient : recipients) {
+            if (!fingerprints.add(KeyCodec.fingerprint(recipient))) {
+                throw new IllegalArgumentException("The same public key is listed twice as a recipient");
+            }
+        }
+        this.recipients = new ArrayList<>(recipients);
+    }
+
+    /**
+     * Returns the recipients of a new file: the given public key, then the additional recipients.
+     *
+     * @param key The public key.
+     * @return The public keys.
+     * @throws IllegalArgumentException If the public key is also an additional recipient.
+     */
+    public List<PublicKey> allRecipients(PublicKey key) {
+        String fingerprint = KeyCodec.fingerprint(key);
+        List<PublicKey> publicKeys = new ArrayList<>(1 + recipients.size());
+        publicKeys.add(key);
+        for (PublicKey recipient : recipients) {
+            if (KeyCodec.fingerprint(recipient).equals(fingerprint)) {
+                throw new IllegalArgumentException("The public key is also given as --recipient");
+            }
+            publicKeys.add(recipient);
+        }
+        return publicKeys;
+    }
+
+    /**
+     * Loads the public keys of additional recipients.
+     *
+     * @param keyFiles The public key files.
+     * @return The public keys.
+     * @throws IOException            If a file cannot be read or does not hold a public key, or the same key is
+     *                                named twice.
+     * @throws ClassNotFoundException If the class of a serialized key cannot be found.
+     */
+    public List<PublicKey> loadRecipients(List<String> keyFiles) throws IOException, ClassNotFoundException {
+        List<PublicKey> keys = new ArrayList<>(keyFiles.size());
+        Set<String> fingerprints = new HashSet<>();
+        for (String keyFile : keyFiles) {
+            Object key = getKeyObjectFromFile(new File(keyFile));
+            if (!(key instanceof PublicKey)) {
+                throw new IOException("Not a public key: " + keyFile);
+            }
+            if (!fingerprints.add(KeyCodec.fingerprint((PublicKey) key))) {
+                throw new IOException("The same public key is listed twice as a recipient: " + keyFile);
+            }
+            keys.add((PublicKey) key);
+        }
+        return keys;
+    }
+
+    /**
+     * Enables or disables the compression stage in front of encryption.
+     *
+     * @param compress True to compress input that compresses well.
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Sets the average chunk size of incremental encryption.
+     *
+     * @param chunkSize The chunk size in bytes, a power of two.
+     */
+    public void setChunkSize(int chunkSize) {
+        ContentChunker.checkChunkSize(chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Returns the size of the crypto buffer.
      *
@@ -57,6 +237,8 @@ public class RunEncrypt extends RunnableBase {
 
     /**
      * Encrypts the given text using the provided public key and cipher.
+     * The cipher must already be initialised for encryption with the key, see {@link #getCipher(Key)}; doFinal
+     * leaves it initialised for the next chunk.
      *
      * @param text   The original unencrypted text.
      * @param key    The public key.
@@ -66,7 +248,6 @@ public class RunEncrypt extends RunnableBase {
      */
     public byte[] crypt(byte[] text, Key key, Cipher cipher) throws Exception {
         try {
-            cipher.init(Cipher.ENCRYPT_MODE, (PublicKey) key);
             return cipher.doFinal(text);
         } catch (Exception e) {
             System.out.println("Exception: " + e.getMessage());
@@ -74,11 +255,27 @@ public class RunEncrypt extends RunnableBase {
         }
     }
 
+    /**
+     * Encrypts a chunk into the given buffer, without allocating.
+     *
+     * @param in     The plaintext buffer.
+     * @param len    The number of plaintext bytes.
+     * @param out    The ciphertext buffer.
+     * @param key    The public key.
+     * @param cipher The cipher, initialised for encryption.
+     * @return The number of ciphertext bytes.
+     * @throws Exception If an error occurs during encryption.
+     */
+    @Override
+    protected int crypt(byte[] in, int len, byte[] out, Key key, Cipher cipher) throws Exception {
+        return cipher.doFinal(in, 0, len, out, 0);
+    }
+
     /**
      * Returns the cipher for encryption.
      *
      * @param key The public key.
-     * @return The cipher for encryption.
+     * @return The cipher for encryption, or null if the key cannot be used.
      */
     @Override
     protected Cipher getCipher(Key key) {
@@ -88,9 +285,8 @@ public class RunEncrypt extends RunnableBase {
             cipher.init(Cipher.ENCRYPT_MODE, pubKey);
             return cipher;
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
-            System.err.println("Exception: " + ex.getMessage());
-            System.exit(8);
-            return null; // Unreachable code, added to satisfy the compiler
+            System.err.println("EXCEPTION: getCipher : " + ex.getMessage());
+            return null;
         }
     }
 
@@ -103,65 +299,356 @@ public class RunEncrypt extends RunnableBase {
     public void run(List<String> args) {
         System.out.println("RunEncrypt");
 
-        int size = 0;
+        long size = 0;
+
+        CommandOptions options;
+        try {
+            options = new CommandOptions(args,
+                new String[]{"--threads", "--segment-size", "--stats-json", "--manifest", "--chunk-size", "--suite",
+                    "--recipient"},
+                new String[]{"--compress", "--incremental", "--resume"});
+            setCompress(options.has("--compress"));
+            String suiteName = options.get("--suite", CipherSuites.NAME_AES_GCM);
+            setSuite(CipherSuites.forName(suiteName));
+            setChunkSize((int) Math.min(Integer.MAX_VALUE,
+                options.getSize("--chunk-size", ContentChunker.DEFAULT_CHUNK_SIZE)));
+            if (options.has("--incremental") && options.has("--compress")) {
+                throw new IllegalArgumentException("--incremental cannot be combined with --compress");
+            }
+            if (options.has("--incremental") && !options.getAll("--recipient").isEmpty()) {
+                throw new IllegalArgumentException("--incremental cannot be combined with --recipient");
+            }
+            if (options.has("--resume") && (options.has("--incremental") || options.has("--compress"))) {
+                throw new IllegalArgumentException("--resume cannot be combined with --incremental or --compress");
+            }
+            // The incremental format is AES-GCM only; "auto" simply does not apply to it
+            if (options.has("--incremental") && suite != HybridHeader.SUITE_AES_GCM
+                    && !CipherSuites.NAME_AUTO.equalsIgnoreCase(suiteName)) {
+                throw new IllegalArgumentException("--incremental only supports the " + CipherSuites.NAME_AES_GCM
+                    + " suite");
+            }
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            setSegmentSize((int) Math.min(Integer.MAX_VALUE,
+                options.getSize("--segment-size", HybridHeader.DEFAULT_SEGMENT_SIZE)));
+            if (options.get("--stats-json", null) != null) {
+                getStats().trackAllocations();
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
 
         // Input file
-        File publicKeyFile = null;
+        File publicKeyFile = new File(options.getPositional(0, DEFAULT_KEY_FILE));
 
         // Input file
-        File inputFile = null;
+        File inputFile = new File(options.getPositional(1, DEFAULT_IFILE));
 
         // Output file
-        File outputFile = null;
+        File outputFile = new File(options.getPositional(2, DEFAULT_OFILE));
 
-        if (!args.isEmpty()) {
-            publicKeyFile = new File(args.get(0));
-        } else {
-            publicKeyFile = new File(DEFAULT_KEY_FILE);
+        PublicKey pubKey = null;
+        try {
+            pubKey = (PublicKey) getKeyObjectFromFile(publicKeyFile);
+            setRecipients(loadRecipients(options.getAll("--recipient")));
+            // Refused before the output file is created
+            allRecipients(pubKey);
+            if (options.has("--incremental")) {
+                File manifestFile = new File(options.get("--manifest", outputFile.getPath() + ChunkManifest.SUFFIX));
+                size = encryptIncremental(pubKey, inputFile, outputFile, manifestFile);
+            } else if (options.has("--resume")) {
+                size = encryptResumable(pubKey, inputFile, outputFile);
+            } else {
+                size = encryptDecryptFile(pubKey, inputFile, outputFile);
+            }
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
         }
 
-        if (args.size() > 1) {
-            inputFile = new File(args.get(1));
-        } else {
-            inputFile = new File(DEFAULT_IFILE);
+        System.out.println("Number of bytes transferred: " + size);
+        reportStats(options.get("--stats-json", null));
+    }
+
+    /**
+     * Encrypts the input file in the hybrid format and saves the result to the output file.
+     * <p>
+     * A fresh data key is wrapped once with the public key and once with each additional recipient's key; the
+     * payload segments are then encrypted once, in parallel by the {@link SegmentEngine}, and written in order, so
+     * memory use does not grow with the file size.
+     *
+     * @param key     The public key.
+     * @param srcFile The input file, or "-" for standard input.
+     * @param dstFile The output file, or "-" for standard output.
+     * @return The number of plaintext bytes encrypted.
+     * @throws Exception If an error occurs during encryption.
+     */
+    @Override
+    public long encryptDecryptFile(Key key, File srcFile, File dstFile) throws Exception {
+        try (InputStream inputReader = openInput(srcFile);
+             OutputStream outputWriter = new PooledOutputStream(openOutput(dstFile), STREAM_BUFSIZE)) {
+            return encryptDecryptStream(key, inputReader, outputWriter);
+        }
+    }
+
+    /**
+     * Encrypts the input file incrementally: only the chunks that are not in the manifest of the last run are
+     * encrypted and appended to the output file.
+     *
+     * @param key          The public key.
+     * @param srcFile      The input file, or "-" for standard input.
+     * @param dstFile      The output file in the incremental format.
+     * @param manifestFile The chunk manifest.
+     * @return The number of plaintext bytes.
+     * @throws Exception If an error occurs during encryption.
+     */
+    public long encryptIncremental(PublicKey key, File srcFile, File dstFile, File manifestFile) throws Exception {
+        if (isStdio(dstFile)) {
+            throw new IOException("Incremental encryption needs an output file, not standard output");
+        }
+        IncrementalEncryptor encryptor = new IncrementalEncryptor(key, chunkSize, getStats());
+        long size;
+        try (InputStream inputReader = openInput(srcFile)) {
+            size = encryptor.encrypt(inputReader, dstFile.toPath(), manifestFile.toPath());
+        }
+        if (encryptor.getRewriteReason() != null) {
+            System.out.println("Full rewrite: " + encryptor.getRewriteReason());
+        }
+        System.out.println("Chunks: " + encryptor.getChunks() + ", reused: " + encryptor.getReusedChunks()
+            + ", bytes written: " + encryptor.getWrittenBytes());
+        return size;
+    }
+
+    /**
+     * Encrypts the input file in the hybrid format like {@link #encryptDecryptFile(Key, File, File)}, keeping a
+     * {@link ResumeJournal} next to the output file while it is written.
+     * <p>
+     * Without a journal, the file is encrypted from the start and the journal records the data key and header.
+     * With the journal of an interrupted run, the last committed segment is decrypted and compared with the input,
+     * the output is cut back to the committed segments and encryption continues after them with the key and header
+     * of that run; the committed segments are neither read nor encrypted again. A resumed run with other recipients,
+     * suite or segment size than the interrupted one is refused, as the header on disk already names them. The
+     * journal is deleted once the output is complete and on disk.
+     *
+     * @param key     The public key; when resuming, it and the additional recipients, the suite and the segment size
+     *                must match the interrupted run.
+     * @param srcFile The input file.
+     * @param dstFile The output file.
+     * @return The number of plaintext bytes of the file, including those encrypted by an interrupted run.
+     * @throws Exception If an error occurs during encryption, or the input or output changed since the interrupted
+     *                   run.
+     */
+    public long encryptResumable(PublicKey key, File srcFile, File dstFile) throws Exception {
+        if (isStdio(srcFile) || isStdio(dstFile)) {
+            throw new IOException("Resumable encryption needs an input and an output file, not standard input or"
+                + " output");
         }
+        Path src = srcFile.toPath();
+        Path dst = dstFile.toPath();
+        Path journalPath = dst.resolveSibling(dst.getFileName() + ResumeJournal.SUFFIX);
+        long inputLength = Files.size(src);
+        long inputModified = Files.getLastModifiedTime(src).toMillis();
 
-        if (args.size() > 2) {
-            outputFile = new File(args.get(2));
+        CryptStats stats = getStats();
+        long start = System.nanoTime();
+        List<PublicKey> publicKeys = allRecipients(key);
+        List<String> fingerprints = new ArrayList<>(publicKeys.size());
+        for (PublicKey publicKey : publicKeys) {
+            fingerprints.add(KeyCodec.fingerprint(publicKey));
+        }
+        ResumeJournal journal;
+        SegmentCipher segmentCipher;
+        if (Files.exists(journalPath)) {
+            journal = ResumeJournal.open(journalPath);
+            try {
+                if (journal.getInputLength() != inputLength || journal.getInputModified() != inputModified) {
+                    throw new IOException("The input changed since the interrupted run; delete " + journalPath
+                        + " to start over");
+                }
+                // The header is already on disk, so the command line must ask for the file it describes
+                HybridHeader header = journal.getHeader();
+                if (!new HashSet<>(journal.getRecipients()).equals(new HashSet<>(fingerprints))
+                        || header.getSuite() != suite || header.getSegmentSize() != segmentSize) {
+                    throw new IOException("The interrupted run used other public keys, --suite or --segment-size;"
+                        + " resume with the same ones, or delete " + journalPath + " to start over");
+                }
+                segmentCipher = new SegmentCipher(journal.getDataKey(), journal.getHeader());
+                checkCommitted(segmentCipher, src, dst, journal.getCommittedSegments());
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                journal.close();
+                throw e;
+            }
         } else {
-            outputFile = new File(DEFAULT_OFILE);
+            SecretKey dataKey = KeyWrap.generateDataKey();
+            segmentCipher = HybridOutputStream.newSegmentCipher(dataKey, publicKeys, segmentSize, 0, suite);
+            journal = ResumeJournal.create(journalPath, inputLength, inputModified, dataKey,
+                segmentCipher.getHeader(), fingerprints);
         }
+        stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
 
-        PublicKey pubKey = null;
-        try {
-            pubKey = (PublicKey) getKeyObjectFromFile(publicKeyFile);
-            size = encryptDecryptFile(pubKey, inputFile, outputFile);
-        } catch (Exception ex) {
-            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        long first = journal.getCommittedSegments();
+        long segments = Math.max(1, (inputLength + segmentCipher.getSegmentSize() - 1)
+            / segmentCipher.getSegmentSize());
+        long size;
+        try (FileChannel inChannel = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel outChannel = FileChannel.open(dst, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            OutputStream buffered = new PooledOutputStream(Channels.newOutputStream(outChannel), STREAM_BUFSIZE);
+            if (first == 0) {
+                byte[] header = segmentCipher.getHeader().toByteArray();
+                outChannel.truncate(0);
+                buffered.write(header);
+                stats.addBytesOut(header.length);
+            } else {
+                System.out.println("Resuming at segment " + first + " of " + segments);
+                long committed = segmentCipher.getHeader().length() + first * segmentCipher.getCipherSegmentSize();
+                outChannel.truncate(committed);
+                outChannel.position(committed);
+                inChannel.position(first * segmentCipher.getSegmentSize());
+            }
+            OutputStream outputWriter = new ResumeJournal.CheckpointStream(buffered, outChannel, journal, first,
+                segments - 1, segmentCipher.getCipherSegmentSize());
+            size = SegmentEngine.encrypt(segmentCipher, getPool(), first, Channels.newInputStream(inChannel),
+                outputWriter, stats);
+            outputWriter.flush();
+            outChannel.force(true);
+        } finally {
+            journal.close();
         }
+        journal.delete();
+        stats.addFile();
+        return first * segmentCipher.getSegmentSize() + size;
+    }
 
-        System.out.println("Number of bytes transferred: " + size);
+    /**
+     * Checks the header and the last committed segment of an interrupted run: the segment must decrypt with the
+     * journal's key and match the input at its position.
+     *
+     * @param segmentCipher The segment cipher of the journal.
+     * @param src           The input file.
+     * @param dst           The output file.
+     * @param committed     The number of committed segments.
+     * @throws IOException If the output does not hold the committed segments or they do not match the input.
+     */
+    private static void checkCommitted(SegmentCipher segmentCipher, Path src, Path dst, long committed)
+            throws IOException {
+        if (committed == 0) {
+            return;
+        }
+        String startOver = "; delete " + dst + ResumeJournal.SUFFIX + " to start over";
+        byte[] header = segmentCipher.getHeader().toByteArray();
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dst, StandardOpenOption.READ)) {
+            if (out.size() < header.length + committed * segmentCipher.getCipherSegmentSize()) {
+                throw new IOException("The output is shorter than the journal says" + startOver);
+            }
+            if (!Arrays.equals(readFully(out, 0, header.length), header)) {
+                throw new IOException("The header of the output does not match the journal" + startOver);
+            }
+            long index = committed - 1;
+            byte[] cipherText = readFully(out, header.length + index * segmentCipher.getCipherSegmentSize(),
+                segmentCipher.getCipherSegmentSize());
+            byte[] plainText = new byte[segmentCipher.getSegmentSize()];
+            try {
+                segmentCipher.decryptSegment(index, false, cipherText, 0, cipherText.length, plainText, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Segment " + index + " of the output fails authentication"
+                    + startOver, e);
+            }
+            if (!Arrays.equals(readFully(in, index * segmentCipher.getSegmentSize(), plainText.length),
+                    plainText)) {
+                throw new IOException("Segment " + index + " of the output does not match the input" + startOver);
+            }
+        }
+    }
+
+    // Reads length bytes at the position of the channel
+    private static byte[] readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("Unexpected end of file");
+            }
+        }
+        return buf.array();
     }
 
     /**
-     * Encrypts the input file using the public key and saves the result to the output file.
+     * Encrypts the input stream in the hybrid format and writes the result to the output stream.
      *
-     * @param publicKey The public key.
-     * @param inputFile The input file.
-     * @param outputFile The output file.
-     * @return The number of bytes transferred.
+     * @param key          The public key.
+     * @param inputReader  The plaintext stream.
+     * @param outputWriter The ciphertext stream.
+     * @return The number of plaintext bytes encrypted.
      * @throws Exception If an error occurs during encryption.
      */
-    private int encryptDecryptFile(PublicKey publicKey, File inputFile, File outputFile) throws Exception {
+    @Override
+    protected long encryptDecryptStream(Key key, InputStream inputReader, OutputStream outputWriter) throws Exception {
+        boolean compressed = false;
+        if (compress) {
+            if (!inputReader.markSupported()) {
+                inputReader = new BufferedInputStream(inputReader, STREAM_BUFSIZE);
+            }
+            compressed = isCompressible(inputReader);
+        }
+
+        CryptStats stats = getStats();
+        long start = System.nanoTime();
+        List<PublicKey> publicKeys = allRecipients((PublicKey) key);
+        SegmentCipher segmentCipher = HybridOutputStream.newSegmentCipher(publicKeys, segmentSize,
+            compressed ? HybridHeader.FLAG_COMPRESSED : 0, suite);
+        byte[] header = segmentCipher.getHeader().toByteArray();
+        stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
+
+        outputWriter.write(header);
+        stats.addBytesOut(header.length);
+        if (!compressed) {
+            long size = SegmentEngine.encrypt(segmentCipher, getPool(), inputReader, outputWriter, stats);
+            stats.addFile();
+            return size;
+        }
+
+        // The segments carry the Deflate stream; the compression runs on this thread as part of reading
+        Deflater deflater = new Deflater(COMPRESS_LEVEL);
         try {
-            Cipher cipher = getCipher(publicKey);
-            byte[] inputBytes = Files.readAllBytes(inputFile.toPath());
-            byte[] encryptedBytes = crypt(inputBytes, publicKey, cipher);
-            Files.write(outputFile.toPath(), encryptedBytes);
-            return encryptedBytes.length;
-        } catch (Exception e) {
-            System.err.println("Exception: " + e.getMessage());
-            throw e;
+            InputStream deflated = new DeflaterInputStream(inputReader, deflater, COMPRESS_BUFSIZE);
+            long compressedSize = SegmentEngine.encrypt(segmentCipher, getPool(), deflated, outputWriter, stats);
+            // The engine counted the compressed bytes; count the original input instead
+            stats.addBytesIn(deflater.getBytesRead() - compressedSize);
+            stats.addFile();
+            return deflater.getBytesRead();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Checks whether the input compresses well enough to be worth the compression stage, by compressing a
+     * sample from its start. The stream is reset afterwards.
+     *
+     * @param inputReader A stream supporting mark/reset.
+     * @return True if the sample shrinks to at most COMPRESS_MAX_RATIO of its size.
+     * @throws IOException If an I/O error occurs.
+     */
+    protected static boolean isCompressible(InputStream inputReader) throws IOException {
+        byte[] sample = new byte[COMPRESS_SAMPLE_SIZE];
+        inputReader.mark(sample.length);
+        int len = inputReader.readNBytes(sample, 0, sample.length);
+        inputReader.reset();
+        if (len == 0) {
+            return false;
+        }
+
+        Deflater deflater = new Deflater(COMPRESS_LEVEL);
+        try {
+            deflater.setInput(sample, 0, len);
+            deflater.finish();
+            byte[] buf = new byte[COMPRESS_BUFSIZE];
+            long compressedLen = 0;
+            while (!deflater.finished()) {
+                compressedLen += deflater.deflate(buf);
+            }
+            return compressedLen <= len * COMPRESS_MAX_RATIO;
+        } finally {
+            deflater.end();
         }
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * File: RunEncryptDir.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+
+/**
+ * This class represents the RunEncryptDir command, which encrypts every file of a directory tree for one or more
+ * public keys.
+ * It extends the RunDirectoryBase class.
+ *
+ * Command-line arguments:
+ * [pub_keyfile] [srcdir] [dstdir] [--jobs n] [--threads n] [--segment-size bytes] [--suite name]
+ * [--recipient pub_keyfile ...]:
+ * Encrypts all files below srcdir into the same relative paths below dstdir.
+ */
+public class RunEncryptDir extends RunDirectoryBase {
+
+    @Override
+    protected String getCommandName() {
+        return "RunEncryptDir";
+    }
+
+    @Override
+    protected String[] getExtraValueOptions() {
+        return new String[]{"--segment-size", "--suite", "--recipient"};
+    }
+
+    @Override
+    protected String[] getExtraFlagOptions() {
+        return new String[]{"--compress"};
+    }
+
+    /**
+     * Creates the RunEncrypt command that encrypts each file.
+     *
+     * @param options The parsed command-line options.
+     * @return The single-file command.
+     */
+    @Override
+    protected RunnableBase createFileCommand(CommandOptions options) {
+        RunEncrypt encrypt = new RunEncrypt();
+        encrypt.setSegmentSize((int) Math.min(Integer.MAX_VALUE,
+            options.getSize("--segment-size", HybridHeader.DEFAULT_SEGMENT_SIZE)));
+        encrypt.setCompress(options.has("--compress"));
+        encrypt.setSuite(CipherSuites.forName(options.get("--suite", CipherSuites.NAME_AES_GCM)));
+        // The additional keys are read once for the whole tree, like the key of the first argument
+        try {
+            encrypt.setRecipients(encrypt.loadRecipients(options.getAll("--recipient")));
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+        return encrypt;
+    }
+}
@@ -3,7 +3,7 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 18.11.2023
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
@@ -11,24 +11,84 @@ package javacrypt;
 
 import java.io.*;
 import java.security.*;
+import java.security.spec.ECGenParameterSpec;
 import java.util.List;
+import java.util.Locale;
 import javax.crypto.Cipher;
 
 /**
- * This class represents the RunGenKeys command, which generates a pair of RSA keys.
+ * This class represents the RunGenKeys command, which generates a key pair: RSA (default), EC on the P-256 curve
+ * or X25519. Files encrypted for EC and X25519 keys wrap their data key by key agreement, which makes both key
+ * generation and decryption much cheaper than with RSA (see {@link KeyWrap}).
  * It extends the RunnableBase class.
+ * <p>
+ * The private key is written as PKCS#8 and the public key as X.509, in PEM (default) or DER encoding.
  *
  * Command-line arguments:
- * [privkeyfile] [pubkeyfile]: Generates a private key file and a public key file.
+ * [privkeyfile] [pubkeyfile] [--algorithm rsa|ec|x25519] [--key-size bits] [--format pem|der]: Generates a private
+ * key file and a public key file. The key size applies to RSA only.
  */
 public class RunGenKeys extends RunnableBase {
 
+    /**
+     * The key pair algorithms that can be generated.
+     */
+    public enum KeyAlgorithm {
+        RSA, EC, X25519;
+
+        /**
+         * Parses an algorithm name, ignoring case.
+         *
+         * @param name The name, "rsa", "ec" or "x25519".
+         * @return The algorithm.
+         * @throws IllegalArgumentException If the name is unknown.
+         */
+        public static KeyAlgorithm parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown key algorithm: " + name + " (use rsa, ec or x25519)");
+            }
+        }
+    }
+
+    // Curve of the generated EC keys
+    public static final String EC_CURVE = "secp256r1";
+
     // Default private key file name if not specified through the command line
     public static final String DEFAULT_FILE_PRIV = "priv.key";
 
     // Default public key file name if not specified through the command line
     public static final String DEFAULT_FILE_PUB = "pub.key";
 
+    // Smallest accepted key size in bits
+    public static final int MIN_KEY_LENGTH = 1024;
+
+    // Largest accepted key size in bits
+    public static final int MAX_KEY_LENGTH = 16384;
+
+    // Encoding of the written key files
+    protected KeyCodec.Format format = KeyCodec.Format.PEM;
+
+    // Size of the generated keys in bits
+    protected int keyLength = KEY_LENGTH;
+
+    // Algorithm of the generated keys
+    protected KeyAlgorithm algorithm = KeyAlgorithm.RSA;
+
+    /**
+     * Sets the size of the generated keys.
+     *
+     * @param keyLength The key size in bits.
+     */
+    public void setKeyLength(int keyLength) {
+        if (keyLength < MIN_KEY_LENGTH || keyLength > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key size must be between " + MIN_KEY_LENGTH
+                + " and " + MAX_KEY_LENGTH + " bits");
+        }
+        this.keyLength = keyLength;
+    }
+
     /**
      * Executes the RunGenKeys command.
      *
@@ -38,29 +98,26 @@ public class RunGenKeys extends RunnableBase {
     public void run(List<String> args) {
         System.out.println("RunGenKeys");
 
+        CommandOptions options;
+        try {
+            options = new CommandOptions(args, new String[]{"--format", "--key-size", "--algorithm"}, new String[0]);
+            format = KeyCodec.Format.parse(options.get("--format", "pem"));
+            algorithm = KeyAlgorithm.parse(options.get("--algorithm", "rsa"));
+            setKeyLength(options.getInt("--key-size", KEY_LENGTH));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Exception: " + ex.getMessage());
+            return;
+        }
+
         // Private key file
-        File privateKeyFile;
+        File privateKeyFile = new File(options.getPositional(0, DEFAULT_FILE_PRIV));
 
         // Public key file
-        File publicKeyFile;
-
-        if (!args.isEmpty()) {
-            privateKeyFile = new File(args.get(0));
-        } else {
-            privateKeyFile = new File(DEFAULT_FILE_PRIV);
-        }
-
-        if (args.size() > 1) {
-            publicKeyFile = new File(args.get(1));
-        } else {
-            publicKeyFile = new File(DEFAULT_FILE_PUB);
-        }
+        File publicKeyFile = new File(options.getPositional(1, DEFAULT_FILE_PUB));
 
         try {
             // Generate key pair
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(CRYPTO_ALGORITHMUS);
-            keyPairGenerator.initialize(KEY_LENGTH);
-            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            KeyPair keyPair = generateKeyPair(algorithm, keyLength);
             PrivateKey privateKey = keyPair.getPrivate();
             PublicKey publicKey = keyPair.getPublic();
 
@@ -72,28 +129,56 @@ public class RunGenKeys extends RunnableBase {
 
             System.out.println("Private key file: " + privateKeyFile.getCanonicalPath());
             System.out.println("Public key file: " + publicKeyFile.getCanonicalPath());
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("The algorithm '" + CRYPTO_ALGORITHMUS + "' is not implemented!");
-            System.exit(2);
+        } catch (GeneralSecurityException e) {
+            System.err.println("The algorithm '" + algorithm + "' is not implemented!");
         } catch (IOException e) {
             System.err.println("IOException: " + e.getMessage());
         }
     }
 
     /**
-     * Writes the given key to a file.
+     * Generates a key pair.
+     *
+     * @param keyLength The key length in bits.
+     * @return The key pair.
+     * @throws NoSuchAlgorithmException If the crypto algorithm is not available.
+     */
+    public KeyPair generateKeyPair(int keyLength) throws NoSuchAlgorithmException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(CRYPTO_ALGORITHMUS);
+        keyPairGenerator.initialize(keyLength);
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    /**
+     * Generates a key pair of the given algorithm.
+     *
+     * @param algorithm The key algorithm.
+     * @param keyLength The key length in bits; only used for RSA.
+     * @return The key pair.
+     * @throws GeneralSecurityException If the algorithm is not available.
+     */
+    public KeyPair generateKeyPair(KeyAlgorithm algorithm, int keyLength) throws GeneralSecurityException {
+        switch (algorithm) {
+            case EC:
+                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+                keyPairGenerator.initialize(new ECGenParameterSpec(EC_CURVE));
+                return keyPairGenerator.generateKeyPair();
+            case X25519:
+                return KeyPairGenerator.getInstance("X25519").generateKeyPair();
+            default:
+                return generateKeyPair(keyLength);
+        }
+    }
+
+    /**
+     * Writes the given key to a file in the configured encoding.
      *
      * @param key  The key to write.
      * @param file The file to write the key to.
+     * @throws IOException If the file cannot be written.
      */
-    private void writeKeyToFile(Key key, File file) {
-        try (FileOutputStream fos = new FileOutputStream(file);
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(key);
-        } catch (IOException e) {
-            System.err.println("Exception(writeKeyToFile): " + e.getMessage());
-            System.exit(2);
-        }
+    private void writeKeyToFile(Key key, File file) throws IOException {
+        KeyCodec.write(key, file, format);
     }
 
     /**
@@ -0,0 +1,126 @@
+/*
+ * File: RunGenKeysBatch.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * This class represents the RunGenKeysBatch command, which generates many key pairs in parallel.
+ * It extends the RunGenKeys class.
+ * <p>
+ * Key generation is CPU-bound and every pair is independent, so the pairs are generated and written on all
+ * cores of the worker pool. Pair n is written to key-n-priv and key-n-pub (with a .pem or .der extension) in the
+ * output directory, and the file index.txt lists each pair's name and fingerprint in order.
+ *
+ * Command-line arguments:
+ * [count] [outdir] [--algorithm rsa|ec|x25519] [--key-size bits] [--threads n] [--format pem|der]: Generates count
+ * key pairs in outdir.
+ */
+public class RunGenKeysBatch extends RunGenKeys {
+
+    // Name of the index file in the output directory
+    public static final String INDEX_FILE = "index.txt";
+
+    /**
+     * Executes the RunGenKeysBatch command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunGenKeysBatch");
+
+        CommandOptions options;
+        int count;
+        try {
+            options = new CommandOptions(args, new String[]{"--format", "--key-size", "--threads", "--algorithm"}, new String[0]);
+            if (options.getPositional().size() < 2) {
+                throw new IllegalArgumentException("Expected [count] [outdir]");
+            }
+            format = KeyCodec.Format.parse(options.get("--format", "pem"));
+            algorithm = KeyAlgorithm.parse(options.get("--algorithm", "rsa"));
+            setKeyLength(options.getInt("--key-size", KEY_LENGTH));
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            count = Integer.parseInt(options.getPositional(0, null));
+            if (count <= 0) {
+                throw new IllegalArgumentException("Invalid number of keys: " + count);
+            }
+        } catch (NumberFormatException ex) {
+            System.err.println("Exception: Invalid number of keys: " + args.get(0));
+            return;
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Exception: " + ex.getMessage());
+            return;
+        }
+
+        File outputDir = new File(options.getPositional(1, null));
+
+        try {
+            long start = System.nanoTime();
+            generateBatch(count, outputDir);
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+
+            System.out.println("Keys generated: " + count + " ("
+                + (algorithm == KeyAlgorithm.RSA ? "RSA " + keyLength + " bits" : algorithm) + ")");
+            System.out.println("Index file: " + new File(outputDir, INDEX_FILE).getCanonicalPath());
+            System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.2f keys/s", seconds, count / seconds));
+        } catch (IOException ex) {
+            System.err.println("IOException: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Generates the key pairs in parallel, writes them to the output directory and writes the index file.
+     *
+     * @param count     The number of key pairs.
+     * @param outputDir The output directory, created if necessary.
+     * @throws IOException If a key file or the index file cannot be written.
+     */
+    public void generateBatch(int count, File outputDir) throws IOException {
+        Files.createDirectories(outputDir.toPath());
+        int digits = Math.max(5, Integer.toString(count).length());
+        String extension = "." + format.name().toLowerCase(Locale.ROOT);
+
+        List<Future<String>> futures = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String name = String.format(Locale.ROOT, "key-%0" + digits + "d", i);
+            futures.add(getPool().submit(() -> {
+                KeyPair keyPair = generateKeyPair(algorithm, keyLength);
+                KeyCodec.write(keyPair.getPrivate(), new File(outputDir, name + "-priv" + extension), format);
+                KeyCodec.write(keyPair.getPublic(), new File(outputDir, name + "-pub" + extension), format);
+                return name + " " + KeyCodec.fingerprint(keyPair.getPublic());
+            }));
+        }
+
+        // Collect the index lines in order, so the index does not depend on which thread finished first
+        List<String> index = new ArrayList<>(count);
+        try {
+            for (Future<String> future : futures) {
+                index.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Key generation interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        Files.write(new File(outputDir, INDEX_FILE).toPath(), index, StandardCharsets.US_ASCII);
+    }
+}
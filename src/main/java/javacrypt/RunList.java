@@ -0,0 +1,95 @@
+/*
+ * File: RunList.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.File;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunList command, which lists the members of an archive written by RunPack.
+ * It extends the RunnableBase class.
+ * <p>
+ * Only the header and the index at the end of the archive are read, so listing takes the same time for any
+ * archive size.
+ *
+ * Command-line arguments:
+ * [privkeyfile] [archive]: Prints size, modification time and name of every member.
+ */
+public class RunList extends RunnableBase {
+
+    /**
+     * Executes the RunList command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunList");
+
+        if (args.size() < 2) {
+            System.err.println("EXCEPTION: run : Expected [privkeyfile] [archive]");
+            return;
+        }
+
+        try {
+            PrivateKey privateKey = (PrivateKey) getKeyObjectFromFile(new File(args.get(0)));
+            try (EncryptedArchive archive = EncryptedArchive.open(new File(args.get(1)).toPath(), privateKey)) {
+                long bytes = 0;
+                for (EncryptedArchive.Entry entry : archive.getEntries()) {
+                    System.out.println(String.format(Locale.ROOT, "%14d  %s  %s", entry.getSize(),
+                        Instant.ofEpochMilli(entry.getModified()).truncatedTo(ChronoUnit.SECONDS), entry.getName()));
+                    bytes += entry.getSize();
+                }
+                System.out.println("Members: " + archive.getEntries().size() + ", bytes: " + bytes);
+            }
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
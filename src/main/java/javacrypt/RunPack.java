@@ -0,0 +1,221 @@
+/*
+ * File: RunPack.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunPack command, which encrypts many files into one archive (see
+ * {@link EncryptedArchive}). It extends the RunnableBase class.
+ * <p>
+ * The size of every member is known up front, so each member's place in the archive is reserved before any member
+ * is encrypted, and the members are encrypted in parallel straight into their places. This replaces packing with
+ * tar and encrypting the tar file, which reads and writes all data twice.
+ *
+ * Command-line arguments:
+ * [pub_keyfile] [archive] [input ...] [--jobs n] [--threads n] [--segment-size bytes]: Packs the input files and
+ * directories into the archive. A directory is packed with all files below it, named by their path from the
+ * directory's parent, like tar does. "--jobs" limits the members in flight (default: twice the number of cores).
+ */
+public class RunPack extends RunnableBase {
+
+    /**
+     * Executes the RunPack command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunPack");
+
+        CommandOptions options;
+        int jobs;
+        int segmentSize;
+        try {
+            options = new CommandOptions(args, new String[]{"--jobs", "--threads", "--segment-size"}, new String[0]);
+            if (options.getPositional().size() < 3) {
+                throw new IllegalArgumentException("Expected [pub_keyfile] [archive] [input ...]");
+            }
+            jobs = options.getInt("--jobs", 2 * Runtime.getRuntime().availableProcessors());
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+            segmentSize = (int) Math.min(Integer.MAX_VALUE,
+                options.getSize("--segment-size", HybridHeader.DEFAULT_SEGMENT_SIZE));
+            RunEncrypt.checkSegmentSize(segmentSize);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        File publicKeyFile = new File(options.getPositional(0, null));
+        Path archiveFile = new File(options.getPositional(1, null)).toPath();
+        List<String> inputs = options.getPositional().subList(2, options.getPositional().size());
+
+        try {
+            PublicKey publicKey = (PublicKey) getKeyObjectFromFile(publicKeyFile);
+            pack(publicKey, archiveFile, inputs, segmentSize, jobs);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Packs the inputs into the archive. If any member fails, the archive is removed.
+     *
+     * @param publicKey   The public key.
+     * @param archiveFile The archive file.
+     * @param inputs      The input files and directories.
+     * @param segmentSize The plaintext segment size.
+     * @param jobs        The maximum number of members in flight.
+     * @return The number of plaintext bytes packed.
+     * @throws Exception If the inputs cannot be read or a member fails.
+     */
+    public long pack(PublicKey publicKey, Path archiveFile, List<String> inputs, int segmentSize, int jobs)
+            throws Exception {
+        SortedMap<String, Path> members = collectMembers(inputs);
+        long start = System.nanoTime();
+
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+        long bytes = 0;
+        try (EncryptedArchive archive = EncryptedArchive.create(archiveFile, publicKey, segmentSize)) {
+            // Reserve every member's place first, so all of them can be written at once
+            List<EncryptedArchive.Entry> entries = new ArrayList<>(members.size());
+            List<Path> files = new ArrayList<>(members.size());
+            for (Map.Entry<String, Path> member : members.entrySet()) {
+                BasicFileAttributes attributes = Files.readAttributes(member.getValue(), BasicFileAttributes.class);
+                entries.add(archive.addEntry(member.getKey(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()));
+                files.add(member.getValue());
+                bytes += attributes.size();
+            }
+
+            Semaphore inFlight = new Semaphore(jobs);
+            ExecutorService executor = newTaskExecutor(jobs);
+            try {
+                for (int i = 0; i < entries.size() && failures.isEmpty(); i++) {
+                    EncryptedArchive.Entry entry = entries.get(i);
+                    Path file = files.get(i);
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        try (InputStream in = Files.newInputStream(file)) {
+                            archive.writeEntry(entry, in, getPool());
+                        } catch (Exception ex) {
+                            failures.put(entry.getName(), String.valueOf(ex.getMessage()));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            if (failures.isEmpty()) {
+                archive.finish();
+            }
+        } catch (Exception ex) {
+            Files.deleteIfExists(archiveFile);
+            throw ex;
+        }
+
+        if (!failures.isEmpty()) {
+            Files.deleteIfExists(archiveFile);
+            for (Map.Entry<String, String> failure : failures.entrySet()) {
+                System.err.println("FAILED: " + failure.getKey() + " : " + failure.getValue());
+            }
+            throw new IOException("Archive not written, " + failures.size() + " member(s) failed");
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        System.out.println("Members packed: " + members.size());
+        System.out.println("Number of bytes transferred: " + bytes);
+        System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.1f files/s, %.1f MB/s",
+            seconds, members.size() / seconds, bytes / 1e6 / seconds));
+        return bytes;
+    }
+
+    /**
+     * Collects the regular files to pack, by member name.
+     *
+     * @param inputs The input files and directories.
+     * @return The files by member name, sorted by name.
+     * @throws IOException If an input does not exist or two files get the same name.
+     */
+    protected static SortedMap<String, Path> collectMembers(List<String> inputs) throws IOException {
+        SortedMap<String, Path> members = new TreeMap<>();
+        for (String input : inputs) {
+            Path path = new File(input).toPath().toAbsolutePath().normalize();
+            Path base = path.getParent() != null ? path.getParent() : path;
+            List<Path> files;
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> paths = Files.walk(path)) {
+                    files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+                }
+            } else if (Files.isRegularFile(path)) {
+                files = Collections.singletonList(path);
+            } else {
+                throw new FileNotFoundException("No such file or directory: " + input);
+            }
+            for (Path file : files) {
+                String name = base.relativize(file).toString().replace(File.separatorChar, '/');
+                EncryptedArchive.checkName(name);
+                if (members.put(name, file) != null) {
+                    throw new IOException("Two inputs have the member name " + name);
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * File: RunRewrap.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+/**
+ * This class represents the RunRewrap command, which moves encrypted files from one key pair to another without
+ * decrypting or re-encrypting their contents.
+ * It extends the RunnableBase class.
+ * <p>
+ * Only the wrapped data key in the header is replaced, so the cost of a file is one unwrap with the old private key
+ * and one wrap with the new public key, whatever its size. In a file for several recipients, only the entry of the
+ * old key is replaced. If the new header has the length of the old one, which holds for keys of the same type and
+ * size, it is overwritten in place; otherwise the file is rewritten next to the original with the new header and
+ * then moved over it, and the directory is forced to disk after the move. A symbolic link is followed, so its
+ * target is rewrapped and the link stays. Archives are always rewrapped in place, so they need a key of the same
+ * type and size.
+ * <p>
+ * Overwriting the header in place is a single small write, but not crash-atomic: a crash in the middle of it can
+ * leave a header that neither key unwraps. Keep a copy of the old header, or of the file, where that matters.
+ * Incremental files keep wrapped keys of earlier runs in their earlier trailers and cannot be rewrapped; legacy
+ * files have no data key.
+ *
+ * Command-line arguments:
+ * [old_privkeyfile] [new_pubkeyfile] [file ...]: Rewraps the files; directories are rewrapped with every file below
+ * them, except the manifests (.jcm) and journals (.jcj) kept next to incremental and resumable output.
+ * [--jobs n]: The maximum number of files rewrapped at the same time (default: twice the number of cores).
+ * The program exits with status 1 if any file fails, or if the arguments or keys are not usable.
+ */
+public class RunRewrap extends RunnableBase {
+
+    // Exit status if any file failed
+    public static final int EXIT_FAILED = 1;
+
+    // Suffix of the copy a file is rewritten to before it replaces the original
+    public static final String TEMP_SUFFIX = ".rewrap";
+
+    /**
+     * Executes the RunRewrap command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunRewrap");
+
+        CommandOptions options;
+        int jobs;
+        try {
+            options = new CommandOptions(args, new String[]{"--jobs"}, new String[0]);
+            jobs = options.getInt("--jobs", 2 * Runtime.getRuntime().availableProcessors());
+            if (options.getPositional().size() < 3) {
+                throw new IllegalArgumentException("Expected [old_privkeyfile] [new_pubkeyfile] [file ...]");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        int failed;
+        try {
+            Object oldKey = getKeyObjectFromFile(new File(options.getPositional(0, null)));
+            Object newKey = getKeyObjectFromFile(new File(options.getPositional(1, null)));
+            if (!(oldKey instanceof PrivateKey)) {
+                throw new IOException("Not a private key: " + options.getPositional(0, null));
+            }
+            if (!(newKey instanceof PublicKey)) {
+                throw new IOException("Not a public key: " + options.getPositional(1, null));
+            }
+            List<String> files = options.getPositional();
+            failed = rewrapAll((PrivateKey) oldKey, (PublicKey) newKey, files.subList(2, files.size()), jobs);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        if (failed > 0) {
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    /**
+     * Rewraps the given files and every file below the given directories, several files at a time.
+     *
+     * @param oldPrivateKey The private key the files are encrypted for.
+     * @param newPublicKey  The public key they are to be encrypted for.
+     * @param names         The files and directories.
+     * @param jobs          The maximum number of files in flight.
+     * @return The number of failed files.
+     * @throws IOException          If a directory cannot be walked.
+     * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+     */
+    protected int rewrapAll(PrivateKey oldPrivateKey, PublicKey newPublicKey, List<String> names, int jobs)
+            throws IOException, InterruptedException {
+        // A file named twice, or also through a link, must not be rewritten by two jobs at once
+        Set<Path> paths = new LinkedHashSet<>();
+        for (String name : names) {
+            for (File file : RunVerify.expand(new File(name))) {
+                paths.add(realPath(file.toPath()));
+            }
+        }
+
+        AtomicLong inPlace = new AtomicLong();
+        AtomicLong rewritten = new AtomicLong();
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+        Semaphore inFlight = new Semaphore(jobs);
+        long start = System.nanoTime();
+
+        ExecutorService executor = newTaskExecutor(jobs);
+        try {
+            for (Path path : paths) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        if (rewrap(oldPrivateKey, newPublicKey, path)) {
+                            inPlace.incrementAndGet();
+                        } else {
+                            rewritten.incrementAndGet();
+                        }
+                    } catch (Exception ex) {
+                        failures.put(path.toString(), String.valueOf(ex.getMessage()));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        long files = inPlace.get() + rewritten.get();
+        System.out.println("Files rewrapped: " + files + " (in place: " + inPlace.get() + ", rewritten: "
+            + rewritten.get() + ")");
+        System.out.println("Files failed: " + failures.size());
+        System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.1f files/s", seconds, files / seconds));
+
+        int listed = 0;
+        for (Map.Entry<String, String> failure : failures.entrySet()) {
+            if (listed++ == RunVerify.MAX_LISTED_FAILURES) {
+                System.err.println("... and " + (failures.size() - RunVerify.MAX_LISTED_FAILURES) + " more");
+                break;
+            }
+            System.err.println("FAILED: " + failure.getKey() + " : " + failure.getValue());
+        }
+        return failures.size();
+    }
+
+    /**
+     * Rewraps one file, choosing the format from its signature.
+     *
+     * @param oldPrivateKey The private key the file is encrypted for.
+     * @param newPublicKey  The public key it is to be encrypted for.
+     * @param path          The file.
+     * @return True if the header was overwritten in place, false if the file was rewritten.
+     * @throws IOException              If the file cannot be rewrapped, or an I/O error occurs.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped or wrapped.
+     */
+    public boolean rewrap(PrivateKey oldPrivateKey, PublicKey newPublicKey, Path path)
+            throws IOException, GeneralSecurityException {
+        byte[] magic = new byte[HybridHeader.MAGIC.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            int len = in.readNBytes(magic, 0, magic.length);
+            if (Arrays.equals(magic, EncryptedArchive.MAGIC)) {
+                EncryptedArchive.rewrap(path, oldPrivateKey, newPublicKey);
+                return true;
+            }
+            if (Arrays.equals(magic, ChunkedContainer.MAGIC)) {
+                throw new IOException("Incremental files cannot be rewrapped; encrypt them again");
+            }
+            if (!HybridHeader.hasMagic(magic, len)) {
+                throw new IOException("Not a JavaCrypt file, or a legacy file, which has no data key to rewrap");
+            }
+        }
+        return rewrapHybrid(oldPrivateKey, newPublicKey, path);
+    }
+
+    /**
+     * Rewraps a hybrid file.
+     *
+     * @param oldPrivateKey The private key the file is encrypted for.
+     * @param newPublicKey  The public key it is to be encrypted for.
+     * @param path          The file.
+     * @return True if the header was overwritten in place, false if the file was rewritten.
+     * @throws IOException              If an I/O error occurs.
+     * @throws GeneralSecurityException If the old key matches no recipient or the new key cannot be used.
+     */
+    private boolean rewrapHybrid(PrivateKey oldPrivateKey, PublicKey newPublicKey, Path path)
+            throws IOException, GeneralSecurityException {
+        // Moving the copy over a link would replace the link and leave its target wrapped for the old key
+        path = path.toRealPath();
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Not closed: closing the stream would close the channel. The header is read without read-ahead.
+            HybridHeader header = HybridHeader.read(Channels.newInputStream(channel));
+            HybridHeader newHeader = header.withRecipients(replaceRecipient(header, oldPrivateKey, newPublicKey));
+            byte[] encoded = newHeader.toByteArray();
+
+            if (encoded.length == header.length()) {
+                ChunkedContainer.writeFully(channel, ByteBuffer.wrap(encoded), 0);
+                channel.force(false);
+                return true;
+            }
+
+            // The payload moves, so it is copied behind the new header and the copy replaces the original
+            FileChannel out;
+            try {
+                out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                throw new IOException("Remove " + temp + " of an interrupted run first", e);
+            }
+            try (out) {
+                ChunkedContainer.writeFully(out, ByteBuffer.wrap(encoded), 0);
+                // transferTo writes at the channel position, which the positional write left at 0
+                out.position(encoded.length);
+                long position = header.length();
+                long size = channel.size();
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, out);
+                }
+                out.force(true);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+        try {
+            copyPermissions(path, temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectory(path.getParent());
+        return false;
+    }
+
+    // The real path of a file, or its normalized absolute path if it cannot be resolved, as for a dangling link
+    private static Path realPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+    // Forces a rename in the directory to disk, where the platform can open a directory
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform, as on Windows
+        }
+    }
+
+    /**
+     * Returns the recipients of a header with the entry of the old key replaced by one for the new key.
+     *
+     * @param header        The header.
+     * @param oldPrivateKey The private key of the recipient to replace.
+     * @param newPublicKey  The public key of the new recipient.
+     * @return The new recipients.
+     * @throws GeneralSecurityException If the old key matches no recipient or the new key cannot be used.
+     */
+    private static List<WrappedKey> replaceRecipient(HybridHeader header, PrivateKey oldPrivateKey,
+                                                                      PublicKey newPublicKey)
+            throws GeneralSecurityException {
+        List<WrappedKey> recipients = new ArrayList<>(header.getRecipients());
+        for (int i = 0; i < recipients.size(); i++) {
+            SecretKey dataKey;
+            try {
+                dataKey = KeyWrap.unwrap(recipients.get(i).getWrapAlgorithm(), recipients.get(i).getEntry(),
+                    oldPrivateKey);
+            } catch (GeneralSecurityException e) {
+                if (recipients.size() == 1) {
+                    throw e;
+                }
+                continue;
+            }
+            recipients.set(i, new WrappedKey(KeyWrap.wrapAlgorithmFor(newPublicKey),
+                KeyWrap.wrap(dataKey, newPublicKey)));
+            return recipients;
+        }
+        throw new InvalidKeyException("The private key matches none of the " + recipients.size()
+            + " recipients of the file");
+    }
+
+    // Gives the rewritten file the permissions of the original, where the file system has POSIX permissions
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the copy keeps the default permissions
+        }
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * File: RunUnpack.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunUnpack command, which extracts members of an archive written by RunPack.
+ * It extends the RunnableBase class.
+ * <p>
+ * Only the index and the selected members are read; members are decrypted in parallel. A member that fails is
+ * reported and its partial output removed, and the other members are still extracted. Symbolic links already in the
+ * output directory are not followed: a member whose path runs through one fails instead of being written elsewhere.
+ *
+ * Command-line arguments:
+ * [privkeyfile] [archive] [outdir] [member ...] [--jobs n] [--threads n]: Extracts the given members (all if none
+ * are given) below outdir. A name selects the member of that name or, for a directory, every member below it.
+ */
+public class RunUnpack extends RunnableBase {
+
+    /**
+     * Executes the RunUnpack command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunUnpack");
+
+        CommandOptions options;
+        int jobs;
+        try {
+            options = new CommandOptions(args, new String[]{"--jobs", "--threads"}, new String[0]);
+            if (options.getPositional().size() < 3) {
+                throw new IllegalArgumentException("Expected [privkeyfile] [archive] [outdir] [member ...]");
+            }
+            jobs = options.getInt("--jobs", 2 * Runtime.getRuntime().availableProcessors());
+            setThreads(options.getInt("--threads", Runtime.getRuntime().availableProcessors()));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            return;
+        }
+
+        File privateKeyFile = new File(options.getPositional(0, null));
+        Path archiveFile = new File(options.getPositional(1, null)).toPath();
+        Path outputDir = new File(options.getPositional(2, null)).toPath();
+        List<String> names = options.getPositional().subList(3, options.getPositional().size());
+
+        try {
+            PrivateKey privateKey = (PrivateKey) getKeyObjectFromFile(privateKeyFile);
+            unpack(privateKey, archiveFile, outputDir, names, jobs);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Extracts members of the archive.
+     *
+     * @param privateKey  The private key.
+     * @param archiveFile The archive file.
+     * @param outputDir   The directory to extract to.
+     * @param names       The members or directories to extract; all members if empty.
+     * @param jobs        The maximum number of members in flight.
+     * @return The number of failed members.
+     * @throws Exception If the archive cannot be opened or a name matches no member.
+     */
+    public int unpack(PrivateKey privateKey, Path archiveFile, Path outputDir, List<String> names, int jobs)
+            throws Exception {
+        long start = System.nanoTime();
+        AtomicLong files = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+
+        try (EncryptedArchive archive = EncryptedArchive.open(archiveFile, privateKey)) {
+            List<EncryptedArchive.Entry> selected = select(archive.getEntries(), names);
+            Path root = outputDir.toAbsolutePath().normalize();
+
+            Semaphore inFlight = new Semaphore(jobs);
+            ExecutorService executor = newTaskExecutor(jobs);
+            try {
+                for (EncryptedArchive.Entry entry : selected) {
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        Path target = root.resolve(entry.getName()).normalize();
+                        boolean opened = false;
+                        try {
+                            // The names were checked when the archive was written, but the archive is input too
+                            EncryptedArchive.checkName(entry.getName());
+                            createParents(root, target);
+                            OutputStream file = Files.newOutputStream(target, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                                LinkOption.NOFOLLOW_LINKS);
+                            opened = true;
+                            try (OutputStream out = new BufferedOutputStream(file,
+                                     EncryptedArchive.bufferSize(entry.getSize()))) {
+                                bytes.addAndGet(archive.extract(entry, out, getPool()));
+                            }
+                            Files.getFileAttributeView(target, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+                                .setTimes(FileTime.fromMillis(entry.getModified()), null, null);
+                            files.incrementAndGet();
+                        } catch (Exception ex) {
+                            failures.put(entry.getName(), String.valueOf(ex.getMessage()));
+                            try {
+                                if (opened) {
+                                    Files.deleteIfExists(target);
+                                }
+                            } catch (IOException ignored) {
+                                // Reported with the failure above
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        System.out.println("Members extracted: " + files.get());
+        System.out.println("Members failed: " + failures.size());
+        System.out.println("Number of bytes transferred: " + bytes.get());
+        System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.1f files/s, %.1f MB/s",
+            seconds, files.get() / seconds, bytes.get() / 1e6 / seconds));
+        for (Map.Entry<String, String> failure : failures.entrySet()) {
+            System.err.println("FAILED: " + failure.getKey() + " : " + failure.getValue());
+        }
+        return failures.size();
+    }
+
+    /**
+     * Creates the directories between the output directory and a member. An existing symbolic link on the way or in
+     * place of the member is refused rather than followed, so a link planted in the output directory cannot
+     * redirect a member outside it.
+     *
+     * @param root   The output directory.
+     * @param target The file of the member below root.
+     * @throws IOException If a directory cannot be created or a symbolic link is in the way.
+     */
+    protected static void createParents(Path root, Path target) throws IOException {
+        Files.createDirectories(root);
+        Path dir = root;
+        for (Path part : root.relativize(target.getParent())) {
+            dir = dir.resolve(part);
+            if (Files.isSymbolicLink(dir)) {
+                throw new IOException("Refusing to follow a symbolic link: " + dir);
+            }
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectory(dir);
+            }
+        }
+        if (Files.isSymbolicLink(target)) {
+            throw new IOException("Refusing to follow a symbolic link: " + target);
+        }
+    }
+
+    /**
+     * Selects the members named on the command line.
+     *
+     * @param entries The members of the archive.
+     * @param names   Member names or directory names; empty for all members.
+     * @return The selected members.
+     * @throws IOException If a name matches no member.
+     */
+    protected static List<EncryptedArchive.Entry> select(List<EncryptedArchive.Entry> entries, List<String> names)
+            throws IOException {
+        if (names.isEmpty()) {
+            return entries;
+        }
+        List<EncryptedArchive.Entry> selected = new ArrayList<>();
+        Set<String> matched = new HashSet<>();
+        for (EncryptedArchive.Entry entry : entries) {
+            boolean match = false;
+            // Every name that covers the member counts as found, the member is extracted once
+            for (String name : names) {
+                String prefix = name.endsWith("/") ? name : name + "/";
+                if (entry.getName().equals(name) || entry.getName().startsWith(prefix)) {
+                    matched.add(name);
+                    match = true;
+                }
+            }
+            if (match) {
+                selected.add(entry);
+            }
+        }
+        for (String name : names) {
+            if (!matched.contains(name)) {
+                throw new FileNotFoundException("Not in the archive: " + name);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * File: RunVerify.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.crypto.Cipher;
+
+/**
+ * This class represents the RunVerify command, which checks that encrypted files are intact without writing the
+ * plaintext anywhere.
+ * It extends the RunnableBase class.
+ * <p>
+ * Every segment is decrypted and its tag checked, on all cores, and the plaintext is dropped. Hybrid files,
+ * incremental files and archives are recognised by their header; for a damaged file, the offset of the first
+ * segment, chunk or member that fails is reported. Legacy RSA files carry no authentication and are reported as
+ * failed. A compressed file is verified as far as its encrypted segments go; the Deflate stream inside is not
+ * inflated.
+ *
+ * Command-line arguments:
+ * [privkeyfile] [file ...]: Verifies the files; directories are verified with every file below them, except the
+ * manifests (.jcm) and journals (.jcj) kept next to incremental and resumable output.
+ * [--jobs n]: The maximum number of files verified at the same time (default: twice the number of cores).
+ * [--threads n]: The number of worker threads that check the segments of a file.
+ * [--stats-json file]: Writes the phase times and byte counts of the run as JSON ("-" prints them).
+ * A file may be "-" to verify a hybrid file on standard input. The program exits with status 1 if any file fails,
+ * or if the arguments or the key are not usable, so that nothing was checked.
+ */
+public class RunVerify extends RunnableBase {
+
+    // Exit status if any file failed verification
+    public static final int EXIT_FAILED = 1;
+
+    // Maximum number of failed files listed in the summary
+    public static final int MAX_LISTED_FAILURES = 20;
+
+    /**
+     * Executes the RunVerify command.
+     *
+     * @param args The command-line arguments.
+     */
+    @Override
+    public void run(List<String> args) {
+        System.out.println("RunVerify");
+
+        CommandOptions options;
+        int jobs;
+        try {
+            options = new CommandOptions(args, new String[]{"--jobs", "--threads", "--stats-json"}, new String[0]);
+            int cores = Runtime.getRuntime().availableProcessors();
+            jobs = options.getInt("--jobs", 2 * cores);
+            setThreads(options.getInt("--threads", cores));
+            if (options.getPositional().size() < 2) {
+                throw new IllegalArgumentException("Expected [privkeyfile] [file ...]");
+            }
+            if (options.get("--stats-json", null) != null) {
+                getStats().trackAllocations();
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+
+        int failed;
+        try {
+            Object privateKey = getKeyObjectFromFile(new File(options.getPositional(0, null)));
+            if (!(privateKey instanceof PrivateKey)) {
+                throw new IOException("Not a private key: " + options.getPositional(0, null));
+            }
+            List<String> files = options.getPositional();
+            failed = verifyAll((PrivateKey) privateKey, files.subList(1, files.size()), jobs);
+        } catch (Exception ex) {
+            System.err.println("EXCEPTION: run : " + ex.getMessage());
+            System.exit(EXIT_FAILED);
+            return;
+        }
+        reportStats(options.get("--stats-json", null));
+
+        if (failed > 0) {
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    /**
+     * Verifies the given files and every file below the given directories, several files at a time.
+     *
+     * @param privateKey The private key.
+     * @param names      The files and directories.
+     * @param jobs       The maximum number of files in flight.
+     * @return The number of failed files.
+     * @throws IOException          If a directory cannot be walked.
+     * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+     */
+    protected int verifyAll(PrivateKey privateKey, List<String> names, int jobs)
+            throws IOException, InterruptedException {
+        AtomicLong files = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        Map<String, String> failures = new ConcurrentSkipListMap<>();
+        Semaphore inFlight = new Semaphore(jobs);
+        long start = System.nanoTime();
+
+        ExecutorService executor = newTaskExecutor(jobs);
+        try {
+            for (String name : names) {
+                for (File file : expand(new File(name))) {
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        try {
+                            bytes.addAndGet(verify(privateKey, file));
+                            files.incrementAndGet();
+                        } catch (Exception ex) {
+                            failures.put(file.getPath(), String.valueOf(ex.getMessage()));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        System.out.println("Files verified: " + files.get());
+        System.out.println("Files failed: " + failures.size());
+        System.out.println("Number of bytes verified: " + bytes.get());
+        System.out.println(String.format(Locale.ROOT, "Elapsed: %.3f s, %.1f MB/s",
+            seconds, bytes.get() / 1e6 / seconds));
+
+        int listed = 0;
+        for (Map.Entry<String, String> failure : failures.entrySet()) {
+            if (listed++ == MAX_LISTED_FAILURES) {
+                System.err.println("... and " + (failures.size() - MAX_LISTED_FAILURES) + " more");
+                break;
+            }
+            System.err.println("FAILED: " + failure.getKey() + " : " + failure.getValue());
+        }
+        return failures.size();
+    }
+
+    /**
+     * Returns the file itself, or the regular files below it in path order if it is a directory. The manifests and
+     * journals that incremental and resumable encryption keep next to their output are not encrypted files and are
+     * left out of a directory.
+     *
+     * @param file The file or directory.
+     * @return The files to verify.
+     * @throws IOException If the directory cannot be walked.
+     */
+    static List<File> expand(File file) throws IOException {
+        if (!file.isDirectory()) {
+            return Collections.singletonList(file);
+        }
+        List<File> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            paths.filter(Files::isRegularFile).filter(path -> !isSidecar(path)).sorted()
+                .forEach(path -> files.add(path.toFile()));
+        }
+        return files;
+    }
+
+    // True for the manifest of an incremental file and the journal of a resumable run
+    private static boolean isSidecar(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(ChunkManifest.SUFFIX) || name.endsWith(ResumeJournal.SUFFIX);
+    }
+
+    /**
+     * Verifies one file, choosing the format from its header.
+     *
+     * @param privateKey The private key.
+     * @param file       The file, or "-" for standard input.
+     * @return The number of plaintext bytes that were authenticated.
+     * @throws IOException              If the file is damaged, or an I/O error occurs.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    public long verify(PrivateKey privateKey, File file) throws IOException, GeneralSecurityException {
+        if (!isStdio(file) && RunDecrypt.isChunked(file)) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = ChunkedContainer.decrypt(channel, privateKey, OutputStream.nullOutputStream(),
+                    getStats());
+                getStats().addFile();
+                return size;
+            }
+        }
+        try (InputStream inputReader = new BufferedInputStream(openInput(file), RunDecrypt.HEADER_BUFSIZE)) {
+            if (RunDecrypt.hasSignature(inputReader, EncryptedArchive.MAGIC)) {
+                if (isStdio(file)) {
+                    throw new IOException("Archives must be verified from a file, not from a stream");
+                }
+                return verifyArchive(privateKey, file);
+            }
+            if (!RunDecrypt.isHybrid(inputReader)) {
+                throw new IOException("Not a JavaCrypt file, or a legacy file, which carries no authentication");
+            }
+            return verifyHybrid(privateKey, inputReader);
+        }
+    }
+
+    /**
+     * Verifies a hybrid file: all segments in parallel, batch by batch, as the decryption does.
+     *
+     * @param privateKey  The private key.
+     * @param inputReader The ciphertext stream.
+     * @return The number of plaintext bytes that were authenticated.
+     * @throws IOException              If a segment fails, or an I/O error occurs.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    private long verifyHybrid(PrivateKey privateKey, InputStream inputReader)
+            throws IOException, GeneralSecurityException {
+        CryptStats stats = getStats();
+        long start = System.nanoTime();
+        HybridHeader header = HybridHeader.read(inputReader);
+        SegmentCipher segmentCipher = new SegmentCipher(KeyWrap.unwrap(header, privateKey), header);
+        stats.record(CryptStats.Phase.CIPHER_INIT, start, 0);
+        stats.addBytesIn(header.length());
+        try {
+            long size = SegmentEngine.decrypt(segmentCipher, getPool(), inputReader, OutputStream.nullOutputStream(),
+                stats);
+            stats.addFile();
+            return size;
+        } catch (SegmentEngine.SegmentFailedException e) {
+            long offset = header.length() + e.getIndex() * segmentCipher.getCipherSegmentSize();
+            throw new IOException(badSegment(e, offset), e);
+        }
+    }
+
+    /**
+     * Verifies the index and every member of an archive. The first damaged member ends the check.
+     *
+     * @param privateKey The private key.
+     * @param file       The archive.
+     * @return The number of plaintext bytes that were authenticated.
+     * @throws IOException              If the index or a member fails, or an I/O error occurs.
+     * @throws GeneralSecurityException If the data key cannot be unwrapped.
+     */
+    private long verifyArchive(PrivateKey privateKey, File file) throws IOException, GeneralSecurityException {
+        long size = 0;
+        try (EncryptedArchive archive = EncryptedArchive.open(file.toPath(), privateKey)) {
+            int cipherSegmentSize = archive.getSegmentSize() + SegmentCipher.TAG_LENGTH;
+            for (EncryptedArchive.Entry entry : archive.getEntries()) {
+                try {
+                    size += archive.extract(entry, OutputStream.nullOutputStream(), getPool());
+                } catch (SegmentEngine.SegmentFailedException e) {
+                    long offset = entry.getOffset() + e.getIndex() * cipherSegmentSize;
+                    throw new IOException(entry.getName() + ": " + badSegment(e, offset), e);
+                } catch (IOException e) {
+                    throw new IOException(entry.getName() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        getStats().addBytesOut(size);
+        getStats().addFile();
+        return size;
+    }
+
+    // The message for a failed segment at the given file offset
+    private static String badSegment(SegmentEngine.SegmentFailedException e, long offset) {
+        return "Segment " + e.getIndex() + " at offset " + offset + " failed: " + e.getCause().getMessage();
+    }
+
+    /**
+     * Returns the cipher.
+     *
+     * @return The cipher.
+     */
+    @Override
+    protected Cipher getCipher(Key key) {
+        return null;
+    }
+
+    /**
+     * Not supported by this command.
+     *
+     * @param text   The text.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return Never returns normally.
+     */
+    @Override
+    public byte[] crypt(byte[] text, Key key, Cipher cipher) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the size of the crypto buffer.
+     *
+     * @return The buffer size.
+     */
+    @Override
+    public int getCryptoBufSize() {
+        return 0;
+    }
+}
@@ -3,7 +3,7 @@
  * Package: javacrypt
  * Author: Erik Skopp
  * Created: 10.06.2018
- * Modified: 16.07.2026
+ * Modified: 18.10.2026
  * Version: 1.0.4
  */
 
@@ -11,7 +11,11 @@ package javacrypt;
 
 import java.io.*;
 import java.security.*;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import javax.crypto.Cipher;
 
 /**
@@ -28,6 +32,18 @@ public abstract class RunnableBase implements RunnableInterface {
      */
     public static final int KEY_LENGTH = 1024;
 
+    // File name that stands for standard input or standard output
+    public static final String STDIO_FILE_NAME = "-";
+
+    // Number of worker threads for the segment engine
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    // Worker pool, created on first use
+    private ForkJoinPool pool;
+
+    // Phase times and byte counts of the run
+    private CryptStats stats = new CryptStats(getClass().getSimpleName());
+
     /**
      * Abstract method to encrypt or decrypt the given text using the provided key and cipher.
      *
@@ -39,6 +55,25 @@ public abstract class RunnableBase implements RunnableInterface {
      */
     abstract public byte[] crypt(byte[] text, Key key, Cipher cipher) throws Exception;
 
+    /**
+     * Encrypts or decrypts the first len bytes of the input buffer into the output buffer. This is the form the
+     * chunk loop calls; commands that can transform into a caller's buffer override it, so no chunk allocates.
+     * The default implementation calls {@link #crypt(byte[], Key, Cipher)} and copies its result.
+     *
+     * @param in     The input buffer.
+     * @param len    The number of bytes to transform.
+     * @param out    The output buffer, large enough for the transformed chunk.
+     * @param key    The key.
+     * @param cipher The cipher.
+     * @return The number of bytes written to the output buffer.
+     * @throws Exception If an error occurs during encryption or decryption.
+     */
+    protected int crypt(byte[] in, int len, byte[] out, Key key, Cipher cipher) throws Exception {
+        byte[] result = crypt(len == in.length ? in : Arrays.copyOf(in, len), key, cipher);
+        System.arraycopy(result, 0, out, 0, result.length);
+        return result.length;
+    }
+
     /**
      * Returns the buffer size used for RSA encryption or decryption.
      *
@@ -54,22 +89,145 @@ public abstract class RunnableBase implements RunnableInterface {
      */
     abstract protected Cipher getCipher(Key key);
 
+    /**
+     * Sets the number of worker threads used for segment encryption and decryption.
+     *
+     * @param threads The number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the statistics that receive the phase times and byte counts, for example to share them between the
+     * commands processing the files of a directory.
+     *
+     * @param stats The statistics.
+     */
+    public void setStats(CryptStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the statistics of the run.
+     *
+     * @return The statistics.
+     */
+    public CryptStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Finishes the statistics and writes the JSON report if one was requested.
+     *
+     * @param statsFile The report file given with "--stats-json", or null.
+     */
+    protected void reportStats(String statsFile) {
+        stats.finish();
+        if (statsFile == null) {
+            return;
+        }
+        try {
+            stats.writeJson(new File(statsFile));
+        } catch (IOException ex) {
+            System.err.println("EXCEPTION: reportStats : " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the worker pool, creating it on first use. Its threads are daemon threads.
+     *
+     * @return The worker pool.
+     */
+    protected synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns an executor for blocking tasks such as whole files or client connections: one virtual thread per
+     * task on JDKs that have them, a fixed pool of platform threads otherwise. Callers that need a limit on
+     * concurrent tasks with virtual threads enforce it themselves.
+     *
+     * @param maxThreads The number of platform threads if virtual threads are not available.
+     * @return The executor.
+     */
+    protected static ExecutorService newTaskExecutor(int maxThreads) {
+        try {
+            // Looked up reflectively, since the build targets Java 11
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // JDK without (or with preview-only) virtual threads
+            return Executors.newFixedThreadPool(maxThreads);
+        }
+    }
+
+    /**
+     * Checks whether the file stands for standard input or standard output ("-").
+     *
+     * @param file The file.
+     * @return True if the file is "-".
+     */
+    public static boolean isStdio(File file) {
+        return STDIO_FILE_NAME.equals(file.getPath());
+    }
+
+    /**
+     * Opens the file for reading; "-" reads standard input.
+     * <p>
+     * Standard input is read through its file descriptor rather than System.in, so no extra buffer sits in front
+     * of it.
+     *
+     * @param file The file.
+     * @return The input stream.
+     * @throws IOException If the file cannot be opened.
+     */
+    protected static InputStream openInput(File file) throws IOException {
+        return isStdio(file) ? new FileInputStream(FileDescriptor.in) : new FileInputStream(file);
+    }
+
+    /**
+     * Opens the file for writing; "-" writes standard output.
+     * <p>
+     * Standard output is written through its file descriptor, so the data bypasses System.out, which carries
+     * the status messages (see MyCryptMain).
+     *
+     * @param file The file.
+     * @return The output stream.
+     * @throws IOException If the file cannot be opened.
+     */
+    protected static OutputStream openOutput(File file) throws IOException {
+        return isStdio(file) ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(file);
+    }
+
     /**
      * Reads the key object from the given key file.
+     * <p>
+     * PEM and DER files (PKCS#8 private keys, X.509 public keys) are read with KeyFactory; files written by older
+     * versions with Java object serialization are still accepted. Keys are cached in the process-wide
+     * {@link KeyRing}, so loading the same file again is free.
      *
      * @param keyFile The key file.
      * @return The key object.
-     * @throws IOException            If an I/O error occurs.
-     * @throws ClassNotFoundException If the class of the serialized object cannot be found.
+     * @throws IOException            If an I/O error occurs or the file does not hold a supported key.
+     * @throws ClassNotFoundException If the class of a serialized key cannot be found.
      */
     protected Object getKeyObjectFromFile(File keyFile) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(keyFile))) {
-            return ois.readObject();
-        }
+        long start = System.nanoTime();
+        Key key = KeyRing.getDefault().load(keyFile);
+        stats.record(CryptStats.Phase.KEY_LOAD, start, 0);
+        return key;
     }
 
     /**
      * Encrypts or decrypts the source file using the provided key and writes the result to the destination file.
+     * Either file may be "-" for standard input or standard output.
      *
      * @param key     The key. For encryption, this is the private key, and for decryption, this is the public key.
      * @param srcFile The source file.
@@ -77,28 +235,47 @@ public abstract class RunnableBase implements RunnableInterface {
      * @return The number of bytes transferred.
      * @throws Exception If an error occurs during encryption or decryption.
      */
-    public int encryptDecryptFile(Key key, File srcFile, File dstFile) throws Exception {
-        int size = 0;
+    public long encryptDecryptFile(Key key, File srcFile, File dstFile) throws Exception {
+        try (InputStream inputReader = openInput(srcFile);
+             OutputStream outputWriter = openOutput(dstFile)) {
+            return encryptDecryptStream(key, inputReader, outputWriter);
+        }
+    }
+
+    /**
+     * Encrypts or decrypts the source stream chunk by chunk using the provided key and writes the result to the
+     * destination stream.
+     *
+     * @param key          The key.
+     * @param inputReader  The source stream.
+     * @param outputWriter The destination stream.
+     * @return The number of bytes read from the source.
+     * @throws Exception If an error occurs during encryption or decryption.
+     */
+    protected long encryptDecryptStream(Key key, InputStream inputReader, OutputStream outputWriter) throws Exception {
+        long size = 0;
 
         Cipher cipher = getCipher(key);
         int maxBufSize = getCryptoBufSize();
-        byte[] buf = new byte[maxBufSize];
 
-        try (InputStream inputReader = new FileInputStream(srcFile);
-             OutputStream outputWriter = new FileOutputStream(dstFile)) {
+        // Both buffers come from the pool and are reused for every chunk
+        BufferPool buffers = BufferPool.getDefault();
+        byte[] buf = buffers.take(maxBufSize);
+        byte[] outBuf = buffers.take(cipher != null ? cipher.getOutputSize(maxBufSize) : maxBufSize);
 
-            int bufl;
+        int bufl;
 
-            while ((bufl = inputReader.read(buf)) != -1) {
-                byte[] chunk = (bufl == buf.length) ? buf : Arrays.copyOf(buf, bufl);
-                byte[] encText = crypt(chunk, key, cipher);
-                outputWriter.write(encText);
-                size += bufl;
-            }
-
-            outputWriter.flush();
+        // Fill whole chunks, so block formats stay aligned even when the source delivers short reads
+        while ((bufl = inputReader.readNBytes(buf, 0, buf.length)) > 0) {
+            int outl = crypt(buf, bufl, outBuf, key, cipher);
+            outputWriter.write(outBuf, 0, outl);
+            size += bufl;
         }
 
+        outputWriter.flush();
+        buffers.give(buf);
+        buffers.give(outBuf);
+
         return size;
     }
 }
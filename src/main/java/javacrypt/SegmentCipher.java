@@ -0,0 +1,222 @@
+/*
+ * File: SegmentCipher.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts and decrypts the individual segments of a hybrid file.
+ * <p>
+ * Every segment is authenticated on its own. Its 12-byte nonce is the per-file nonce prefix (7 bytes),
+ * followed by the segment index (4 bytes) and a final-segment flag (1 byte), so segments cannot be
+ * reordered, dropped or truncated without failing authentication. The header names the suite: AES-256-GCM or
+ * ChaCha20-Poly1305, which take the same 256-bit data key and nonce and append the same 16-byte tag.
+ * <p>
+ * Instances are thread-safe: each thread gets its own {@link Cipher} and nonce buffer. Callers pass their own input
+ * and output buffers, so the only allocations per segment are the parameter spec and what the provider needs for a
+ * new nonce.
+ */
+public class SegmentCipher {
+
+    // Length of the authentication tag appended to every segment
+    public static final int TAG_LENGTH = 16;
+
+    // Length of the per-segment nonce
+    public static final int NONCE_LENGTH = 12;
+
+    // Transformation for the AES-GCM suite
+    public static final String AES_GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    // Transformation for the ChaCha20-Poly1305 suite
+    public static final String CHACHA20_POLY1305_TRANSFORMATION = "ChaCha20-Poly1305";
+
+    // Key algorithm of the ChaCha20-Poly1305 suite
+    private static final String CHACHA20_KEY_ALGORITHMUS = "ChaCha20";
+
+    private final SecretKey dataKey;
+    private final int suite;
+    private final HybridHeader header;
+    private final byte[] associatedData;
+    private final byte[] noncePrefix;
+    private final ThreadLocal<Worker> worker;
+
+    /**
+     * Constructs a segment cipher for the given data key and header.
+     *
+     * @param dataKey The per-file data key.
+     * @param header  The file header.
+     * @throws GeneralSecurityException If the header names an unknown cipher suite.
+     */
+    public SegmentCipher(SecretKey dataKey, HybridHeader header) throws GeneralSecurityException {
+        this(dataKey, header, null);
+    }
+
+    /**
+     * Constructs a segment cipher that uses the given JCE provider, for example to compare providers.
+     *
+     * @param dataKey  The per-file data key.
+     * @param header   The file header.
+     * @param provider The provider of the cipher, or null for the most preferred one.
+     * @throws GeneralSecurityException If the header names an unknown cipher suite.
+     */
+    public SegmentCipher(SecretKey dataKey, HybridHeader header, Provider provider) throws GeneralSecurityException {
+        this.suite = header.getSuite();
+        String transformation = CipherSuites.getTransformation(suite);
+        // The data key is generated as an AES key; ChaCha20 takes the same 32 bytes
+        this.dataKey = suite == HybridHeader.SUITE_CHACHA20_POLY1305
+            ? new SecretKeySpec(dataKey.getEncoded(), CHACHA20_KEY_ALGORITHMUS)
+            : dataKey;
+        this.header = header;
+        this.associatedData = header.getAssociatedData();
+        this.noncePrefix = header.getNoncePrefix();
+        this.worker = ThreadLocal.withInitial(() -> {
+            try {
+                return new Worker(provider != null
+                    ? Cipher.getInstance(transformation, provider)
+                    : Cipher.getInstance(transformation));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the header this cipher belongs to.
+     *
+     * @return The header.
+     */
+    public HybridHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the plaintext segment size.
+     *
+     * @return The segment size.
+     */
+    public int getSegmentSize() {
+        return header.getSegmentSize();
+    }
+
+    /**
+     * Returns the size of a full ciphertext segment.
+     *
+     * @return The ciphertext segment size.
+     */
+    public int getCipherSegmentSize() {
+        return header.getSegmentSize() + TAG_LENGTH;
+    }
+
+    /**
+     * Encrypts one segment.
+     *
+     * @param index  The segment index.
+     * @param last   Whether this is the final segment.
+     * @param in     The plaintext buffer.
+     * @param inOff  Offset of the plaintext.
+     * @param inLen  Length of the plaintext.
+     * @param out    The ciphertext buffer, with room for inLen + TAG_LENGTH bytes.
+     * @param outOff Offset of the ciphertext.
+     * @return The number of ciphertext bytes written.
+     * @throws GeneralSecurityException If encryption fails.
+     */
+    public int encryptSegment(long index, boolean last, byte[] in, int inOff, int inLen, byte[] out, int outOff)
+            throws GeneralSecurityException {
+        Cipher c = init(Cipher.ENCRYPT_MODE, index, last);
+        return c.doFinal(in, inOff, inLen, out, outOff);
+    }
+
+    /**
+     * Decrypts and authenticates one segment.
+     *
+     * @param index  The segment index.
+     * @param last   Whether this is the final segment.
+     * @param in     The ciphertext buffer.
+     * @param inOff  Offset of the ciphertext.
+     * @param inLen  Length of the ciphertext including the tag.
+     * @param out    The plaintext buffer, with room for inLen - TAG_LENGTH bytes.
+     * @param outOff Offset of the plaintext.
+     * @return The number of plaintext bytes written.
+     * @throws GeneralSecurityException If the segment fails authentication.
+     */
+    public int decryptSegment(long index, boolean last, byte[] in, int inOff, int inLen, byte[] out, int outOff)
+            throws GeneralSecurityException {
+        Cipher c = init(Cipher.DECRYPT_MODE, index, last);
+        return c.doFinal(in, inOff, inLen, out, outOff);
+    }
+
+    /**
+     * Builds the nonce of a segment.
+     *
+     * @param index The segment index.
+     * @param last  Whether this is the final segment.
+     * @return The nonce.
+     */
+    public byte[] nonce(long index, boolean last) {
+        return nonce(index, last, new byte[NONCE_LENGTH]);
+    }
+
+    // Writes the nonce of a segment into the given buffer
+    private byte[] nonce(long index, boolean last, byte[] nonce) {
+        if (index < 0 || index > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Segment index out of range: " + index);
+        }
+        System.arraycopy(noncePrefix, 0, nonce, 0, HybridHeader.NONCE_PREFIX_LENGTH);
+        int pos = HybridHeader.NONCE_PREFIX_LENGTH;
+        nonce[pos++] = (byte) (index >>> 24);
+        nonce[pos++] = (byte) (index >>> 16);
+        nonce[pos++] = (byte) (index >>> 8);
+        nonce[pos++] = (byte) index;
+        nonce[pos] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    private Cipher init(int mode, long index, boolean last) throws GeneralSecurityException {
+        Worker w = worker.get();
+        if (suite == HybridHeader.SUITE_CHACHA20_POLY1305 && mode == Cipher.DECRYPT_MODE
+                && index == w.index && last == w.last) {
+            // The provider refuses to reuse the previous key and nonce even for decryption, as when a segment is
+            // read again; a nonce no segment uses resets that
+            nonce(index, last, w.nonce)[NONCE_LENGTH - 1] = 2;
+            w.cipher.init(mode, dataKey, new IvParameterSpec(w.nonce));
+        }
+        nonce(index, last, w.nonce);
+        AlgorithmParameterSpec spec = suite == HybridHeader.SUITE_AES_GCM
+            ? new GCMParameterSpec(TAG_LENGTH * 8, w.nonce)
+            : new IvParameterSpec(w.nonce);
+        w.cipher.init(mode, dataKey, spec);
+        w.cipher.updateAAD(associatedData);
+        w.index = index;
+        w.last = last;
+        return w.cipher;
+    }
+
+    /**
+     * The cipher and nonce buffer of one thread.
+     */
+    private static final class Worker {
+
+        final Cipher cipher;
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        long index = -1;
+        boolean last;
+
+        Worker(Cipher cipher) {
+            this.cipher = cipher;
+        }
+    }
+}
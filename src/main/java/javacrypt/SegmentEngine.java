@@ -0,0 +1,579 @@
+/*
+ * File: SegmentEngine.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.AEADBadTagException;
+
+/**
+ * Transforms a stream of fixed-size blocks on all cores of a ForkJoinPool and writes the results in order.
+ * <p>
+ * Reading, transforming and writing overlap: a reader thread fills blocks from the input and hands each one to the
+ * pool, the workers transform the blocks, and the calling thread writes them out in block order as they complete.
+ * The blocks are recycled within a run, and there are only so many of them: when the writer falls behind, the
+ * reader waits for a block to come back, so memory use is bounded independent of the stream length. The number of
+ * blocks is also bounded by {@link #MAX_BUFFER_BYTES}, so large segments mean fewer blocks in flight rather than
+ * more memory, and blocks are only allocated as the reader needs them. Their buffers
+ * come from the {@link BufferPool} and go back to it at the end of the run, so a run allocates no buffers once the
+ * pool holds those of an earlier run of the same block size.
+ * The block after the current one is always read ahead, so the transform learns which block is the last. An input
+ * that fits into a single block is transformed on the calling thread without starting the pipeline.
+ */
+public class SegmentEngine {
+
+    /**
+     * The work done on one block.
+     */
+    public interface BlockTransform {
+
+        /**
+         * Transforms one block.
+         *
+         * @param index The block index, starting at 0.
+         * @param last  Whether this is the final block.
+         * @param in    The input block.
+         * @param len   The number of valid bytes in the input block.
+         * @param out   The output buffer.
+         * @return The number of bytes written to the output buffer.
+         * @throws GeneralSecurityException If the block cannot be transformed.
+         */
+        int transform(long index, boolean last, byte[] in, int len, byte[] out) throws GeneralSecurityException;
+    }
+
+    // Number of blocks in flight for each worker thread
+    public static final int BLOCKS_PER_THREAD = 8;
+
+    // Bytes of block buffers a run may hold, unless that is less than two blocks
+    public static final long MAX_BUFFER_BYTES = 256L << 20;
+
+    // How often a waiting reader checks whether the writer gave up, in milliseconds
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final ForkJoinPool pool;
+    private final int inBlockSize;
+    private final int outBlockSize;
+    private final boolean emitEmptyBlock;
+    private final int depth;
+    private long bytesWritten;
+    private CryptStats stats;
+
+    /**
+     * Constructs an engine.
+     *
+     * @param pool           The pool running the transforms.
+     * @param inBlockSize    The size of a full input block.
+     * @param outBlockSize   The maximum size of a transformed block.
+     * @param emitEmptyBlock Whether an empty input still produces one (empty, final) block.
+     */
+    public SegmentEngine(ForkJoinPool pool, int inBlockSize, int outBlockSize, boolean emitEmptyBlock) {
+        this.pool = pool;
+        this.inBlockSize = inBlockSize;
+        this.outBlockSize = outBlockSize;
+        this.emitEmptyBlock = emitEmptyBlock;
+        // The reader needs a second block to tell whether the first is the last
+        long fit = MAX_BUFFER_BYTES / ((long) inBlockSize + outBlockSize);
+        this.depth = (int) Math.min(pool.getParallelism() * BLOCKS_PER_THREAD, Math.max(2, fit));
+    }
+
+    /**
+     * Sets the statistics that receive the read, crypto and write times. The stages run at the same time, so
+     * their times add up to more than the elapsed time.
+     *
+     * @param stats The statistics, or null.
+     */
+    public void setStats(CryptStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Reads all blocks from the input, transforms them and writes the results to the output.
+     *
+     * @param inputReader  The source stream.
+     * @param outputWriter The destination stream.
+     * @param transform    The work done on each block.
+     * @return The number of bytes read from the source.
+     * @throws IOException If an I/O error occurs or a block cannot be transformed; a failed block is reported as
+     *                     a {@link SegmentFailedException} for the first failed block in stream order.
+     */
+    public long run(InputStream inputReader, OutputStream outputWriter, BlockTransform transform) throws IOException {
+        Block first = newBlock();
+        long size = run(first, inputReader, outputWriter, transform);
+        // After a failure, blocks may still be in use by a worker or a cancelled reader; they are not recycled
+        release(first);
+        return size;
+    }
+
+    // Reads the first block and runs the rest of the stream through the pipeline if there is more
+    private long run(Block first, InputStream inputReader, OutputStream outputWriter, BlockTransform transform)
+            throws IOException {
+        long start = System.nanoTime();
+        first.len = inputReader.readNBytes(first.in, 0, inBlockSize);
+        if (stats != null) {
+            stats.record(CryptStats.Phase.READ, start, first.len);
+            stats.addBytesIn(first.len);
+        }
+
+        if (first.len < inBlockSize) {
+            // A single block is not worth a thread
+            if (first.len > 0 || emitEmptyBlock) {
+                first.prepare(transform, 0, true);
+                first.invoke();
+                Stage crypto = new Stage(CryptStats.Phase.CRYPTO);
+                Stage write = new Stage(CryptStats.Phase.WRITE);
+                write(first, outputWriter, crypto, write);
+                crypto.flush();
+                write.flush();
+            }
+            outputWriter.flush();
+            return first.len;
+        }
+        return pipeline(first, inputReader, outputWriter, transform);
+    }
+
+    /**
+     * Runs the reader thread and writes the transformed blocks as they complete. The buffers of the blocks other
+     * than the first go back to the pool when the stream was transformed without error. The reader allocates the
+     * blocks as it needs them, up to the depth of the engine.
+     *
+     * @param first        The first block, already read and full.
+     * @param inputReader  The source stream.
+     * @param outputWriter The destination stream.
+     * @param transform    The work done on each block.
+     * @return The number of bytes read from the source.
+     * @throws IOException If an I/O error occurs or a block cannot be transformed.
+     */
+    private long pipeline(Block first, InputStream inputReader, OutputStream outputWriter, BlockTransform transform)
+            throws IOException {
+        BlockingQueue<Block> free = new ArrayBlockingQueue<>(depth);
+        long size = pipeline(first, inputReader, outputWriter, transform, free);
+        for (Block block = free.poll(); block != null; block = free.poll()) {
+            if (block != first) {
+                release(block);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Runs the reader thread with the given free blocks and writes the transformed blocks as they complete.
+     *
+     * @param first        The first block, already read and full.
+     * @param inputReader  The source stream.
+     * @param outputWriter The destination stream.
+     * @param transform    The work done on each block.
+     * @param free         The blocks the reader may fill; the writer puts them back.
+     * @return The number of bytes read from the source.
+     * @throws IOException If an I/O error occurs or a block cannot be transformed.
+     */
+    private long pipeline(Block first, InputStream inputReader, OutputStream outputWriter, BlockTransform transform,
+                          BlockingQueue<Block> free) throws IOException {
+        // Room for every block and the end marker, so the reader never waits here; it waits for free blocks
+        BlockingQueue<Block> ordered = new ArrayBlockingQueue<>(depth + 1);
+        Reader reader = new Reader(first, inputReader, transform, free, ordered);
+        Thread thread = new Thread(reader, "JavaCrypt-reader");
+        thread.setDaemon(true);
+        thread.start();
+
+        Stage crypto = new Stage(CryptStats.Phase.CRYPTO);
+        Stage write = new Stage(CryptStats.Phase.WRITE);
+        Exception failure = null;
+        try {
+            for (Block block = ordered.take(); block != Block.END; block = ordered.take()) {
+                block.quietlyJoin();
+                if (failure == null) {
+                    try {
+                        write(block, outputWriter, crypto, write);
+                    } catch (IOException | RuntimeException e) {
+                        // Stop reading, but take back the blocks in flight before leaving
+                        failure = e;
+                        reader.cancelled = true;
+                    }
+                }
+                free.add(block);
+            }
+            thread.join();
+        } catch (InterruptedException e) {
+            reader.cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a block");
+        } finally {
+            crypto.flush();
+            write.flush();
+        }
+
+        if (failure == null) {
+            failure = reader.failure;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        outputWriter.flush();
+        return reader.size;
+    }
+
+    /**
+     * Writes a transformed block.
+     *
+     * @param block        The block, transformed.
+     * @param outputWriter The destination stream.
+     * @param crypto       The time of the transform.
+     * @param write        The time of the writes.
+     * @throws IOException If the block failed or cannot be written.
+     */
+    private void write(Block block, OutputStream outputWriter, Stage crypto, Stage write) throws IOException {
+        Throwable t = block.getException();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (block.error != null) {
+            throw new SegmentFailedException(block.index, block.error);
+        }
+        crypto.add(block.nanos, block.len);
+
+        long start = System.nanoTime();
+        outputWriter.write(block.out, 0, block.outLen);
+        bytesWritten += block.outLen;
+        write.add(System.nanoTime() - start, block.outLen);
+        if (stats != null) {
+            stats.addBytesOut(block.outLen);
+        }
+    }
+
+    // A block with buffers from the pool
+    private Block newBlock() {
+        BufferPool buffers = BufferPool.getDefault();
+        return new Block(buffers.take(inBlockSize), buffers.take(outBlockSize));
+    }
+
+    // Gives the buffers of a block back to the pool
+    private static void release(Block block) {
+        BufferPool.getDefault().give(block.in);
+        BufferPool.getDefault().give(block.out);
+    }
+
+    /**
+     * Returns the number of transformed bytes written so far.
+     *
+     * @return The number of bytes written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Encrypts the plaintext stream into hybrid segments. The header must already have been written.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param pool          The pool running the transforms.
+     * @param inputReader   The plaintext stream.
+     * @param outputWriter  The ciphertext stream.
+     * @return The number of plaintext bytes read.
+     * @throws IOException If an I/O error occurs or a segment cannot be encrypted.
+     */
+    public static long encrypt(SegmentCipher segmentCipher, ForkJoinPool pool, InputStream inputReader,
+                               OutputStream outputWriter) throws IOException {
+        return encrypt(segmentCipher, pool, inputReader, outputWriter, null);
+    }
+
+    /**
+     * Encrypts the plaintext stream into hybrid segments and records the phases. The header must already have
+     * been written.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param pool          The pool running the transforms.
+     * @param inputReader   The plaintext stream.
+     * @param outputWriter  The ciphertext stream.
+     * @param stats         The statistics, or null.
+     * @return The number of plaintext bytes read.
+     * @throws IOException If an I/O error occurs or a segment cannot be encrypted.
+     */
+    public static long encrypt(SegmentCipher segmentCipher, ForkJoinPool pool, InputStream inputReader,
+                               OutputStream outputWriter, CryptStats stats) throws IOException {
+        return encrypt(segmentCipher, pool, 0, inputReader, outputWriter, stats);
+    }
+
+    /**
+     * Encrypts the plaintext stream into hybrid segments, numbering them from the given index, to continue a file
+     * whose first segments are already written. The output must be positioned after them.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param pool          The pool running the transforms.
+     * @param firstIndex    The index of the first segment read from the stream.
+     * @param inputReader   The plaintext stream, positioned at the first segment.
+     * @param outputWriter  The ciphertext stream.
+     * @param stats         The statistics, or null.
+     * @return The number of plaintext bytes read.
+     * @throws IOException If an I/O error occurs or a segment cannot be encrypted.
+     */
+    public static long encrypt(SegmentCipher segmentCipher, ForkJoinPool pool, long firstIndex,
+                               InputStream inputReader, OutputStream outputWriter, CryptStats stats)
+            throws IOException {
+        SegmentEngine engine = new SegmentEngine(pool, segmentCipher.getSegmentSize(),
+            segmentCipher.getCipherSegmentSize(), true);
+        engine.setStats(stats);
+        return engine.run(inputReader, outputWriter, (index, last, in, len, out) ->
+            segmentCipher.encryptSegment(firstIndex + index, last, in, 0, len, out, 0));
+    }
+
+    /**
+     * Decrypts hybrid segments into the plaintext stream. The header must already have been read.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param pool          The pool running the transforms.
+     * @param inputReader   The ciphertext stream, positioned after the header.
+     * @param outputWriter  The plaintext stream.
+     * @return The number of plaintext bytes written.
+     * @throws IOException If an I/O error occurs or a segment fails authentication.
+     */
+    public static long decrypt(SegmentCipher segmentCipher, ForkJoinPool pool, InputStream inputReader,
+                               OutputStream outputWriter) throws IOException {
+        return decrypt(segmentCipher, pool, inputReader, outputWriter, null);
+    }
+
+    /**
+     * Decrypts hybrid segments into the plaintext stream and records the phases. The header must already have
+     * been read.
+     *
+     * @param segmentCipher The segment cipher of the file.
+     * @param pool          The pool running the transforms.
+     * @param inputReader   The ciphertext stream, positioned after the header.
+     * @param outputWriter  The plaintext stream.
+     * @param stats         The statistics, or null.
+     * @return The number of plaintext bytes written.
+     * @throws IOException If an I/O error occurs or a segment fails authentication.
+     */
+    public static long decrypt(SegmentCipher segmentCipher, ForkJoinPool pool, InputStream inputReader,
+                               OutputStream outputWriter, CryptStats stats) throws IOException {
+        SegmentEngine engine = new SegmentEngine(pool, segmentCipher.getCipherSegmentSize(),
+            segmentCipher.getSegmentSize(), true);
+        engine.setStats(stats);
+        engine.run(inputReader, outputWriter, (index, last, in, len, out) -> {
+            if (len < SegmentCipher.TAG_LENGTH) {
+                throw new AEADBadTagException("Truncated ciphertext");
+            }
+            return segmentCipher.decryptSegment(index, last, in, 0, len, out, 0);
+        });
+        return engine.getBytesWritten();
+    }
+
+    /**
+     * One block and its transformed result; recycled from run to run of the pipeline.
+     */
+    private static final class Block extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // Marks the end of the stream in the queue to the writer
+        static final Block END = new Block(new byte[0], new byte[0]);
+
+        final byte[] in;
+        final byte[] out;
+        int len;
+        int outLen;
+        long index;
+        boolean last;
+        BlockTransform transform;
+        GeneralSecurityException error;
+        long nanos;
+
+        Block(byte[] in, byte[] out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        void prepare(BlockTransform transform, long index, boolean last) {
+            reinitialize();
+            this.transform = transform;
+            this.index = index;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            try {
+                outLen = transform.transform(index, last, in, len, out);
+                error = null;
+            } catch (GeneralSecurityException e) {
+                outLen = 0;
+                error = e;
+            }
+            nanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Fills free blocks from the input and hands them to the pool and, in the same order, to the writer.
+     */
+    private final class Reader implements Runnable {
+
+        private final Block first;
+        private final InputStream inputReader;
+        private final BlockTransform transform;
+        private final BlockingQueue<Block> free;
+        private final BlockingQueue<Block> ordered;
+        private final Stage read = new Stage(CryptStats.Phase.READ);
+        volatile boolean cancelled;
+        volatile Exception failure;
+        volatile long size;
+        // Blocks of the run so far, including the first
+        private int allocated = 1;
+
+        Reader(Block first, InputStream inputReader, BlockTransform transform, BlockingQueue<Block> free,
+               BlockingQueue<Block> ordered) {
+            this.first = first;
+            this.inputReader = inputReader;
+            this.transform = transform;
+            this.free = free;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public void run() {
+            long total = first.len;
+            try {
+                Block current = first;
+                long index = 0;
+                while (current.len == inBlockSize) {
+                    Block next = takeFree();
+                    if (next == null) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    next.len = inputReader.readNBytes(next.in, 0, inBlockSize);
+                    read.add(System.nanoTime() - start, next.len);
+                    if (stats != null) {
+                        stats.addBytesIn(next.len);
+                    }
+                    total += next.len;
+                    if (next.len == 0) {
+                        free.add(next);
+                        break;
+                    }
+                    submit(current, index++, false);
+                    current = next;
+                }
+                submit(current, index, true);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                size = total;
+                read.flush();
+                ordered.add(Block.END);
+            }
+        }
+
+        // A free block, or null once the writer gave up
+        private Block takeFree() {
+            Block recycled = free.poll();
+            if (recycled != null) {
+                return recycled;
+            }
+            if (allocated < depth) {
+                allocated++;
+                return newBlock();
+            }
+            try {
+                while (!cancelled) {
+                    Block block = free.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (block != null) {
+                        return block;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
+        private void submit(Block block, long index, boolean last) {
+            block.prepare(transform, index, last);
+            pool.execute(block);
+            ordered.add(block);
+        }
+    }
+
+    /**
+     * Adds up the time of one pipeline stage block by block and passes it to the statistics every few blocks.
+     */
+    private final class Stage {
+
+        private final CryptStats.Phase phase;
+        private long nanos;
+        private long bytes;
+        private int blocks;
+
+        Stage(CryptStats.Phase phase) {
+            this.phase = phase;
+        }
+
+        void add(long blockNanos, long blockBytes) {
+            nanos += blockNanos;
+            bytes += blockBytes;
+            if (++blocks == depth) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (stats != null && blocks > 0) {
+                stats.recordNanos(phase, nanos, bytes);
+            }
+            nanos = 0;
+            bytes = 0;
+            blocks = 0;
+        }
+    }
+
+    /**
+     * Signals a block that could not be transformed, typically a segment that failed authentication.
+     */
+    public static final class SegmentFailedException extends AuthenticationException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long index;
+
+        /**
+         * Constructs the exception.
+         *
+         * @param index The index of the failed block, starting at 0.
+         * @param cause The reason.
+         */
+        public SegmentFailedException(long index, GeneralSecurityException cause) {
+            super("Segment " + index + " failed: " + cause.getMessage(), cause);
+            this.index = index;
+        }
+
+        /**
+         * Returns the index of the failed block.
+         *
+         * @return The block index, starting at 0.
+         */
+        public long getIndex() {
+            return index;
+        }
+    }
+}
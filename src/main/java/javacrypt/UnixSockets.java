@@ -0,0 +1,143 @@
+/*
+ * File: UnixSockets.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Opens Unix domain socket channels.
+ * <p>
+ * Unix domain sockets arrived in Java 16, while JavaCrypt is built for Java 11, so the new API is reached through
+ * reflection. On older JDKs the methods fail with an IOException that says so.
+ */
+public final class UnixSockets {
+
+    private UnixSockets() {
+    }
+
+    /**
+     * Binds a server channel to a socket file, replacing a stale socket file. The socket file is made accessible
+     * to its owner only, where the file system supports POSIX permissions.
+     *
+     * @param path The socket file.
+     * @return The bound server channel.
+     * @throws IOException If the socket cannot be bound or the JDK lacks Unix domain sockets.
+     */
+    public static ServerSocketChannel bind(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = (ServerSocketChannel) open(ServerSocketChannel.class);
+        server.bind(address(path));
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+        return server;
+    }
+
+    /**
+     * Connects to a socket file.
+     *
+     * @param path The socket file.
+     * @return The connected channel.
+     * @throws IOException If the connection fails or the JDK lacks Unix domain sockets.
+     */
+    public static SocketChannel connect(Path path) throws IOException {
+        SocketChannel channel = (SocketChannel) open(SocketChannel.class);
+        channel.connect(address(path));
+        return channel;
+    }
+
+    /**
+     * Returns an input stream reading from the channel.
+     * <p>
+     * Unlike Channels.newInputStream, the stream does not take the channel's blocking lock, so one thread can
+     * read while another one writes.
+     *
+     * @param channel The connected channel.
+     * @return The input stream.
+     */
+    public static InputStream newInputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Returns an output stream writing to the channel.
+     * <p>
+     * Unlike Channels.newOutputStream, the stream does not take the channel's blocking lock, so one thread can
+     * write while another one reads.
+     *
+     * @param channel The connected channel.
+     * @return The output stream.
+     */
+    public static OutputStream newOutputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    private static Object open(Class<?> channelClass) throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return channelClass.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static SocketAddress address(Path path) throws IOException {
+        try {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) addressClass.getMethod("of", Path.class).invoke(null, path);
+        } catch (ReflectiveOperationException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static IOException unsupported(Exception e) {
+        return new IOException("Unix domain sockets require Java 16 or newer", e);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * File: UnsupportedFormatException.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+/**
+ * Signals data that is not a JavaCrypt file, or one written in a format version or with options this version
+ * does not read.
+ */
+public class UnsupportedFormatException extends JavaCryptException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message The reason.
+     */
+    public UnsupportedFormatException(String message) {
+        super(message);
+    }
+}
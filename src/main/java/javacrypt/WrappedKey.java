@@ -0,0 +1,56 @@
+/*
+ * File: WrappedKey.java
+ * Package: javacrypt
+ * Author: Erik Skopp
+ * Created: 18.10.2026
+ * Modified: 18.10.2026
+ * Version: 1.0.4
+ */
+
+package javacrypt;
+
+import java.util.Arrays;
+
+/**
+ * A data key wrapped for one recipient: the wrap algorithm and the wrapped key as {@link KeyWrap#wrap} returns it.
+ * The recipients of a hybrid header and the keys of an incremental trailer are lists of these.
+ */
+public final class WrappedKey {
+
+    private final int wrapAlgorithm;
+    private final byte[] entry;
+
+    /**
+     * Constructs a wrapped key.
+     *
+     * @param wrapAlgorithm The wrap algorithm id, see {@link HybridHeader}.
+     * @param entry         The wrapped key, see {@link KeyWrap#wrap}.
+     */
+    public WrappedKey(int wrapAlgorithm, byte[] entry) {
+        this.wrapAlgorithm = wrapAlgorithm;
+        this.entry = entry.clone();
+    }
+
+    public int getWrapAlgorithm() {
+        return wrapAlgorithm;
+    }
+
+    public byte[] getEntry() {
+        return entry.clone();
+    }
+
+    public int getEntryLength() {
+        return entry.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WrappedKey && ((WrappedKey) o).wrapAlgorithm == wrapAlgorithm
+            && Arrays.equals(((WrappedKey) o).entry, entry);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * wrapAlgorithm + Arrays.hashCode(entry);
+    }
+}